@@ -0,0 +1,99 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * An immutable point in reduced coordinates: (x, y) with z = 1, or the point
+ * at infinity (0, 1, 0), the same coordinates a reduced Point has. Unlike
+ * Point it has no setters, so one AffinePoint can be shared between threads
+ * or used as a key in a HashMap without being copied first, and equals and
+ * hashCode agree with Point's for the same coordinates.
+ *
+ * Arithmetic goes through Point (or, for many points at once, PointBuffer,
+ * which stores its points in arrays and doesn't allocate per operation).
+ */
+
+public final class AffinePoint {
+
+	public static final AffinePoint INFINITY = new AffinePoint(0, 1, 0);
+
+	private final long x;
+	private final long y;
+	private final long z; /* 1, or 0 for infinity */
+
+	private AffinePoint(long x, long y, long z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public static AffinePoint of(long x, long y) { /* (x, y), which should already be reduced mod p */
+		return new AffinePoint(x, y, 1);
+	}
+
+	public static AffinePoint of(Point P, long p) { /* P scaled down to z = 1 (an inversion unless z = 0 or 1) */
+		PrimeField f = PrimeField.of(p);
+		long zz = f.reduce(P.getZ());
+		if(zz == 0) {
+			return INFINITY;
+		}
+		if(zz == 1) {
+			return new AffinePoint(f.reduce(P.getX()), f.reduce(P.getY()), 1);
+		}
+		long inv = ECMath.inverse(zz, p);
+		return new AffinePoint(f.mulMod(f.reduce(P.getX()), inv), f.mulMod(f.reduce(P.getY()), inv), 1);
+	}
+
+	public long getX() {
+		return x;
+	}
+
+	public long getY() {
+		return y;
+	}
+
+	public long getZ() {
+		return z;
+	}
+
+	public boolean isInfinity() {
+		return z == 0;
+	}
+
+	public Point toPoint() { /* a new, mutable copy */
+		return new Point(x, y, z);
+	}
+
+	public AffinePoint negate(long p) { /* -(x, y) = (x, -y) */
+		return isInfinity() ? this : new AffinePoint(x, (y == 0) ? 0 : p - y, 1);
+	}
+
+	public AffinePoint add(AffinePoint Q, long a, long b, long p) {
+		return of(toPoint().add(Q.toPoint(), a, b, p), p);
+	}
+
+	public AffinePoint mult(long k, long a, long b, long p) {
+		return of(toPoint().mult(k, a, b, p), p);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof AffinePoint)) {
+			return false;
+		}
+		AffinePoint Q = (AffinePoint)other;
+		return x == Q.x && y == Q.y && z == Q.z;
+	}
+
+	@Override
+	public int hashCode() { /* the same as Point's */
+		return 31*(31*Long.hashCode(x) + Long.hashCode(y)) + Long.hashCode(z);
+	}
+
+	@Override
+	public String toString() {
+		if(isInfinity()) {
+			return "infinity";
+		}
+		return "(" + x + ", " + y + ")";
+	}
+}
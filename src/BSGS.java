@@ -0,0 +1,210 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * Baby-step giant-step discrete logarithms kG = P for a fixed G of order n,
+ * with the baby steps computed once and kept for as many P as are asked
+ * about. The baby steps jG, 1 <= j <= m, are stored as x-coordinate -> j in a
+ * LongIntHashMap (the value is 2j, plus 1 if y > p/2, so a match tells jG from
+ * -jG and the table covers -m, ..., m with m entries). A logarithm is then
+ * only giant steps P - cG for c = 0, 2m + 1, 2(2m + 1), ..., about n/(2m)
+ * mixed additions in a PointBuffer.
+ *
+ * m is sqrt(n/2) (which balances the two) unless the table wouldn't fit in
+ * the memory budget, in which case it's as big as fits and each logarithm
+ * takes more giant steps. The table is never changed after the constructor,
+ * so one BSGS can answer logarithms on any number of threads at once (each
+ * thread walks its own PointBuffer); logAll runs a batch on a fork-join pool.
+ *
+ * of(E, G, n) caches the most recently used tables, so repeated calls to
+ * EllipticCurve.log (through PohligHellman) with the same G only pay for
+ * the baby steps the first time.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class BSGS {
+
+	public static final long DEFAULT_MEMORY = 1L << 24; /* bytes for the table, 16MB */
+	private static final int BYTES_PER_SLOT = 12; /* a long key and an int value */
+	private static final int BLOCK = 1024; /* giant steps per walk */
+	private static final int CACHE_SIZE = 8;
+
+	private final EllipticCurve E;
+	private final Point G;
+	private final long n;
+	private final int m; /* baby steps */
+	private final long stride; /* 2m + 1 */
+	private final Point step; /* -(2m + 1)G */
+	private final LongIntHashMap table;
+	private final ThreadLocal<PointBuffer> giant;
+
+	/* least recently used tables, keyed by the curve, G (reduced) and n */
+	private static final Map<String, BSGS> cache = new LinkedHashMap<String, BSGS>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, BSGS> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	public BSGS(EllipticCurve E, Point G, long n) {
+		this(E, G, n, DEFAULT_MEMORY);
+	}
+
+	/* G of order n on E, with a table of at most memory bytes (but at least a few hundred) */
+	public BSGS(EllipticCurve E, Point G, long n, long memory) {
+		if(n < 1) {
+			throw new IllegalArgumentException("BSGS needs the order of G, got " + n);
+		}
+		this.E = new EllipticCurve(E);
+		this.E.getGLV(); /* looked up now, so the threads in log don't race to do it */
+		this.G = G;
+		this.n = n;
+		long p = E.getP();
+		long slots = Long.highestOneBit(Math.max(32, Math.min(1L << 30, memory / BYTES_PER_SLOT)));
+		m = (int)Math.max(1, Math.min(slots / 2, (long)Math.ceil(Math.sqrt(n / 2.0)))); /* a load factor of at most 1/2 */
+		stride = 2L*m + 1;
+		step = E.mult(G, -stride, n);
+		table = new LongIntHashMap(m);
+		PointBuffer baby = new PointBuffer(E, Math.min(m, BLOCK));
+		for(int j = 1; j <= m; j += BLOCK) {
+			int count = Math.min(BLOCK, m - j + 1);
+			if(j == 1) {
+				baby.walk(G, G, count);
+			}
+			else {
+				baby.walk(count);
+			}
+			for(int i = 0; i < count && !baby.isInfinity(i); i++) { /* jG = infinity only if n <= m */
+				long y = baby.getY(i);
+				table.putIfAbsent(baby.getX(i), 2*(j + i) + (y > p/2 ? 1 : 0));
+			}
+		}
+		final int size = (int)Math.min(BLOCK, n / stride + 1);
+		giant = ThreadLocal.withInitial(() -> new PointBuffer(this.E, size));
+	}
+
+	/* a (possibly cached) table for G of order n on E, with the default memory budget */
+	public static BSGS of(EllipticCurve E, Point G, long n) {
+		long p = E.getP();
+		PrimeField f = PrimeField.of(p);
+		long z = f.reduce(G.getZ());
+		String key = E.getA() + "," + E.getB() + "," + p + "," + n + ",";
+		if(z == 0) {
+			key += "infinity";
+		}
+		else {
+			long zInv = ECMath.inverse(z, p);
+			key += f.mulMod(f.reduce(G.getX()), zInv) + "," + f.mulMod(f.reduce(G.getY()), zInv);
+		}
+		BSGS rval;
+		synchronized(cache) {
+			rval = cache.get(key);
+		}
+		if(rval == null) { /* built outside the lock, so lookups of other tables aren't held up. two
+			threads may both build it, and the first one wins */
+			BSGS built = new BSGS(E, G, n);
+			synchronized(cache) {
+				rval = cache.putIfAbsent(key, built);
+				if(rval == null) {
+					rval = built;
+				}
+			}
+		}
+		return rval;
+	}
+
+	public long getN() {
+		return n;
+	}
+
+	public int getBabySteps() {
+		return m;
+	}
+
+	public long getGiantSteps() { /* the most giant steps a logarithm can take */
+		return n / stride + 1;
+	}
+
+	public long getMemory() { /* bytes used by the table */
+		return (long)table.capacity() * BYTES_PER_SLOT;
+	}
+
+	/* k with 0 <= k < n and kG = P, or -1 if there isn't one. safe to call from several threads */
+	public long log(Point P) {
+		long p = E.getP();
+		PointBuffer buffer = giant.get();
+		int size = buffer.capacity();
+		long c = 0;
+		for(long done = 0; c < n + stride; done += size) {
+			if(done == 0) {
+				buffer.walk(P, step, size);
+			}
+			else {
+				buffer.walk(size);
+			}
+			for(int i = 0; i < size && c < n + stride; i++, c += stride) {
+				if(buffer.isInfinity(i)) { /* P = cG */
+					return check(P, c % n);
+				}
+				int value = table.get(buffer.getX(i));
+				if(value != -1) { /* P - cG = +-jG */
+					long j = value >> 1;
+					boolean same = (buffer.getY(i) > p/2) == ((value & 1) == 1);
+					return check(P, Math.floorMod(same ? c + j : c - j, n));
+				}
+			}
+		}
+		return -1; /* error */
+	}
+
+	private long check(Point P, long k) { /* k, unless n isn't really the order of G */
+		return E.mult(G, k).equals(P, E.getP()) ? k : -1;
+	}
+
+	/* the logarithms of all the P[i] (-1 for those without one), on the given number of threads */
+	public long[] logAll(Point[] P, int threads) {
+		long[] rval = new long[P.length];
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			pool.invoke(new Logs(P, rval, 0, P.length));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return rval;
+	}
+
+	/* logarithms lo, ..., hi-1, splitting the range in half until it's small */
+	private class Logs extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Point[] P;
+		private final long[] rval;
+		private final int lo, hi;
+
+		Logs(Point[] P, long[] rval, int lo, int hi) {
+			this.P = P;
+			this.rval = rval;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if(hi - lo > 16) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Logs(P, rval, lo, mid), new Logs(P, rval, mid, hi));
+				return;
+			}
+			for(int i = lo; i < hi; i++) {
+				rval[i] = log(P[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * The following program implements elliptic curves y^2 = x^3 + ax + b over
+ * prime fields of any size, using BigInteger for a, b, p, coordinates and
+ * scalars. It offers the same add, mult, order, pointOrder, and log methods
+ * as EllipticCurve, so standardized curves such as P-256 and secp256k1 can
+ * be used with the toolkit.
+ *
+ * Counting points by summing Legendre symbols is hopeless for cryptographic
+ * sizes, so a curve can carry its (published) group order and generator.
+ * order() returns the known order if there is one, and otherwise falls back
+ * to the same O(plogp) sum that EllipticCurve uses. There is no Schoof or
+ * SEA point counting for BigIntegers (Schoof only handles p < 2^62), so the
+ * order of a large curve that isn't a named one can't be found here. Likewise,
+ * log uses brute force, so it is only useful for small groups.
+ */
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BigEllipticCurve {
+
+    private BigInteger a;
+    private BigInteger b;
+    private BigInteger p;
+    private BigInteger order = null; /* group order, if known */
+    private BigPoint generator = null; /* base point, if the curve is a named curve */
+
+    public BigEllipticCurve(BigInteger a, BigInteger b, BigInteger p) {
+        this.a = a;
+        this.b = b;
+        this.p = p;
+    }
+
+    public BigEllipticCurve(long a, long b, long p) {
+        this(BigInteger.valueOf(a), BigInteger.valueOf(b), BigInteger.valueOf(p));
+    }
+
+    public BigEllipticCurve(BigEllipticCurve E) {
+        this.a = E.getA();
+        this.b = E.getB();
+        this.p = E.getP();
+        this.order = E.order;
+        this.generator = E.generator;
+    }
+
+    public BigInteger getA() {
+    	return a;
+    }
+
+    public BigInteger getB() {
+    	return b;
+    }
+
+    public BigInteger getP() {
+    	return p;
+    }
+
+    public BigPoint getGenerator() {
+    	return generator;
+    }
+
+    public void setA(BigInteger a) {
+    	this.a = a;
+    	this.order = null;
+    }
+
+    public void setB(BigInteger b) {
+    	this.b = b;
+    	this.order = null;
+    }
+
+    public void setP(BigInteger p) {
+    	this.p = p;
+    	this.order = null;
+    }
+
+    public void setOrder(BigInteger order) {
+    	this.order = order;
+    }
+
+    public void setGenerator(BigPoint G) {
+    	this.generator = G;
+    }
+
+	public String toString() {
+		return "E(F_" + p + ") : y^2 = x^3 + " + a + "x + " + b;
+	}
+
+	public boolean isEC() {
+		BigPrimeField f = BigPrimeField.of(getP());
+		BigInteger a3 = f.mul(f.sqr(f.reduce(a)), f.reduce(a));
+		BigInteger b2 = f.sqr(f.reduce(b));
+		return f.reduce(a3.shiftLeft(2).add(b2.multiply(BigInteger.valueOf(27)))).signum() != 0; /* make sure no multiple roots */
+	}
+
+	public boolean contains(BigPoint P) { /* is the affine point P on the curve? */
+		if(P.isInfinity()) {
+			return true;
+		}
+		BigPrimeField f = BigPrimeField.of(getP());
+		BigInteger x = f.reduce(P.getX());
+		BigInteger rhs = f.add(f.mul(f.add(f.sqr(x), f.reduce(a)), x), f.reduce(b));
+		return f.sqr(f.reduce(P.getY())).equals(rhs);
+	}
+
+	public BigPoint add(BigPoint P, BigPoint Q) {
+		return P.add(Q, getA(), getB(), getP());
+	}
+
+	public BigPoint mult(BigPoint P, BigInteger k) {
+		return P.mult(k, getA(), getB(), getP());
+	}
+
+	public BigInteger order() { /* O(plogp) algorithm unless the order is known */
+		if(order != null) {
+			return order;
+		}
+		BigPrimeField f = BigPrimeField.of(getP());
+		BigInteger rval = getP().add(BigInteger.ONE);
+		for(BigInteger x = BigInteger.ZERO; x.compareTo(getP()) < 0; x = x.add(BigInteger.ONE)) {
+			BigInteger rhs = f.add(f.mul(f.add(f.sqr(x), f.reduce(a)), x), f.reduce(b));
+			rval = rval.add(BigInteger.valueOf(f.legendre(rhs)));
+		}
+		order = rval;
+		return rval;
+	}
+
+	public BigInteger pointOrder(BigPoint G) { /* divide the prime factors out of |E| while kG stays infinity */
+		BigInteger N = order();
+		for(BigInteger q : primeFactors(N)) {
+			while(N.mod(q).signum() == 0 && mult(G, N.divide(q)).isInfinity()) {
+				N = N.divide(q);
+			}
+		}
+		return mult(G, N).isInfinity() ? N : BigInteger.ONE.negate(); /* -1 means error */
+	}
+
+	public BigInteger log(BigPoint P, BigPoint G) { /* return k, where kG = P */
+		BigInteger N = pointOrder(G);
+		BigPoint B = new BigPoint(); // B = infinity
+		for(BigInteger i = BigInteger.ONE; i.compareTo(N) <= 0; i = i.add(BigInteger.ONE)) {
+			if((B = G.add(B, getA(), getB(), getP())).equals(P)) {
+				return i;
+			}
+		}
+		return BigInteger.ONE.negate(); /* error */
+	}
+
+	/* distinct prime factors of N from ECM.factor (Pollard's rho in ECMath if N fits in a long).
+	a composite piece ECM can't split is returned as it is, which only means pointOrder may
+	leave that piece in the order */
+	private static List<BigInteger> primeFactors(BigInteger N) {
+		return new ArrayList<BigInteger>(ECM.factor(N).keySet());
+	}
+
+	public static BigEllipticCurve P256() { /* NIST P-256 (secp256r1) from FIPS 186-4 */
+		BigInteger p = new BigInteger("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16);
+		BigEllipticCurve E = new BigEllipticCurve(p.subtract(BigInteger.valueOf(3)),
+				new BigInteger("5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b", 16), p);
+		E.setOrder(new BigInteger("ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551", 16));
+		E.setGenerator(new BigPoint(new BigInteger("6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296", 16),
+				new BigInteger("4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5", 16), BigInteger.ONE));
+		return E;
+	}
+
+	public static BigEllipticCurve secp256k1() { /* the Koblitz curve y^2 = x^3 + 7 from SEC 2 */
+		BigInteger p = new BigInteger("fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f", 16);
+		BigEllipticCurve E = new BigEllipticCurve(BigInteger.ZERO, BigInteger.valueOf(7), p);
+		E.setOrder(new BigInteger("fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141", 16));
+		E.setGenerator(new BigPoint(new BigInteger("79be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798", 16),
+				new BigInteger("483ada7726a3c4655da4fbfc0e1108a8fd17b448a68554199c47d08ffb10d4b8", 16), BigInteger.ONE));
+		return E;
+	}
+
+	public static void main(String[] args) { /* method for testing */
+		BigEllipticCurve E = P256();
+		BigPoint G = E.getGenerator();
+		System.out.println(E);
+		System.out.println(E.contains(G) + " " + E.mult(G, E.order()));
+		System.out.println(E.mult(G, BigInteger.valueOf(2)));
+	}
+}
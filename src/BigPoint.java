@@ -0,0 +1,493 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * The following program implements point addition and multiplication
+ * for elliptic curves over prime fields of any size. It is the BigInteger
+ * counterpart of Point and uses the same projective coordinates formulas
+ * from Washington's Elliptic Curves text: (0 : 1 : 0) represents the point
+ * at infinity; otherwise (x : y : z) represents (x/z, y/z) in affine coordinates.
+ * The toString method prints either (x, y) or the string "infinity".
+ *
+ * The private addInto and doubleInto methods write their result into an
+ * existing BigPoint, so a scalar multiplication only ever uses its two
+ * accumulators no matter how many bits k has.
+ *
+ * When p < 2^256, mult runs on PrimeField256 limbs instead (see the Limbs
+ * class at the bottom), with Point's Jacobian formulas and wNAF recoding
+ * rather than the projective double-and-add, and allocates nothing inside
+ * the loop.
+ */
+
+import java.math.BigInteger;
+
+public class BigPoint {
+    private BigInteger x;
+    private BigInteger y;
+    private BigInteger z;
+
+    public BigPoint() { // default constructor gives the point at infinity
+    	x = BigInteger.ZERO;
+    	y = BigInteger.ONE;
+    	z = BigInteger.ZERO;
+    }
+
+    public BigPoint(BigInteger x, BigInteger y, BigInteger z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public BigPoint(long x, long y, long z) {
+        this(BigInteger.valueOf(x), BigInteger.valueOf(y), BigInteger.valueOf(z));
+    }
+
+    public BigPoint(BigPoint P) {
+        x = P.getX();
+        y = P.getY();
+        z = P.getZ();
+    }
+
+    public BigInteger getX() {
+    	return x;
+    }
+
+    public BigInteger getY() {
+    	return y;
+    }
+
+    public BigInteger getZ() {
+    	return z;
+    }
+
+    public void setX(BigInteger x) {
+    	this.x = x;
+    }
+
+    public void setY(BigInteger y) {
+    	this.y = y;
+    }
+
+    public void setZ(BigInteger z) {
+    	this.z = z;
+    }
+
+    public void set(BigPoint P) {
+    	x = P.getX();
+    	y = P.getY();
+    	z = P.getZ();
+    }
+
+    public boolean isInfinity() {
+    	return z.signum() == 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+    	if(!(other instanceof BigPoint)) {
+    		return false;
+    	}
+    	BigPoint Q = (BigPoint)other;
+    	return x.equals(Q.getX()) && y.equals(Q.getY()) && z.equals(Q.getZ());
+    }
+
+    @Override
+    public int hashCode() {
+    	return 31*(31*x.hashCode() + y.hashCode()) + z.hashCode();
+    }
+
+    public String toString() {
+    	if(isInfinity()) {
+    		return "infinity";
+    	}
+    	return "(" + x + ", " + y + ")";
+    }
+
+    /* R = P + Q. Comparing P and Q is free here: P = +-Q exactly when v = 0 below, so unlike
+    Point.addHelper this also works when P and Q are scaled differently. R may be P or Q. */
+    private static void addInto(BigPoint P, BigPoint Q, BigInteger a, BigPrimeField f, BigPoint R) {
+    	if(Q.isInfinity()) { /* if Q = infinity ==> P + Q = P */
+    		R.set(P);
+    		return;
+    	}
+    	if(P.isInfinity()) { /* if P = infinity ==> P + Q = Q */
+    		R.set(Q);
+    		return;
+    	}
+    	BigInteger x1z2 = f.mul(P.getX(), Q.getZ());
+    	BigInteger y1z2 = f.mul(P.getY(), Q.getZ());
+    	BigInteger u = f.sub(f.mul(Q.getY(), P.getZ()), y1z2);
+    	BigInteger v = f.sub(f.mul(Q.getX(), P.getZ()), x1z2);
+    	if(v.signum() == 0) {
+    		if(u.signum() == 0) { /* if P = Q */
+    			doubleInto(P, a, f, R);
+    		}
+    		else { /* if P = -Q ==> P + Q = infinity */
+    			R.set(new BigPoint());
+    		}
+    		return;
+    	}
+    	BigInteger z1z2 = f.mul(P.getZ(), Q.getZ());
+    	BigInteger vv = f.sqr(v);
+    	BigInteger vvv = f.mul(vv, v);
+    	BigInteger vvx = f.mul(vv, x1z2);
+    	BigInteger w = f.sub(f.sub(f.mul(f.sqr(u), z1z2), vvv), f.add(vvx, vvx));
+    	R.setX(f.mul(v, w));
+    	R.setY(f.sub(f.mul(u, f.sub(vvx, w)), f.mul(vvv, y1z2)));
+    	R.setZ(f.mul(vvv, z1z2));
+    }
+
+    /* R = 2P, R may be P */
+    private static void doubleInto(BigPoint P, BigInteger a, BigPrimeField f, BigPoint R) {
+    	if(P.isInfinity()) {
+    		R.set(P);
+    		return;
+    	}
+    	BigInteger xx = f.sqr(P.getX());
+    	BigInteger t = f.add(f.mul(a, f.sqr(P.getZ())), f.add(f.add(xx, xx), xx));
+    	BigInteger u = f.mul(P.getY(), P.getZ());
+    	BigInteger v = f.mul(f.mul(u, P.getX()), P.getY());
+    	BigInteger v4 = f.add(f.add(v, v), f.add(v, v));
+    	BigInteger w = f.sub(f.sqr(t), f.add(v4, v4));
+    	BigInteger uw = f.mul(u, w);
+    	BigInteger yu2 = f.mul(P.getY(), f.add(u, u));
+    	BigInteger yu8 = f.add(f.sqr(yu2), f.sqr(yu2)); /* 8Y^2u^2 = 2(2Yu)^2 */
+    	BigInteger u2 = f.add(u, u);
+    	R.setY(f.sub(f.mul(t, f.sub(v4, w)), yu8));
+    	R.setX(f.add(uw, uw));
+    	R.setZ(f.mul(f.sqr(u2), u2)); /* 8u^3 = (2u)^3 */
+    }
+
+    /* scales the z coordinate back down to 1, or infinity down to (0, 1, 0) */
+    private static void normalize(BigPoint P, BigPrimeField f) {
+    	if(P.isInfinity()) {
+    		P.set(new BigPoint());
+    		return;
+    	}
+    	BigInteger inv = f.inverse(P.getZ());
+    	P.setX(f.mul(P.getX(), inv));
+    	P.setY(f.mul(P.getY(), inv));
+    	P.setZ(BigInteger.ONE);
+    }
+
+    private static BigPoint reduced(BigPoint P, BigPrimeField f) {
+    	return new BigPoint(f.reduce(P.getX()), f.reduce(P.getY()), f.reduce(P.getZ()));
+    }
+
+    public BigPoint addHelper(BigPoint Q, BigInteger a, BigInteger b, BigInteger p) { /* P + Q without scaling z back down to 1 */
+    	BigPrimeField f = BigPrimeField.of(p);
+    	BigPoint R = new BigPoint();
+    	addInto(reduced(this, f), reduced(Q, f), f.reduce(a), f, R);
+    	return R;
+    }
+
+    public BigPoint add(BigPoint Q, BigInteger a, BigInteger b, BigInteger p) {
+    	BigPoint R = addHelper(Q, a, b, p);
+    	normalize(R, BigPrimeField.of(p));
+    	return R;
+    }
+
+    public BigPoint mult(BigInteger k, BigInteger a, BigInteger b, BigInteger p) { /* compute kP by left-to-right double-and-add */
+    	BigPrimeField f = BigPrimeField.of(p);
+    	BigInteger aa = f.reduce(a);
+    	BigPoint base = reduced(this, f);
+    	if(k.signum() < 0) {
+    		k = k.negate();
+    		base.setY(f.neg(base.getY()));
+    	}
+    	if(f.getLimbField() != null) {
+    		return new Limbs(f.getLimbField(), aa).mult(k, base);
+    	}
+    	BigPoint R = new BigPoint(); /* the only accumulator, updated in place */
+    	for(int i = k.bitLength() - 1; i >= 0; i--) {
+    		doubleInto(R, aa, f, R);
+    		if(k.testBit(i)) {
+    			addInto(R, base, aa, f, R);
+    		}
+    	}
+    	normalize(R, f);
+    	return R;
+    }
+
+    public BigPoint mult(long k, BigInteger a, BigInteger b, BigInteger p) {
+    	return mult(BigInteger.valueOf(k), a, b, p);
+    }
+
+    /* Point's Jacobian scalar multiplication (the wNAF loop of Point.mult with jacobianDouble,
+    jacobianAddAffine, and jacobianAddChudnovsky for the table) on PrimeField256 limbs. A Jacobian
+    point is a long[3][4] holding X, Y, Z, which is (X/Z^2, Y/Z^3) in affine coordinates, with Z = 0
+    for infinity. All temporaries are allocated once per scalar multiplication. */
+    private static final class Limbs {
+    	private final PrimeField256 f;
+    	private final long[] a = new long[4];
+    	private final boolean aZero;
+    	private final boolean minus3;
+    	private final long[] xx = new long[4], yy = new long[4], yyyy = new long[4], zz = new long[4];
+    	private final long[] s = new long[4], m = new long[4], t = new long[4], u = new long[4];
+    	private final long[] h = new long[4], r = new long[4], hh = new long[4], j = new long[4], v = new long[4];
+
+    	Limbs(PrimeField256 f, BigInteger a) {
+    		this.f = f;
+    		f.toMont(a, this.a);
+    		aZero = a.signum() == 0;
+    		minus3 = a.equals(f.getP().subtract(BigInteger.valueOf(3)));
+    	}
+
+    	/* R = 2R, in place. dbl-2001-b for a = -3 (3M + 5S), otherwise dbl-2007-bl (2M + 8S, or
+    	2M + 5S for a = 0) */
+    	void dbl(long[][] R) {
+    		if(PrimeField256.isZero(R[2])) { /* 2*infinity = infinity */
+    			return;
+    		}
+    		if(minus3) { /* zz = delta, yy = gamma, s = beta, m = alpha */
+    			f.sqr(R[2], zz);
+    			f.sqr(R[1], yy);
+    			f.mul(R[0], yy, s);
+    			f.sub(R[0], zz, t);
+    			f.add(R[0], zz, u);
+    			f.mul(t, u, t);
+    			f.add(t, t, m);
+    			f.add(m, t, m); /* 3(X - Z^2)(X + Z^2) = 3X^2 - 3Z^4 */
+    			f.add(s, s, s);
+    			f.add(s, s, s); /* 4 beta */
+    			f.add(R[1], R[2], t);
+    			f.sqr(t, t);
+    			f.sub(t, yy, t);
+    			f.sub(t, zz, R[2]); /* 2YZ */
+    			f.sqr(m, t);
+    			f.sub(t, s, t);
+    			f.sub(t, s, R[0]);
+    			f.sub(s, R[0], t);
+    			f.mul(m, t, t);
+    			f.sqr(yy, u);
+    			f.add(u, u, u);
+    			f.add(u, u, u);
+    			f.add(u, u, u);
+    			f.sub(t, u, R[1]);
+    			return;
+    		}
+    		f.sqr(R[0], xx);
+    		f.sqr(R[1], yy);
+    		f.sqr(yy, yyyy);
+    		f.sqr(R[2], zz);
+    		f.add(R[0], yy, t);
+    		f.sqr(t, t);
+    		f.sub(t, xx, t);
+    		f.sub(t, yyyy, t);
+    		f.add(t, t, s); /* 2((X + Y^2)^2 - X^2 - Y^4) = 4XY^2 */
+    		f.add(xx, xx, m);
+    		f.add(m, xx, m);
+    		if(!aZero) {
+    			f.sqr(zz, t);
+    			f.mul(t, a, t);
+    			f.add(m, t, m); /* 3X^2 + aZ^4 */
+    		}
+    		f.add(R[1], R[2], t);
+    		f.sqr(t, t);
+    		f.sub(t, yy, t);
+    		f.sub(t, zz, R[2]); /* 2YZ */
+    		f.sqr(m, t);
+    		f.sub(t, s, t);
+    		f.sub(t, s, R[0]);
+    		f.sub(s, R[0], t);
+    		f.mul(m, t, t);
+    		f.add(yyyy, yyyy, u);
+    		f.add(u, u, u);
+    		f.add(u, u, u);
+    		f.sub(t, u, R[1]);
+    	}
+
+    	/* R = R + Q for an affine point Q = (x, y), in place (madd-2007-bl, 7M + 4S) */
+    	void addAffine(long[][] R, long[][] Q) {
+    		if(PrimeField256.isZero(R[2])) { /* infinity + Q = Q */
+    			PrimeField256.copy(Q[0], R[0]);
+    			PrimeField256.copy(Q[1], R[1]);
+    			f.setOne(R[2]);
+    			return;
+    		}
+    		f.sqr(R[2], zz);
+    		f.mul(Q[0], zz, h);
+    		f.sub(h, R[0], h);
+    		f.mul(R[2], zz, r);
+    		f.mul(Q[1], r, r);
+    		f.sub(r, R[1], r);
+    		if(PrimeField256.isZero(h)) { /* R = +-Q */
+    			plusMinus(R);
+    			return;
+    		}
+    		f.sqr(h, hh);
+    		f.add(hh, hh, u);
+    		f.add(u, u, u); /* I = 4H^2 */
+    		f.mul(h, u, j);
+    		f.mul(R[0], u, v);
+    		f.add(r, r, r);
+    		f.sqr(r, t);
+    		f.sub(t, j, t);
+    		f.sub(t, v, t);
+    		f.sub(t, v, t); /* X3 */
+    		f.add(R[2], h, u);
+    		f.sqr(u, u);
+    		f.sub(u, zz, u);
+    		f.sub(u, hh, R[2]); /* 2Z1H */
+    		f.mul(R[1], j, u);
+    		f.add(u, u, u);
+    		f.sub(v, t, v);
+    		f.mul(r, v, v);
+    		f.sub(v, u, R[1]);
+    		PrimeField256.copy(t, R[0]);
+    	}
+
+    	/* R = R + C for C = (X2, Y2, Z2, Z2^2, Z2^3) in Chudnovsky coordinates, in place (11M + 3S) */
+    	void addChudnovsky(long[][] R, long[][] C) {
+    		if(PrimeField256.isZero(C[2])) { /* R + infinity = R */
+    			return;
+    		}
+    		if(PrimeField256.isZero(R[2])) {
+    			copy(C, R);
+    			return;
+    		}
+    		f.sqr(R[2], zz);
+    		f.mul(R[0], C[3], xx); /* U1 */
+    		f.mul(R[1], C[4], s); /* S1 */
+    		f.mul(C[0], zz, h);
+    		f.sub(h, xx, h);
+    		f.mul(R[2], zz, r);
+    		f.mul(C[1], r, r);
+    		f.sub(r, s, r);
+    		if(PrimeField256.isZero(h)) {
+    			plusMinus(R);
+    			return;
+    		}
+    		f.sqr(h, hh);
+    		f.mul(h, hh, j);
+    		f.mul(xx, hh, v);
+    		f.sqr(r, t);
+    		f.sub(t, j, t);
+    		f.sub(t, v, t);
+    		f.sub(t, v, t); /* X3 */
+    		f.mul(R[2], C[2], u);
+    		f.mul(u, h, R[2]);
+    		f.sub(v, t, v);
+    		f.mul(r, v, v);
+    		f.mul(s, j, u);
+    		f.sub(v, u, R[1]);
+    		PrimeField256.copy(t, R[0]);
+    	}
+
+    	/* the addition formulas break down when both points have the same x: R + R = 2R if the y's
+    	agree too (r = 0), otherwise R + (-R) = infinity */
+    	private void plusMinus(long[][] R) {
+    		if(PrimeField256.isZero(r)) {
+    			dbl(R);
+    		}
+    		else {
+    			f.setOne(R[0]);
+    			f.setOne(R[1]);
+    			R[2][0] = R[2][1] = R[2][2] = R[2][3] = 0;
+    		}
+    	}
+
+    	private static void copy(long[][] P, long[][] R) { /* the X, Y, Z of P into R */
+    		PrimeField256.copy(P[0], R[0]);
+    		PrimeField256.copy(P[1], R[1]);
+    		PrimeField256.copy(P[2], R[2]);
+    	}
+
+    	/* the odd multiples base, 3base, ..., (2n - 1)base in Jacobian coordinates, as in Point.oddMultiples */
+    	private long[][][] oddMultiples(int n, BigPoint base) {
+    		long[][][] T = new long[n][3][4];
+    		f.toMont(base.getZ(), T[0][2]); /* (X : Y : Z) projective is (XZ : YZ^2 : Z) Jacobian */
+    		f.toMont(base.getX(), t);
+    		f.mul(t, T[0][2], T[0][0]);
+    		f.toMont(base.getY(), t);
+    		f.sqr(T[0][2], u);
+    		f.mul(t, u, T[0][1]);
+    		if(n > 1) {
+    			long[][] C = new long[5][4];
+    			copy(T[0], C);
+    			dbl(C);
+    			f.sqr(C[2], C[3]);
+    			f.mul(C[3], C[2], C[4]);
+    			for(int i = 1; i < n; i++) {
+    				copy(T[i-1], T[i]);
+    				addChudnovsky(T[i], C);
+    			}
+    		}
+    		return T;
+    	}
+
+    	/* the Jacobian points T scaled to affine (x, y) with a single inversion (Montgomery's trick,
+    	as in PrimeField.batchMontInverse), or null for infinity */
+    	private long[][][] affine(long[][][] T) {
+    		int n = T.length;
+    		long[][] prefix = new long[n][4]; /* prefix[i] = product of the nonzero Z's before i */
+    		long[] acc = new long[4];
+    		f.setOne(acc);
+    		for(int i = 0; i < n; i++) {
+    			PrimeField256.copy(acc, prefix[i]);
+    			if(!PrimeField256.isZero(T[i][2])) {
+    				f.mul(acc, T[i][2], acc);
+    			}
+    		}
+    		long[] inv = new long[4];
+    		f.inverse(acc, inv);
+    		long[][][] rval = new long[n][][];
+    		for(int i = n-1; i >= 0; i--) {
+    			if(!PrimeField256.isZero(T[i][2])) {
+    				f.mul(inv, prefix[i], t); /* 1/Z */
+    				f.mul(inv, T[i][2], inv);
+    				f.sqr(t, u);
+    				rval[i] = new long[2][4];
+    				f.mul(T[i][0], u, rval[i][0]);
+    				f.mul(u, t, u);
+    				f.mul(T[i][1], u, rval[i][1]);
+    			}
+    		}
+    		return rval;
+    	}
+
+    	/* kP for k >= 0 with a width-w NAF of k, as in Point.mult with Coordinates.JACOBIAN: the odd
+    	multiples are made affine with one inversion, so each nonzero digit is a mixed addition */
+    	BigPoint mult(BigInteger k, BigPoint base) {
+    		if(k.signum() == 0 || base.isInfinity()) {
+    			return new BigPoint();
+    		}
+    		int w = ECMath.wNAFWidth(k.bitLength());
+    		int[] naf = ECMath.wNAF(k, w);
+    		long[][][] pos = affine(oddMultiples(1 << (w-2), base));
+    		long[][][] neg = new long[pos.length][][];
+    		for(int i = 0; i < pos.length; i++) {
+    			if(pos[i] != null) {
+    				neg[i] = new long[2][4];
+    				PrimeField256.copy(pos[i][0], neg[i][0]);
+    				f.neg(pos[i][1], neg[i][1]);
+    			}
+    		}
+    		long[][] R = new long[3][4];
+    		f.setOne(R[0]);
+    		f.setOne(R[1]); /* R = infinity */
+    		for(int i = naf.length - 1; i >= 0; i--) {
+    			dbl(R);
+    			if(naf[i] != 0) {
+    				long[][] Q = (naf[i] > 0) ? pos[naf[i] >> 1] : neg[(-naf[i]) >> 1];
+    				if(Q != null) { /* null is infinity, which adds nothing */
+    					addAffine(R, Q);
+    				}
+    			}
+    		}
+    		return toPoint(R);
+    	}
+
+    	BigPoint toPoint(long[][] R) { /* scale back down to (X/Z^2, Y/Z^3, 1) and leave Montgomery form */
+    		if(PrimeField256.isZero(R[2])) {
+    			return new BigPoint();
+    		}
+    		f.inverse(R[2], t);
+    		f.sqr(t, u);
+    		f.mul(R[0], u, v);
+    		f.mul(u, t, u);
+    		f.mul(R[1], u, u);
+    		return new BigPoint(f.fromMont(v), f.fromMont(u), BigInteger.ONE);
+    	}
+    }
+}
@@ -0,0 +1,139 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class implements arithmetic in the prime field GF(p) for primes of
+ * any size, using java.math.BigInteger. It plays the same role for BigPoint
+ * and BigEllipticCurve that PrimeField plays for Point and EllipticCurve, so
+ * the standardized curves (P-256, secp256k1, ...) can be loaded into the toolkit.
+ *
+ * All methods take and return residues in [0, p). BigInteger is immutable, so
+ * every operation still creates a new BigInteger; the point arithmetic keeps
+ * that to a minimum by reducing only once per product and by reusing its
+ * BigPoint accumulators instead of allocating new points. For p < 2^256 the
+ * field also carries a PrimeField256, which BigPoint.mult uses instead.
+ *
+ * If p = 2^k - c with c at most half as long as p (P-384, P-521, and other
+ * Mersenne-like primes), reduce folds the bits above 2^k back down using
+ * 2^k = c (mod p) instead of dividing by p. Primes that don't pass that test
+ * can still be registered with registerSpecialForm to get the same treatment.
+ */
+
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class BigPrimeField {
+
+	private final BigInteger p;
+	private final PrimeField256 limbs; /* fixed-limb arithmetic for p < 2^256, otherwise null */
+	private final int k; /* p = 2^k - c for the special form, k = 0 otherwise */
+	private final BigInteger c;
+	private final BigInteger mask; /* 2^k - 1 */
+
+	private static volatile BigPrimeField cached = null;
+	private static final Set<BigInteger> registered = ConcurrentHashMap.newKeySet();
+
+	public BigPrimeField(BigInteger p) {
+		this(p, true);
+	}
+
+	/* detectSpecialForm = false forces generic reduction (used for benchmarks) */
+	public BigPrimeField(BigInteger p, boolean detectSpecialForm) {
+		if(p.signum() <= 0 || !p.testBit(0)) {
+			throw new IllegalArgumentException("BigPrimeField needs an odd prime modulus, got " + p);
+		}
+		this.p = p;
+		this.limbs = PrimeField256.supports(p) ? new PrimeField256(p, detectSpecialForm) : null;
+		int bits = p.bitLength();
+		BigInteger diff = BigInteger.ONE.shiftLeft(bits).subtract(p);
+		if(detectSpecialForm && (2*diff.bitLength() <= bits || registered.contains(p))) {
+			k = bits;
+			c = diff;
+			mask = BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE);
+		}
+		else {
+			k = 0;
+			c = null;
+			mask = null;
+		}
+	}
+
+	/* use the folding reduction for p even though 2^k - p is more than half as long as p */
+	public static void registerSpecialForm(BigInteger p) {
+		registered.add(p);
+		cached = null;
+	}
+
+	public boolean isSpecialForm() {
+		return k != 0;
+	}
+
+	public static BigPrimeField of(BigInteger p) { /* returns a (possibly cached) field for the modulus p */
+		BigPrimeField f = cached;
+		if(f == null || !f.p.equals(p)) {
+			f = new BigPrimeField(p);
+			cached = f;
+		}
+		return f;
+	}
+
+	public BigInteger getP() {
+		return p;
+	}
+
+	public PrimeField256 getLimbField() { /* null if p is too large for PrimeField256 */
+		return limbs;
+	}
+
+	public BigInteger reduce(BigInteger a) { /* any integer, possibly negative, down to [0, p) */
+		if(k == 0 || a.signum() < 0) {
+			return a.mod(p);
+		}
+		while(a.bitLength() > k) { /* a = h*2^k + l = h*c + l */
+			a = a.shiftRight(k).multiply(c).add(a.and(mask));
+		}
+		return a.compareTo(p) >= 0 ? a.subtract(p) : a;
+	}
+
+	public BigInteger mul(BigInteger a, BigInteger b) {
+		return reduce(a.multiply(b));
+	}
+
+	public BigInteger sqr(BigInteger a) {
+		return reduce(a.multiply(a));
+	}
+
+	public BigInteger add(BigInteger a, BigInteger b) {
+		BigInteger rval = a.add(b);
+		return rval.compareTo(p) >= 0 ? rval.subtract(p) : rval;
+	}
+
+	public BigInteger sub(BigInteger a, BigInteger b) {
+		BigInteger rval = a.subtract(b);
+		return rval.signum() < 0 ? rval.add(p) : rval;
+	}
+
+	public BigInteger neg(BigInteger a) {
+		return a.signum() == 0 ? a : p.subtract(a);
+	}
+
+	public BigInteger inverse(BigInteger a) { /* returns null for a = 0, like Polynomial.inverse */
+		if(a.signum() == 0) {
+			return null;
+		}
+		return a.modInverse(p);
+	}
+
+	public BigInteger pow(BigInteger a, BigInteger e) {
+		return a.modPow(e, p);
+	}
+
+	public int legendre(BigInteger a) { /* Euler's criterion: a^((p-1)/2) = (a/p) */
+		a = reduce(a);
+		if(a.signum() == 0) {
+			return 0;
+		}
+		return pow(a, p.shiftRight(1)).equals(BigInteger.ONE) ? 1 : -1;
+	}
+}
@@ -43,6 +43,8 @@ public class BinaryEllipticCurve {
     private Polynomial a;
     private Polynomial b;
     private Polynomial modulus;
+    
+    private static final int WALK_BLOCK = 1024; /* points per batch normalization in log, pointOrder, and listGmults */
    
     public BinaryEllipticCurve(Polynomial a, Polynomial b, Polynomial modulus) {
         this.a = a;
@@ -119,19 +121,19 @@ public class BinaryEllipticCurve {
 	}
 	
 	public long pointOrder(PolynomialPoint G) {		
-		Polynomial a = getA();
-		Polynomial b = getB();
-		Polynomial modulus = getModulus();
-		PolynomialPoint infinity = new PolynomialPoint();
 		long temp = 1 << getModulus().degree(); // use max possible order to avoid O(q^2) curve order computation
 		long N = (long)(temp + 1 + 2*Math.sqrt(temp));
-		PolynomialPoint P = new PolynomialPoint(); // P = infinity
-		
-		for(int i = 1; i <= N; i++) {
-			P = P.add(G, a, b, modulus);
-			if(P.equals(infinity)) {
-				return i;
+		PolynomialPoint infinity = new PolynomialPoint();
+		PolynomialPoint B = new PolynomialPoint(G); // B = iG at the start of each block
+		for(long i = 1; i <= N; i += WALK_BLOCK) {
+			int n = (int)Math.min(WALK_BLOCK, N - i + 1);
+			PolynomialPoint[] block = PolynomialPoint.walk(B, G, n, getA(), getB(), getModulus());
+			for(int j = 0; j < n; j++) {
+				if(block[j].equals(infinity)) {
+					return i + j;
+				}
 			}
+			B = block[n-1].add(new PolynomialPoint(G), getA(), getB(), getModulus());
 		}
 		return -1; /* error */
 	}
@@ -139,15 +141,26 @@ public class BinaryEllipticCurve {
 	public long log(PolynomialPoint P, PolynomialPoint G) { /* return k, where kG = P */
 		long temp = 1 << getModulus().degree(); // use max possible order to avoid O(q^2) curve order computation
 		long N = (long)(temp + 1 + 2*Math.sqrt(temp));
-		PolynomialPoint B = new PolynomialPoint(); // B = infinity
-		for(long i = 1; i <= N; i++) {
-			if((B = G.add(B, getA(), getB(), getModulus())).equals(P)) {
-				return i;
+		PolynomialPoint B = new PolynomialPoint(G); // B = iG at the start of each block
+		for(long i = 1; i <= N; i += WALK_BLOCK) {
+			int n = (int)Math.min(WALK_BLOCK, N - i + 1);
+			PolynomialPoint[] block = PolynomialPoint.walk(B, G, n, getA(), getB(), getModulus());
+			for(int j = 0; j < n; j++) {
+				if(block[j].equals(P, getModulus())) {
+					return i + j;
+				}
 			}
+			B = block[n-1].add(new PolynomialPoint(G), getA(), getB(), getModulus());
 		}
 		return -1; /* error */
 	}
 	
+	/* k with lo <= k <= hi and kG = P, or -1 if there isn't one, by parallel kangaroos in about
+	2sqrt(hi - lo) steps instead of a walk from G */
+	public long logInInterval(PolynomialPoint P, PolynomialPoint G, long lo, long hi) {
+		return new Kangaroo<PolynomialPoint>(Kangaroo.group(this), G).log(P, lo, hi);
+	}
+	
 	public String listPoints() {
 		ArrayList<Polynomial> polys = new ArrayList<Polynomial>();
 		for(int i = 0; i < modulus.degree(); i++) {
@@ -173,15 +186,18 @@ public class BinaryEllipticCurve {
 	}
 	
 	public String listGmults(PolynomialPoint G) {
-		String s = "";
+		StringBuilder s = new StringBuilder();
 		long N = pointOrder(G);
 		PolynomialPoint temp = new PolynomialPoint(G);
-		for(long i = 1; i < N; i++) {
-			s += temp + ", ";
-			temp = temp.add(G, getA(), getB(), getModulus());
+		for(long i = 1; i <= N; i += WALK_BLOCK) {
+			int n = (int)Math.min(WALK_BLOCK, N - i + 1);
+			PolynomialPoint[] block = PolynomialPoint.walk(temp, G, n, getA(), getB(), getModulus());
+			for(int j = 0; j < n; j++) {
+				s.append(block[j]).append(i + j < N ? ", " : "\n");
+			}
+			temp = block[n-1].add(new PolynomialPoint(G), getA(), getB(), getModulus());
 		}
-		s += temp + "\n";
-		return s;
+		return s.toString();
 	}
 	
 	public static String listECs(long m, Polynomial irred) throws IOException {
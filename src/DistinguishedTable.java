@@ -0,0 +1,56 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * The shared table of distinguished points for the parallel collision
+ * searches (Rho and Kangaroo): a key (an x-coordinate, or a hash of the
+ * point) -> two longs (the coefficients of the point, or a kangaroo's
+ * distance and herd). Many threads add to it at once, so it is open
+ * addressing in atomic arrays with no locks: a slot is claimed by setting
+ * its key from 0 to key + 1 with a compare-and-set, and its two values are
+ * filled in after, which a reader that finds the key waits for.
+ *
+ * The capacity is fixed. Once MAX_PROBES slots in a row are taken a point is
+ * dropped instead, which only costs the search a little time.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class DistinguishedTable {
+
+	private static final int MAX_PROBES = 64; /* a point is dropped rather than searching a full table */
+
+	private final AtomicLongArray keys, values;
+	private final int mask;
+
+	DistinguishedTable(int capacity) { /* a power of two */
+		keys = new AtomicLongArray(capacity);
+		values = new AtomicLongArray(2*capacity);
+		for(int i = 0; i < 2*capacity; i++) {
+			values.set(i, -1);
+		}
+		mask = capacity - 1;
+	}
+
+	/* stores (a, b) for the key (0 <= key < Long.MAX_VALUE, and b >= 0) and returns null, or returns
+	the (a, b) already there */
+	long[] putIfAbsent(long key, long a, long b) {
+		int i = (int)((key * 0xC2B2AE3D27D4EB4FL) >>> 32) & mask;
+		for(int probes = 0; probes < MAX_PROBES; probes++, i = (i + 1) & mask) {
+			long k = keys.get(i);
+			if(k == 0 && keys.compareAndSet(i, 0, key + 1)) {
+				values.set(2*i, a);
+				values.set(2*i + 1, b);
+				return null;
+			}
+			k = keys.get(i);
+			if(k == key + 1) {
+				while(values.get(2*i + 1) == -1) { /* claimed, but the values aren't there yet */
+					Thread.onSpinWait();
+				}
+				return new long[] {values.get(2*i), values.get(2*i + 1)};
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,494 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * Pollard's rho (the Rho class) spread over several JVMs, for logarithms too
+ * big for one. log makes this JVM the coordinator: it listens on a
+ * ServerSocket and launches the given number of local worker processes
+ * (java src.DistributedRho worker host port threads, with this JVM's class
+ * path). Workers on other machines can join at any time by running the same
+ * command against the coordinator's address and getPort() (setBindAddress
+ * has to be something other than localhost for that).
+ *
+ * Every worker that connects is sent the problem (the curve, G, n and P), the
+ * seed of the adders and the number of distinguished bits, which are the same
+ * for all of them so they all walk by the same function, and a walk seed of
+ * its own so their walks are different. It runs a Rho on its threads, and its
+ * distinguished points come back over the socket as (x, u, v), three longs.
+ * The coordinator keeps them all in a hash table, and two with the same x but
+ * different (u, v) give k. A worker that finds k from its own walks sends
+ * (SOLVED, k, 0).
+ *
+ * Workers can leave (or die) whenever they like: the points they found are
+ * already in the table, and the others go on. Once k is found the coordinator
+ * closes every connection, each worker notices its read returning end of
+ * stream and cancels its Rho, and local processes that haven't exited by then
+ * are destroyed. log also returns -1 when every local worker is gone and no
+ * other is connected (if there were local workers at all), or it's cancelled.
+ *
+ * With a checkpoint file, the table and the next walk seed (so resumed workers
+ * don't retrace old walks) are written every checkpointInterval milliseconds,
+ * and when log stops without k. Writes go to a temporary file that is renamed
+ * over the old one, so a crash never leaves half a checkpoint. A later log for
+ * the same problem starts from the checkpoint, and deletes it once k is found.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class DistributedRho {
+
+	public static final long SOLVED = -1; /* x of a message from a worker that found k itself */
+	private static final long SMALL = 1L << 32; /* below this n, a Rho in this JVM is done before the workers start */
+	private static final long POLL = 100; /* milliseconds between checks on the workers */
+
+	private final EllipticCurve E;
+	private final Point G;
+	private final long n;
+	private int workers = 2; /* local processes */
+	private int threadsPerWorker = 1;
+	private long seed = 1;
+	private String bindAddress = "127.0.0.1";
+	private int port = 0; /* any free port */
+	private File checkpoint = null;
+	private long checkpointInterval = 60000;
+
+	/* for one call to log */
+	private Point P;
+	private Rho solver; /* for Rho.solve */
+	private int dBits;
+	private volatile ServerSocket server;
+	private final Map<Long, long[]> table = new HashMap<Long, long[]>(); /* x -> (u, v) */
+	private long nextWalkSeed;
+	private final List<Socket> connections = new ArrayList<Socket>();
+	private final AtomicLong result = new AtomicLong(-1);
+	private final Object lock = new Object(); /* notified when k is found */
+	private volatile boolean cancelled = false;
+
+	/* G is a point of order n on E */
+	public DistributedRho(EllipticCurve E, Point G, long n) {
+		this.E = new EllipticCurve(E);
+		this.G = reduced(G, E.getP());
+		this.n = n;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public void setWorkers(int workers) { /* 0 to only use workers that join from elsewhere */
+		this.workers = Math.max(0, workers);
+	}
+
+	public int getThreadsPerWorker() {
+		return threadsPerWorker;
+	}
+
+	public void setThreadsPerWorker(int threadsPerWorker) {
+		this.threadsPerWorker = Math.max(1, threadsPerWorker);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public String getBindAddress() {
+		return bindAddress;
+	}
+
+	public void setBindAddress(String bindAddress) { /* e.g. 0.0.0.0 to let other machines join */
+		this.bindAddress = bindAddress;
+	}
+
+	public int getPort() { /* the port workers connect to, once log has started listening */
+		ServerSocket s = server;
+		return (s != null) ? s.getLocalPort() : port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public File getCheckpoint() {
+		return checkpoint;
+	}
+
+	public void setCheckpoint(File checkpoint) { /* null for none */
+		this.checkpoint = checkpoint;
+	}
+
+	public void setCheckpointInterval(long milliseconds) {
+		this.checkpointInterval = Math.max(POLL, milliseconds);
+	}
+
+	public int getDistinguished() { /* distinguished points in the table, including any from a checkpoint */
+		synchronized(table) {
+			return table.size();
+		}
+	}
+
+	public int getConnected() { /* workers connected right now */
+		synchronized(connections) {
+			return connections.size();
+		}
+	}
+
+	public void cancel() {
+		cancelled = true;
+		synchronized(lock) {
+			lock.notifyAll();
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/* k with 0 <= k < n and kG = P, or -1 if there isn't one, every worker left, or log was cancelled */
+	public long log(Point P) {
+		result.set(-1);
+		cancelled = false;
+		long p = E.getP();
+		if(n < SMALL) {
+			return new Rho(E, G, n).log(P);
+		}
+		if(!P.mult(n, E.getA(), E.getB(), p).isInfinity()) {
+			return -1; /* error */
+		}
+		this.P = reduced(P, p);
+		solver = new Rho(E, G, n);
+		dBits = Rho.distinguishedBits(n, Math.max(1, workers) * threadsPerWorker);
+		synchronized(table) {
+			table.clear();
+			nextWalkSeed = 1;
+			restore();
+		}
+		List<Process> processes = new ArrayList<Process>();
+		try {
+			ServerSocket listening = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+			server = listening;
+			Thread acceptor = new Thread(() -> accept(listening), "DistributedRho coordinator");
+			acceptor.setDaemon(true);
+			acceptor.start();
+			for(int i = 0; i < workers; i++) {
+				processes.add(launch(listening));
+			}
+			long saved = System.currentTimeMillis();
+			while(!done()) {
+				synchronized(lock) {
+					if(!done()) {
+						lock.wait(POLL);
+					}
+				}
+				if(checkpoint != null && System.currentTimeMillis() - saved >= checkpointInterval) {
+					save();
+					saved = System.currentTimeMillis();
+				}
+				if(workers > 0 && getConnected() == 0 && processes.stream().noneMatch(Process::isAlive)) {
+					break; /* every worker left */
+				}
+			}
+		}
+		catch(IOException e) {
+			return -1; /* error */
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt(); /* let the caller see it */
+			return -1; /* error */
+		}
+		finally {
+			stop(processes);
+		}
+		return result.get();
+	}
+
+	private boolean done() {
+		return cancelled || result.get() != -1;
+	}
+
+	private static Point reduced(Point Q, long p) {
+		Point[] R = {new Point(Math.floorMod(Q.getX(), p), Math.floorMod(Q.getY(), p), Math.floorMod(Q.getZ(), p))};
+		Point.normalizeAll(R, p);
+		return R[0];
+	}
+
+	/* a new local worker, connecting to the server's address (or localhost if it listens on all of them) */
+	private Process launch(ServerSocket listening) throws IOException {
+		InetAddress address = listening.getInetAddress();
+		String host = address.isAnyLocalAddress() ? "127.0.0.1" : address.getHostAddress();
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), DistributedRho.class.getName(),
+				"worker", host, String.valueOf(listening.getLocalPort()), String.valueOf(threadsPerWorker));
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return builder.start();
+	}
+
+	/* closes the server and every connection (which tells the workers to stop), then waits for the local ones */
+	private void stop(List<Process> processes) {
+		ServerSocket listening = server;
+		if(listening != null) { /* null if it was never opened */
+			try {
+				listening.close();
+			}
+			catch(IOException e) {
+				/* already closed */
+			}
+		}
+		synchronized(connections) {
+			for(Socket socket : connections) {
+				try {
+					socket.close();
+				}
+				catch(IOException e) {
+					/* already closed */
+				}
+			}
+			connections.clear();
+		}
+		for(Process process : processes) {
+			try {
+				if(!process.waitFor(5, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			}
+			catch(InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt(); /* the rest are killed without waiting */
+			}
+		}
+		server = null;
+		if(checkpoint != null) {
+			if(result.get() != -1) {
+				checkpoint.delete();
+			}
+			else {
+				save();
+			}
+		}
+	}
+
+	private void accept(ServerSocket listening) {
+		while(!done()) {
+			try {
+				Socket socket = listening.accept();
+				Thread thread = new Thread(() -> serve(socket), "DistributedRho connection");
+				thread.setDaemon(true);
+				thread.start();
+			}
+			catch(IOException e) {
+				return; /* the server was closed */
+			}
+		}
+	}
+
+	/* sends a worker the problem, then reads its distinguished points until it leaves or log is over */
+	private void serve(Socket socket) {
+		synchronized(connections) {
+			if(done()) {
+				try {
+					socket.close();
+				}
+				catch(IOException e) {
+					/* already closed */
+				}
+				return;
+			}
+			connections.add(socket);
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			long walkSeed;
+			synchronized(table) {
+				walkSeed = nextWalkSeed++;
+			}
+			long[] problem = {E.getA(), E.getB(), E.getP(), G.getX(), G.getY(), G.getZ(), n, P.getX(), P.getY(), P.getZ(), seed, walkSeed};
+			for(long value : problem) {
+				out.writeLong(value);
+			}
+			out.writeInt(dBits);
+			out.flush();
+			while(!done()) {
+				long x = in.readLong(), u = in.readLong(), v = in.readLong();
+				if(x == SOLVED) {
+					found(u);
+				}
+				else {
+					record(x, u, v);
+				}
+			}
+		}
+		catch(IOException e) {
+			/* the worker left, or the connection was closed because log is over */
+		}
+		finally {
+			synchronized(connections) {
+				connections.remove(socket);
+			}
+		}
+	}
+
+	/* adds a distinguished point to the table, and solves for k if another walk was there first */
+	private void record(long x, long u, long v) {
+		long[] other;
+		synchronized(table) {
+			other = table.putIfAbsent(x, new long[] {u, v});
+		}
+		if(other != null && (other[0] != u || other[1] != v)) {
+			found(solver.solve(P, u, v, other[0], other[1]));
+		}
+	}
+
+	private void found(long k) {
+		if(k >= 0 && k < n && E.mult(G, k).equals(P, E.getP()) && result.compareAndSet(-1, k)) {
+			synchronized(lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/* identifies the problem a checkpoint is for */
+	private String problem() {
+		return E.getA() + "," + E.getB() + "," + E.getP() + "," + G.getX() + "," + G.getY() + "," + G.getZ() + "," + n + "," + P.getX() + "," + P.getY()
+				+ "," + P.getZ() + "," + seed + "," + dBits;
+	}
+
+	/* writes the table to the checkpoint file, through a temporary file so the old one is only replaced by a whole one */
+	private void save() {
+		File temp = new File(checkpoint.getPath() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			synchronized(table) {
+				out.writeUTF(problem());
+				out.writeLong(nextWalkSeed);
+				out.writeInt(table.size());
+				for(Map.Entry<Long, long[]> entry : table.entrySet()) {
+					out.writeLong(entry.getKey());
+					out.writeLong(entry.getValue()[0]);
+					out.writeLong(entry.getValue()[1]);
+				}
+			}
+		}
+		catch(IOException e) {
+			return; /* keep the old checkpoint */
+		}
+		try {
+			Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(IOException e) {
+			temp.delete();
+		}
+	}
+
+	/* loads the checkpoint file into the table, if there is one for this problem. called holding the table's lock */
+	private void restore() {
+		if(checkpoint == null || !checkpoint.exists()) {
+			return;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint)))) {
+			if(!in.readUTF().equals(problem())) {
+				return; /* a different problem */
+			}
+			long walkSeed = in.readLong();
+			int size = in.readInt();
+			Map<Long, long[]> points = new HashMap<Long, long[]>();
+			for(int i = 0; i < size; i++) {
+				long x = in.readLong(), u = in.readLong(), v = in.readLong();
+				points.put(x, new long[] {u, v});
+			}
+			table.putAll(points);
+			nextWalkSeed = walkSeed;
+		}
+		catch(IOException e) {
+			/* unreadable, so start from scratch */
+		}
+	}
+
+	/* connects to a coordinator and walks on the given number of threads until it closes the connection */
+	public static void work(String host, int port, int threads) throws IOException, InterruptedException {
+		try(Socket socket = new Socket(host, port)) { /* closing the socket closes the streams, without flushing into a closed connection */
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			long a = in.readLong(), b = in.readLong(), p = in.readLong();
+			Point G = new Point(in.readLong(), in.readLong(), in.readLong());
+			long n = in.readLong();
+			Point P = new Point(in.readLong(), in.readLong(), in.readLong());
+			long seed = in.readLong(), walkSeed = in.readLong();
+			int dBits = in.readInt();
+			Rho rho = new Rho(new EllipticCurve(a, b, p), G, n);
+			rho.setThreads(threads);
+			rho.setSeed(seed);
+			rho.setSink((x, u, v) -> send(out, rho, x, u, v), walkSeed, dBits);
+			Thread watcher = new Thread(() -> { /* the coordinator closing the connection means stop */
+				try {
+					in.read();
+				}
+				catch(IOException e) {
+					/* closed */
+				}
+				rho.cancel();
+			}, "DistributedRho watcher");
+			watcher.setDaemon(true);
+			watcher.start();
+			long k = rho.log(P);
+			if(k >= 0) {
+				send(out, rho, SOLVED, k, 0);
+				watcher.join();
+			}
+		}
+	}
+
+	private static void send(DataOutputStream out, Rho rho, long x, long u, long v) {
+		synchronized(out) { /* from any of the worker's threads */
+			try {
+				out.writeLong(x);
+				out.writeLong(u);
+				out.writeLong(v);
+				out.flush();
+			}
+			catch(IOException e) {
+				rho.cancel(); /* the coordinator is gone */
+			}
+		}
+	}
+
+	/* java src.DistributedRho worker host port [threads] runs a worker. with no arguments, a small test */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length >= 3 && args[0].equals("worker")) {
+			int threads = (args.length >= 4) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+			work(args[1], Integer.parseInt(args[2]), threads);
+			return;
+		}
+		EllipticCurve E = new EllipticCurve(2, 3, 1099511627791L); /* p = 2^40 + 15 */
+		Point G = null;
+		for(long x = 0; G == null; x++) {
+			long rhs = Math.floorMod(ECMath.mulMod(ECMath.mulMod(x, x, E.getP()), x, E.getP()) + 2*x + 3, E.getP());
+			long y = ECMath.sqrt(rhs, E.getP());
+			if(y >= 0) {
+				G = new Point(x, y, 1);
+			}
+		}
+		long n = E.pointOrder(G);
+		DistributedRho rho = new DistributedRho(E, G, n);
+		long start = System.currentTimeMillis();
+		System.out.println(rho.log(E.mult(G, 123456789)) + " in " + (System.currentTimeMillis() - start) + "ms, "
+				+ rho.getDistinguished() + " distinguished points");
+	}
+}
@@ -0,0 +1,334 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class implements Lenstra's elliptic curve method (ECM) for finding
+ * factors of numbers that are too big for Pollard's rho in ECMath, such as
+ * 128-bit and larger group orders of BigEllipticCurves. ECM picks a random
+ * curve mod n and multiplies a point on it by every prime power up to a bound
+ * B1. If the order of the curve mod some prime factor q of n happens to be
+ * B1-smooth, the point becomes infinity mod q, which shows up as a nontrivial
+ * gcd of its z-coordinate with n.
+ *
+ * The curves are Montgomery curves By^2 = x^3 + Ax^2 + x with Suyama's
+ * parametrization, and only x and z are computed (the Montgomery ladder), so a
+ * doubling costs 5 multiplications and an addition 6. Stage 2 catches curves
+ * whose order has one extra prime factor between B1 and B2: it precomputes the
+ * baby steps jQ for j < D/2 with gcd(j, D) = 1 and walks the giant steps mDQ,
+ * and mD - j or mD + j is a prime exactly when x(mDQ) = x(jQ) for a curve that
+ * works. All the differences are multiplied together and tested with one gcd.
+ *
+ * The field arithmetic is PrimeField256 (which only needs n to be odd, not
+ * prime), so n must be below 2^256. Curves are independent, so they run in
+ * parallel on a fork-join pool, and every worker stops as soon as any curve
+ * finds a factor.
+ */
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class ECM {
+
+	/* B1 and the number of curves that give a good chance of finding a factor of up to 15, 20,
+	and 25 digits (from the usual tables, e.g. the GMP-ECM documentation). B2 = 100*B1 */
+	private static final long[] SCHEDULE_B1 = {2000, 11000, 50000};
+	private static final int[] SCHEDULE_CURVES = {25, 90, 300};
+
+	private ECM() {
+	}
+
+	/* a nontrivial factor of n (odd, composite, n < 2^256) found by running the given number of curves
+	with bounds B1 and B2 on all processors, or null if none of them found one */
+	public static BigInteger findFactor(BigInteger n, long B1, long B2, int curves) {
+		return findFactor(n, B1, B2, curves, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static BigInteger findFactor(BigInteger n, long B1, long B2, int curves, int threads) {
+		if(!PrimeField256.supports(n) || n.compareTo(BigInteger.valueOf(3)) <= 0) {
+			return null;
+		}
+		BitSet primes = sieve(Math.max(B1, B2));
+		AtomicReference<BigInteger> found = new AtomicReference<BigInteger>();
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			pool.invoke(new Curves(n, B1, B2, primes, found, 0, curves));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return found.get();
+	}
+
+	/* the complete factorization of n >= 1 as prime -> exponent. below 2^63 this is ECMath.factor;
+	above, small primes are divided out and ECM is run with growing bounds on each composite
+	piece. a piece that survives the whole schedule (no factor below about 25 digits) is left in
+	the map as it is, so check it with isProbablePrime if that matters */
+	public static SortedMap<BigInteger, Integer> factor(BigInteger n) {
+		SortedMap<BigInteger, Integer> factors = new TreeMap<BigInteger, Integer>();
+		if(n.signum() <= 0) {
+			return factors;
+		}
+		for(long q = 2; q < 1000 && n.bitLength() >= 63; q += (q == 2) ? 1 : 2) {
+			BigInteger Q = BigInteger.valueOf(q);
+			while(n.mod(Q).signum() == 0) {
+				factors.merge(Q, 1, Integer::sum);
+				n = n.divide(Q);
+			}
+		}
+		factorInto(n, factors);
+		return factors;
+	}
+
+	private static void factorInto(BigInteger n, SortedMap<BigInteger, Integer> factors) {
+		if(n.equals(BigInteger.ONE)) {
+			return;
+		}
+		if(n.bitLength() < 63) {
+			for(Map.Entry<Long, Integer> entry : ECMath.factor(n.longValue()).entrySet()) {
+				factors.merge(BigInteger.valueOf(entry.getKey()), entry.getValue(), Integer::sum);
+			}
+			return;
+		}
+		if(n.isProbablePrime(50) || !PrimeField256.supports(n)) {
+			factors.merge(n, 1, Integer::sum);
+			return;
+		}
+		for(int i = 0; i < SCHEDULE_B1.length; i++) {
+			BigInteger d = findFactor(n, SCHEDULE_B1[i], 100*SCHEDULE_B1[i], SCHEDULE_CURVES[i]);
+			if(d != null) {
+				factorInto(d, factors);
+				factorInto(n.divide(d), factors);
+				return;
+			}
+		}
+		factors.merge(n, 1, Integer::sum); /* no factor found */
+	}
+
+	private static BitSet sieve(long limit) { /* bit i is set if i is prime */
+		BitSet composite = new BitSet((int)limit + 1);
+		for(long i = 2; i*i <= limit; i++) {
+			if(!composite.get((int)i)) {
+				for(long j = i*i; j <= limit; j += i) {
+					composite.set((int)j);
+				}
+			}
+		}
+		BitSet primes = new BitSet((int)limit + 1);
+		primes.set(2, (int)limit + 1);
+		primes.andNot(composite);
+		return primes;
+	}
+
+	/* runs curves lo, ..., hi-1, splitting the range in half until there's one curve per task */
+	private static class Curves extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final BigInteger n;
+		private final long B1, B2;
+		private final BitSet primes;
+		private final AtomicReference<BigInteger> found;
+		private final int lo, hi;
+
+		Curves(BigInteger n, long B1, long B2, BitSet primes, AtomicReference<BigInteger> found, int lo, int hi) {
+			this.n = n;
+			this.B1 = B1;
+			this.B2 = B2;
+			this.primes = primes;
+			this.found = found;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if(found.get() != null) {
+				return;
+			}
+			if(hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Curves(n, B1, B2, primes, found, lo, mid), new Curves(n, B1, B2, primes, found, mid, hi));
+				return;
+			}
+			BigInteger d = new Curve(n, 6 + lo, found).run(B1, B2, primes);
+			if(d != null) {
+				found.compareAndSet(null, d);
+			}
+		}
+	}
+
+	/* one Montgomery curve mod n, with preallocated temporaries so the ladder allocates nothing */
+	private static class Curve {
+		private final BigInteger n;
+		private final PrimeField256 f;
+		private final AtomicReference<BigInteger> found;
+		private final long[] a24 = new long[4]; /* (A + 2)/4 */
+		private final long[] X = new long[4], Z = new long[4]; /* the current point */
+		private final long[] t1 = new long[4], t2 = new long[4], t3 = new long[4], t4 = new long[4];
+		private BigInteger factor = null; /* set if the setup already found a factor */
+
+		Curve(BigInteger n, long sigma, AtomicReference<BigInteger> found) {
+			this.n = n;
+			this.f = new PrimeField256(n);
+			this.found = found;
+			BigInteger s = BigInteger.valueOf(sigma);
+			BigInteger u = s.multiply(s).subtract(BigInteger.valueOf(5)).mod(n); /* Suyama: u = s^2 - 5, v = 4s */
+			BigInteger v = s.shiftLeft(2).mod(n);
+			BigInteger vu = v.subtract(u);
+			BigInteger num = vu.pow(3).multiply(u.multiply(BigInteger.valueOf(3)).add(v)).mod(n);
+			BigInteger den = u.pow(3).multiply(v).shiftLeft(4).mod(n);
+			BigInteger g = den.gcd(n);
+			if(!g.equals(BigInteger.ONE)) {
+				factor = g.equals(n) ? null : g;
+				f.toMont(BigInteger.ZERO, Z); /* run will skip this curve */
+				return;
+			}
+			f.toMont(num.multiply(den.modInverse(n)), a24);
+			f.toMont(u.pow(3), X); /* x = u^3/v^3 */
+			f.toMont(v.pow(3), Z);
+		}
+
+		BigInteger run(long B1, long B2, BitSet primes) {
+			if(factor != null || PrimeField256.isZero(Z)) {
+				return factor;
+			}
+			int count = 0;
+			for(int p = 2; p > 0 && p <= B1; p = primes.nextSetBit(p + 1), count++) { /* stage 1 */
+				long q = p;
+				while(q <= B1 / p) {
+					q *= p;
+				}
+				ladder(q, X, Z, X, Z);
+				if(count % 256 == 255 && found.get() != null) { /* every 256 primes, see if another curve won */
+					return null;
+				}
+			}
+			BigInteger g = gcd(Z);
+			if(!g.equals(BigInteger.ONE)) {
+				return g.equals(n) ? null : g;
+			}
+			return (B2 > B1) ? stage2(B1, B2, primes) : null;
+		}
+
+		private BigInteger stage2(long B1, long B2, BitSet primes) {
+			int D = (B2 - B1 > 100L*2310) ? 2310 : 210;
+			long[][] babyX = new long[D/2][], babyZ = new long[D/2][]; /* jQ for odd j < D/2 with gcd(j, D) = 1 */
+			long[] jx = X.clone(), jz = Z.clone(); /* jQ */
+			long[] dx = new long[4], dz = new long[4]; /* 2Q */
+			dbl(X, Z, dx, dz);
+			long[] px = X, pz = Z; /* (j - 2)Q, starting with -Q, whose x is that of Q */
+			for(int j = 1; j < D/2; j += 2) {
+				if(BigInteger.valueOf(j).gcd(BigInteger.valueOf(D)).equals(BigInteger.ONE)) {
+					babyX[j] = jx.clone();
+					babyZ[j] = jz.clone();
+				}
+				long[] nx = new long[4], nz = new long[4];
+				add(jx, jz, dx, dz, px, pz, nx, nz); /* (j+2)Q = jQ + 2Q, difference (j-2)Q */
+				px = jx;
+				pz = jz;
+				jx = nx;
+				jz = nz;
+			}
+			long m = Math.max(1, (B1 + D/2) / D);
+			long[] stepX = new long[4], stepZ = new long[4]; /* DQ */
+			long[] rx = new long[4], rz = new long[4]; /* mDQ */
+			long[] sx = new long[4], sz = new long[4]; /* (m-1)DQ */
+			ladder(D, X, Z, stepX, stepZ);
+			ladder(m*D, X, Z, rx, rz);
+			if(m > 1) {
+				ladder((m-1)*D, X, Z, sx, sz);
+			}
+			long[] acc = new long[4], t = new long[4], u = new long[4];
+			f.setOne(acc);
+			long[] nx = new long[4], nz = new long[4];
+			for(int step = 0; m*D - D/2 <= B2; m++, step++) {
+				for(int j = 1; j < D/2; j += 2) {
+					if(babyX[j] != null && (isPrime(primes, m*D - j, B1, B2) || isPrime(primes, m*D + j, B1, B2))) {
+						f.mul(rx, babyZ[j], t); /* x(mDQ) - x(jQ), times the z's */
+						f.mul(babyX[j], rz, u);
+						f.sub(t, u, t);
+						f.mul(acc, t, acc);
+					}
+				}
+				if(m == 1) {
+					dbl(rx, rz, nx, nz);
+				}
+				else {
+					add(rx, rz, stepX, stepZ, sx, sz, nx, nz);
+				}
+				PrimeField256.copy(rx, sx);
+				PrimeField256.copy(rz, sz);
+				PrimeField256.copy(nx, rx);
+				PrimeField256.copy(nz, rz);
+				if(step % 256 == 255 && found.get() != null) {
+					return null;
+				}
+			}
+			BigInteger g = gcd(acc);
+			return (g.equals(BigInteger.ONE) || g.equals(n)) ? null : g;
+		}
+
+		private static boolean isPrime(BitSet primes, long q, long B1, long B2) {
+			return q > B1 && q <= B2 && primes.get((int)q);
+		}
+
+		private BigInteger gcd(long[] a) {
+			return f.fromMont(a).gcd(n);
+		}
+
+		/* (x2 : z2) = 2(x : z), outputs may be the inputs */
+		private void dbl(long[] x, long[] z, long[] x2, long[] z2) {
+			f.add(x, z, t1);
+			f.sqr(t1, t1); /* (x + z)^2 */
+			f.sub(x, z, t2);
+			f.sqr(t2, t2); /* (x - z)^2 */
+			f.sub(t1, t2, t3); /* 4xz */
+			f.mul(t1, t2, x2);
+			f.mul(a24, t3, t4);
+			f.add(t4, t2, t4);
+			f.mul(t3, t4, z2);
+		}
+
+		/* (x3 : z3) = P + Q, given P - Q = (xd : zd), outputs may be the inputs */
+		private void add(long[] xp, long[] zp, long[] xq, long[] zq, long[] xd, long[] zd, long[] x3, long[] z3) {
+			f.sub(xp, zp, t1);
+			f.add(xq, zq, t2);
+			f.mul(t1, t2, t1); /* U */
+			f.add(xp, zp, t3);
+			f.sub(xq, zq, t4);
+			f.mul(t3, t4, t3); /* V */
+			f.add(t1, t3, t2);
+			f.sqr(t2, t2);
+			f.sub(t1, t3, t4);
+			f.sqr(t4, t4);
+			f.mul(zd, t2, t1);
+			f.mul(xd, t4, z3);
+			PrimeField256.copy(t1, x3);
+		}
+
+		/* (xr : zr) = k(x : z) for k >= 1 by the Montgomery ladder, outputs may be the inputs */
+		private void ladder(long k, long[] x, long[] z, long[] xr, long[] zr) {
+			long[] x0 = x.clone(), z0 = z.clone(); /* R0 = jP */
+			long[] x1 = new long[4], z1 = new long[4]; /* R1 = (j+1)P */
+			long[] xd = x.clone(), zd = z.clone(); /* R1 - R0 = P */
+			dbl(x0, z0, x1, z1);
+			for(int i = 62 - Long.numberOfLeadingZeros(k); i >= 0; i--) {
+				if(((k >>> i) & 1) == 1) {
+					add(x1, z1, x0, z0, xd, zd, x0, z0);
+					dbl(x1, z1, x1, z1);
+				}
+				else {
+					add(x1, z1, x0, z0, xd, zd, x1, z1);
+					dbl(x0, z0, x0, z0);
+				}
+			}
+			PrimeField256.copy(x0, xr);
+			PrimeField256.copy(z0, zr);
+		}
+	}
+}
@@ -7,75 +7,205 @@ package src;
  * includes modular exponentiation, inverses, square roots,
  * Jacobi (Legendre) symbols, primality testing, and factoring.
  * 
- * The factoring method just uses brute force. I considered
- * using something like Pollard's Rho algorithm for finding
- * prime factors, but that would require creating a list of
- * all factors from a list of prime factors. This could be done,
- * but it's overkill for dealing with relatively small groups.
- * (It's also possible to get stuck in a cycle that doesn't lead
- * to a nontrivial factor when using Pollard's Rho algorithm.)
+ * Factoring uses trial division by small primes and then Pollard's
+ * Rho algorithm (with Brent's cycle detection) on what's left, so a
+ * 64-bit group order factors in microseconds. The list of all factors
+ * is generated from the prime factorization. Rho can get stuck in a
+ * cycle that doesn't lead to a nontrivial factor, in which case it
+ * just starts over with a different polynomial.
  */
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class ECMath {
 	
+	private static final int SIEVE_LIMIT = 1 << 16;
+	private static final long[] SMALL_COMPOSITE = new long[SIEVE_LIMIT >> 7]; /* bit n/2 is set for odd composite n < 2^16 */
+	private static final int[] SMALL_PRIMES; /* the odd primes below 2^16 */
+	private static final long[] WITNESSES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+	private static final int SEGMENT = 128; /* odd candidates per nextPrime window */
+	
+	static { /* sieve of Eratosthenes over the odd numbers below 2^16 */
+		int count = 0;
+		for(int n = 3; n < SIEVE_LIMIT; n += 2) {
+			if(!isSmallComposite(n)) {
+				count++;
+				for(int m = (n < 256) ? n*n : SIEVE_LIMIT; m < SIEVE_LIMIT; m += 2*n) {
+					SMALL_COMPOSITE[m >> 7] |= 1L << ((m >> 1) & 63);
+				}
+			}
+		}
+		SMALL_PRIMES = new int[count];
+		for(int n = 3, i = 0; n < SIEVE_LIMIT; n += 2) {
+			if(!isSmallComposite(n)) {
+				SMALL_PRIMES[i++] = n;
+			}
+		}
+	}
+	
+	private static boolean isSmallComposite(long n) { /* n odd and below 2^16 */
+		return ((SMALL_COMPOSITE[(int)(n >> 7)] >>> ((n >> 1) & 63)) & 1) == 1;
+	}
+	
 	public static long modExp(long a, long b, long p) {
-		long rval = 1;
+		if((p & 1) == 1 && p > 1) { /* odd moduli go through Montgomery arithmetic */
+			return PrimeField.of(p).pow(a, b);
+		}
+		long rval = 1 % p;
+		a = Math.floorMod(a, p);
 		while(b > 0) {
 			if((b & 1) == 1) /* if b is odd */
-				rval = (rval * a) % p;
+				rval = mulMod(rval, a, p);
+			b >>= 1;
+			a = mulMod(a, a, p);
+		}
+		return rval;
+	}
+	
+	/* a*b (mod p) for 0 <= a, b < p without overflow, for moduli that PrimeField can't handle (even p) */
+	public static long mulMod(long a, long b, long p) {
+		if(a < (1L << 31) && b < (1L << 31)) {
+			return (a * b) % p;
+		}
+		long rval = 0;
+		while(b > 0) { /* double-and-add, every intermediate value is < 2p */
+			if((b & 1) == 1) {
+				rval = addMod(rval, a, p);
+			}
+			a = addMod(a, a, p);
 			b >>= 1;
-			a = (a * a) % p;
 		}
 		return rval;
 	}
 	
-	/* lazy way to compute a^(-1) (mod p) */
-	public static long inverse(long a, long p) { /* efficient enough since the numbers are pretty small */
-		if(a == 0) {
+	private static long addMod(long a, long b, long p) {
+		long rval = a + b;
+		if(rval < 0 || rval >= p) { /* a + b can wrap around if p > 2^62 */
+			rval -= p;
+		}
+		return rval;
+	}
+	
+	/* extended Euclidean algorithm on longs: nothing is allocated, and for 63-bit p it is about three
+	times faster than a^(p-2) (the shift-and-subtract binary version was slower still, since its
+	branches are unpredictable). returns -1 if a = 0 or a isn't invertible (mod p) */
+	public static long inverse(long a, long p) {
+		long r0 = p, r1 = Math.floorMod(a, p);
+		long t0 = 0, t1 = 1; /* invariant: t_i*a = r_i (mod p), and |t_i| <= p */
+		while(r1 != 0) {
+			long q = r0 / r1;
+			long temp = r0 - q*r1;
+			r0 = r1;
+			r1 = temp;
+			temp = t0 - q*t1;
+			t0 = t1;
+			t1 = temp;
+		}
+		if(r0 != 1) { /* gcd(a, p) != 1, which includes a = 0 */
 			return -1;
 		}
-		return modExp(a, p-2, p);
+		return (t0 < 0) ? t0 + p : t0;
 	}
 	
-	public static long sqrt(long a, long p) { /* Shanks' algorithm for sqrt(a) (mod p) */
-		if((a % p) == 0) /* sqrt(0) = 0 */
-			return 0;
-		if((p % 4) == 3) /* easy for p = 3 (mod 4) */
-			return modExp(a, (p+1)/4, p);
-		if((p % 8) == 5 && modExp(a, (p-1)/4, p) == 1) /* sometimes easy for p = 5 (mod 8) */
-			return modExp(a, (p+3)/8, p);
-		long e = 0; long q = p-1;
-		while(q % 2 == 0 && q > 0) {
-			e++;
-			q >>= 1;
-		}
-		long n = 2;
-		while(jacobi(n, p) != -1) {
-			n = (long)(Math.random() * p);
-		}
-		long z = modExp(n, q, p);
-		long y, r, x, b, t;
-		y = z;
-		r = e;
-		x = modExp(a, (q-1)/2, p);
-		b = (a * x * x) % p;
-		x = (a * x) % p;
-		while(b % p != 1) {
-			long m = 0;
-			while(modExp(b, 1<<m, p) != 1) {
-				m++;
-			}
-			t = modExp(y, 1<<(r-m-1), p);
-			y = (t * t) % p;
-			r = m;
-			x = (x * t) % p;
-			b = (b * y) % p;
-		}
-		return x;
+	/* Montgomery's trick: inverts every value with one inversion and 3(n-1) multiplications.
+	values are ordinary residues mod f.getP(), zeros (which have no inverse) give -1 like inverse */
+	public static long[] batchInverse(long[] values, PrimeField f) {
+		long[] rval = new long[values.length];
+		for(int i = 0; i < values.length; i++) {
+			rval[i] = f.toMont(values[i]);
+		}
+		f.batchMontInverse(rval, rval.length);
+		for(int i = 0; i < rval.length; i++) {
+			rval[i] = (rval[i] == 0) ? -1 : f.fromMont(rval[i]);
+		}
+		return rval;
+	}
+	
+	/* Shanks' algorithm for sqrt(a) (mod p), or -1 if a is not a square. the non-residue and the
+	other constants that only depend on p are kept in a QuadraticResidueTable */
+	public static long sqrt(long a, long p) {
+		return QuadraticResidueTable.of(p).sqrt(a);
+	}
+	
+	public static long modExp2(long a, long x, long b, long y, long p) { /* a^x * b^y (mod p), by Shamir's trick for odd p */
+		if((p & 1) == 1 && p > 1) {
+			return PrimeField.of(p).pow2(a, x, b, y);
+		}
+		return mulMod(modExp(a, x, p), modExp(b, y, p), p);
+	}
+	
+	/* sliding-window width for an exponent with the given number of bits (1 means plain binary),
+	roughly minimizing 2^(w-1) precomputed powers plus bits/(w+1) multiplications */
+	public static int windowWidth(int bits) {
+		if(bits <= 8) {
+			return 1;
+		}
+		if(bits <= 24) {
+			return 3;
+		}
+		return (bits <= 80) ? 4 : 5;
+	}
+	
+	/* width-w NAF of k >= 0, least significant digit first: k = sum of d[i]*2^i, where every nonzero
+	digit is odd with |d[i]| < 2^(w-1), and any two nonzero digits are at least w positions apart.
+	so a scalar multiplication needs the odd multiples P, 3P, ..., (2^(w-1) - 1)P (negatives are free)
+	and only about bits/(w+1) additions, against bits/2 for the binary method */
+	public static int[] wNAF(long k, int w) {
+		int[] digits = new int[65];
+		int i = 0; /* position of the lowest bit of k */
+		int n = 0;
+		long mask = (1L << w) - 1;
+		while(k != 0) { /* k is treated as unsigned, since k - d can pass 2^63 */
+			int z = Long.numberOfTrailingZeros(k); /* jump over a run of zero digits */
+			i += z;
+			k >>>= z;
+			int d = (int)(k & mask);
+			if(d >= (1 << (w-1))) { /* the signed residue of k mod 2^w */
+				d -= (1 << w);
+			}
+			digits[i] = d;
+			n = i + 1;
+			k -= d; /* now 2^w divides k, so the next w-1 digits are 0 */
+			k >>>= w;
+			i += w;
+		}
+		return Arrays.copyOf(digits, n);
+	}
+	
+	/* the same recoding for a BigInteger k >= 0 (BigPoint's scalars) */
+	public static int[] wNAF(BigInteger k, int w) {
+		int[] digits = new int[k.bitLength() + 1];
+		int i = 0;
+		int n = 0;
+		while(k.signum() != 0) {
+			int z = k.getLowestSetBit();
+			i += z;
+			k = k.shiftRight(z);
+			int d = k.intValue() & ((1 << w) - 1);
+			if(d >= (1 << (w-1))) {
+				d -= (1 << w);
+			}
+			digits[i] = d;
+			n = i + 1;
+			k = k.subtract(BigInteger.valueOf(d)).shiftRight(w);
+			i += w;
+		}
+		return Arrays.copyOf(digits, n);
+	}
+	
+	/* wNAF width for a scalar with the given number of bits: the sliding-window width, but at least 2 */
+	public static int wNAFWidth(int bits) {
+		return Math.max(2, windowWidth(bits));
 	}
 	
 	public static long jacobi(long a, long p) {
@@ -116,57 +246,278 @@ public class ECMath {
 		return rval;
 	}
 	
+	/* deterministic for every long: table lookup below 2^16, then trial division by the primes
+	below 256, then Miller-Rabin with Jim Sinclair's seven bases, which has no false positives
+	below 2^64 (so there's no Random and no error probability) */
 	public static boolean isPrime(long N) {
-		if(N == 0 || N == 1) {
-			return false;
-		}
-		if(N == 2) {
-			return true;
+		if(N < SIEVE_LIMIT) {
+			if(N < 2) {
+				return false;
+			}
+			if((N & 1) == 0) {
+				return N == 2;
+			}
+			return !isSmallComposite(N);
 		}
-		if(N % 2 == 0) {
+		if((N & 1) == 0) {
 			return false;
 		}
-		long s = N-1;
-		while(s % 2 == 0) { /* we can write N-1 = 2^k*s */
-			s /= 2;
+		for(int i = 0; SMALL_PRIMES[i] < 256; i++) {
+			if(N % SMALL_PRIMES[i] == 0) {
+				return false;
+			}
 		}
-		Random rand = new Random();
-		for(int i = 0; i < 50; i++) { // 50 iterations has failure rate of <= 1/2^100
-			long r = Math.floorMod(rand.nextLong(), N);
-			long a = r % (N-1) + 1;
-			long exp = s;
-			long mod = modExp(a, exp, N);
-			while(exp != N-1 && mod != 1 && mod != N-1) {
-				mod = Math.floorMod(mod * mod, N);
-				exp *= 2;
-			}
-			if(mod != N-1 && exp % 2 == 0) {
+		return millerRabin(N);
+	}
+	
+	private static boolean millerRabin(long N) { /* N odd and larger than every base */
+		PrimeField f = new PrimeField(N); /* not PrimeField.of, which would evict the caller's field */
+		int k = Long.numberOfTrailingZeros(N-1); /* we can write N-1 = 2^k*s */
+		long s = (N-1) >>> k;
+		long one = f.one();
+		long minusOne = f.neg(one);
+		for(long a : WITNESSES) {
+			if(a % N == 0) {
+				continue;
+			}
+			long x = f.montPow(f.toMont(a), s);
+			if(x == one || x == minusOne) {
+				continue;
+			}
+			int i = 1;
+			while(i < k && (x = f.sqr(x)) != minusOne) {
+				if(x == one) { /* a nontrivial square root of 1 */
+					return false;
+				}
+				i++;
+			}
+			if(i == k) {
 				return false;
 			}
 		}
 		return true;
 	}
 	
-	public static long randomPrime(int n) {
+	/* smallest prime >= n, or -1 if there is none below 2^63. above 2^16 this sieves a window of odd
+	candidates by the primes below 256 and only runs Miller-Rabin on the survivors */
+	public static long nextPrime(long n) {
+		if(n <= 2) {
+			return 2;
+		}
+		if(n < SIEVE_LIMIT) {
+			while(!isPrime(n)) {
+				n++;
+			}
+			return n;
+		}
+		long start = n | 1;
+		boolean[] composite = new boolean[SEGMENT]; /* composite[i] is for start + 2i */
+		while(start > 0) {
+			Arrays.fill(composite, false);
+			for(int i = 0; SMALL_PRIMES[i] < 256; i++) {
+				int q = SMALL_PRIMES[i];
+				long first = ((q - start % q) % q) * ((q + 1) / 2) % q; /* start + 2*first = 0 (mod q) */
+				for(int j = (int)first; j < SEGMENT; j += q) {
+					composite[j] = true;
+				}
+			}
+			for(int i = 0; i < SEGMENT; i++) {
+				long c = start + 2L*i;
+				if(c < 0) { /* overflow */
+					return -1;
+				}
+				if(!composite[i] && millerRabin(c)) {
+					return c;
+				}
+			}
+			start += 2L*SEGMENT;
+		}
+		return -1;
+	}
+	
+	public static long randomPrime(int n) { /* a random n-digit prime p >= 5, n <= 18 */
 		Random rand = new Random();
-		long rval = 0;
-		while(!isPrime(rval)) {
-			rval = Math.floorMod(rand.nextLong(), (int)Math.pow(10, n));
-			if(rval <= 3) { // want p >= 5
-				rval = 0;
+		long lo = 1;
+		for(int i = 1; i < n; i++) {
+			lo *= 10;
+		}
+		long hi = 10*lo - 1;
+		while(true) {
+			long rval = nextPrime(Math.max(5, lo + Math.floorMod(rand.nextLong(), hi - lo + 1)));
+			if(rval != -1 && rval <= hi) {
+				return rval;
+			}
+		}
+	}
+	
+	public static long randomPrimeBits(int bits) {
+		return randomPrimeBits(bits, true, new Random());
+	}
+	
+	/* a random prime with exactly the given number of bits (2 <= bits <= 63), -1 otherwise. the incremental
+	search takes the next prime after a random starting point, which costs a sieve and a few Miller-Rabin
+	tests, while the plain search tests fresh random candidates until one is prime (about
+	bits*ln(2)/2 full tests), which makes every prime equally likely */
+	public static long randomPrimeBits(int bits, boolean incremental, Random rand) {
+		if(bits < 2 || bits > 63) {
+			return -1; /* error */
+		}
+		long lo = 1L << (bits-1);
+		long hi = lo + (lo - 1);
+		while(true) {
+			long candidate = lo + (rand.nextLong() >>> (65 - bits)); /* in [2^(bits-1), 2^bits) */
+			if(incremental) {
+				long rval = nextPrime(candidate);
+				if(rval != -1 && rval <= hi) {
+					return rval;
+				}
+			}
+			else if(isPrime(candidate)) {
+				return candidate;
 			}
 		}
-		return rval;
 	}
 	
-	public static List<Long> allFactors(long N) { /* this is not optimally efficient, but this program is supposed to be
-	for instructive purposes only, and only uses fields with under 10000 elements */
+	public static List<Long> allFactors(long N) { /* every divisor of N in increasing order, built from factor(N) */
 		List<Long> factors = new ArrayList<Long>();
-		for(long i = 1; i <= N; i++) {
-			if(N % i == 0) {
-				factors.add(i);
+		if(N < 1) {
+			return factors;
+		}
+		for(long d : divisors(factor(N))) {
+			factors.add(d);
+		}
+		Collections.sort(factors);
+		return factors;
+	}
+	
+	/* the prime factorization of N as prime -> exponent (empty for N < 2): trial division by the
+	primes below 1024, then Pollard-Brent rho on whatever is left until every piece is prime */
+	public static SortedMap<Long, Integer> factor(long N) {
+		SortedMap<Long, Integer> factors = new TreeMap<Long, Integer>();
+		if(N < 2) {
+			return factors;
+		}
+		int twos = Long.numberOfTrailingZeros(N);
+		if(twos > 0) {
+			factors.put(2L, twos);
+			N >>= twos;
+		}
+		for(int i = 0; SMALL_PRIMES[i] < 1024 && (long)SMALL_PRIMES[i]*SMALL_PRIMES[i] <= N; i++) {
+			int q = SMALL_PRIMES[i];
+			int e = 0;
+			while(N % q == 0) {
+				N /= q;
+				e++;
 			}
+			if(e > 0) {
+				factors.put((long)q, e);
+			}
+		}
+		if(N > 1) {
+			factorLarge(N, factors);
 		}
 		return factors;
 	}
-}
\ No newline at end of file
+	
+	private static void factorLarge(long n, SortedMap<Long, Integer> factors) { /* n odd with no prime factors below 1024 */
+		if(n < 1024L*1024 || isPrime(n)) {
+			factors.merge(n, 1, Integer::sum);
+			return;
+		}
+		long d = pollardBrent(n);
+		factorLarge(d, factors);
+		factorLarge(n / d, factors);
+	}
+	
+	/* a nontrivial factor of the odd composite n by Pollard's rho with Brent's cycle detection. the
+	differences x - y are multiplied together (in Montgomery form) and only every 128 steps does one
+	gcd, backing up one step at a time if that batch overshot and the gcd came out as n */
+	private static long pollardBrent(long n) {
+		PrimeField f = new PrimeField(n);
+		for(long c = 1; ; c++) { /* f(y) = y^2 + c, and a new c if the cycle gives no factor */
+			long cM = f.toMont(c);
+			long x = 0, ys = 0, y = f.toMont(2), q = f.one(), g = 1;
+			for(long r = 1; g == 1; r <<= 1) {
+				x = y;
+				for(long i = 0; i < r; i++) {
+					y = f.add(f.sqr(y), cM);
+				}
+				for(long k = 0; k < r && g == 1; k += 128) {
+					ys = y;
+					for(long i = 0; i < Math.min(128, r - k); i++) {
+						y = f.add(f.sqr(y), cM);
+						q = f.mul(q, f.sub(x, y));
+					}
+					g = gcd(q, n); /* q is the product times R, and gcd(R, n) = 1 */
+				}
+			}
+			if(g == n) { /* redo the last batch one step at a time */
+				do {
+					ys = f.add(f.sqr(ys), cM);
+					g = gcd(f.sub(x, ys), n);
+				} while(g == 1);
+			}
+			if(g != n) {
+				return g;
+			}
+		}
+	}
+	
+	public static long gcd(long a, long b) {
+		a = Math.abs(a);
+		b = Math.abs(b);
+		while(b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+	
+	/* every divisor of the number with the given factorization, generated one at a time (in no
+	particular order) by counting through the exponents, so nothing is stored up front */
+	public static Iterable<Long> divisors(SortedMap<Long, Integer> factors) {
+		final long[] primes = new long[factors.size()];
+		final int[] maxExp = new int[factors.size()];
+		int k = 0;
+		for(Map.Entry<Long, Integer> entry : factors.entrySet()) {
+			primes[k] = entry.getKey();
+			maxExp[k++] = entry.getValue();
+		}
+		return new Iterable<Long>() {
+			public Iterator<Long> iterator() {
+				return new Iterator<Long>() {
+					private final int[] exp = new int[primes.length];
+					private long next = 1; /* 0 once every divisor has been returned */
+
+					public boolean hasNext() {
+						return next != 0;
+					}
+
+					public Long next() {
+						if(next == 0) {
+							throw new NoSuchElementException();
+						}
+						long rval = next;
+						int i = 0;
+						while(i < primes.length && exp[i] == maxExp[i]) { /* carry: reset the exponents that are full */
+							while(exp[i] > 0) {
+								next /= primes[i];
+								exp[i]--;
+							}
+							i++;
+						}
+						if(i == primes.length) {
+							next = 0;
+						}
+						else {
+							exp[i]++;
+							next *= primes[i];
+						}
+						return rval;
+					}
+				};
+			}
+		};
+	}
+}
@@ -11,11 +11,9 @@ package src;
  * implemented. There are also static methods for generating
  * lists of elliptic curves.
  * 
- * The logarithm calculator just uses brute force. I considered
- * using something like Pollard's Rho algorithm, but that would require
- * inverting numbers modulo n (or possibly modulo n/k for some k > 1 and
- * checking the k possibilities modulo n). This could be done, but
- * it's overkill for dealing with relatively small groups.
+ * The logarithm calculator splits the order of G into prime powers
+ * (PohligHellman) and solves each prime part with baby steps and giant
+ * steps, or Pollard's rho method (the Rho class) for large primes.
  */
 
 import java.util.ArrayList;
@@ -29,6 +27,22 @@ public class EllipticCurve {
     private long a;
     private long b;
     private long p;
+    private Point.Coordinates coordinates = Point.Coordinates.JACOBIAN; /* used by mult and pointOrder */
+    private GLV glv = null; /* the endomorphism for a = 0, looked up the first time mult needs it */
+    private boolean glvChecked = false;
+    private OrderStrategy orderStrategy = OrderStrategy.AUTO; /* used by order */
+    private long order = -1; /* |E|, remembered once it's been counted */
+    
+    private static final int WALK_BLOCK = 1024; /* points per batch normalization in listGmults */
+    private static final int PIPPENGER_THRESHOLD = 32; /* multiScalar uses Straus' method up to this many terms */
+    private static final long COUNT_THRESHOLD = 1L << 20; /* AUTO counts with the residue table up to this p */
+    
+    public enum OrderStrategy { /* ways for order to count the points */
+    	AUTO, /* whichever of the others suits p */
+    	COUNT, /* the sum of Legendre symbols, O(p) */
+    	BSGS, /* baby steps and giant steps with Mestre's twist, O(p^(1/4)) */
+    	SCHOOF /* Schoof's algorithm, polynomial in log p */
+    }
    
     public EllipticCurve(long a, long b, long p) {
         this.a = a;
@@ -40,6 +54,8 @@ public class EllipticCurve {
         this.a = E.getA();
         this.b = E.getB();
         this.p = E.getP();
+        this.coordinates = E.getCoordinates();
+        this.orderStrategy = E.getOrderStrategy();
     }
     
     public long getA() {
@@ -56,14 +72,194 @@ public class EllipticCurve {
     
     public void setA(long a) {
     	this.a = a;
+    	glvChecked = false;
+    	order = -1;
     }
     
     public void setB(long b) {
     	this.b = b;
+    	glvChecked = false;
+    	order = -1;
     }
     
     public void setP(long p) {
     	this.p = p;
+    	glvChecked = false;
+    	order = -1;
+    }
+    
+    public Point.Coordinates getCoordinates() {
+    	return coordinates;
+    }
+    
+    public void setCoordinates(Point.Coordinates coordinates) {
+    	this.coordinates = coordinates;
+    }
+    
+    public OrderStrategy getOrderStrategy() {
+    	return orderStrategy;
+    }
+    
+    public void setOrderStrategy(OrderStrategy orderStrategy) {
+    	this.orderStrategy = orderStrategy;
+    }
+    
+    /* kP in this curve's coordinate system. in Jacobian coordinates, curves y^2 = x^3 + b with
+    p = 1 (mod 3) and a prime number of points use the GLV endomorphism, so P must be on the curve */
+    public Point mult(Point P, long k) {
+    	if(coordinates == Point.Coordinates.JACOBIAN && getGLV() != null) {
+    		return glv.mult(P, k);
+    	}
+    	return P.mult(k, getA(), getB(), getP(), coordinates);
+    }
+    
+    /* a random point: a uniformly random x for which x^3 + ax + b is a square (mod p), with the y
+    that ECMath.sqrt returns, or null if 1000 x's in a row have no point (which only happens for tiny p) */
+    public Point randomPoint(Random rand) {
+    	PrimeField f = PrimeField.of(p);
+    	long ca = f.reduce(a), cb = f.reduce(b);
+    	for(int tries = 0; tries < 1000; tries++) {
+    		long x = Math.floorMod(rand.nextLong(), p);
+    		long y = ECMath.sqrt(f.add(f.mulMod(f.add(f.mulMod(x, x), ca), x), cb), p);
+    		if(y >= 0) {
+    			return new Point(x, y, 1);
+    		}
+    	}
+    	return null;
+    }
+    
+    public GLV getGLV() { /* the endomorphism used by mult, or null if this curve doesn't have one */
+    	if(!glvChecked) {
+    		glv = GLV.of(this);
+    		glvChecked = true;
+    	}
+    	return glv;
+    }
+    
+    /* kP for any k (negative too), given the order n of P or a multiple of it such as |E|, so the
+    scalar is first reduced mod n and the wNAF is no longer than n */
+    public Point mult(Point P, long k, long n) {
+    	return mult(P, Math.floorMod(k, n));
+    }
+    
+    /* u1*G + u2*Q, as in signature verification, with one shared chain of doublings */
+    public Point mult2(long u1, Point G, long u2, Point Q) {
+    	return multiScalar(new long[] {u1, u2}, new Point[] {G, Q});
+    }
+    
+    /* the sum of k[i]*P[i], i < n. negative k[i] are allowed, since -P is free. up to
+    PIPPENGER_THRESHOLD terms this is Straus' method (interleaved wNAFs), otherwise Pippenger's */
+    public Point multiScalar(long[] k, Point[] P) {
+    	checkLengths(k, P);
+    	return (k.length <= PIPPENGER_THRESHOLD) ? multiScalarStraus(k, P) : multiScalarPippenger(k, P);
+    }
+    
+    /* Straus' method: every P[i] gets a table of odd multiples for its own wNAF, and all the tables
+    are scaled to z = 1 with a single inversion. then one chain of doublings serves all the terms,
+    so n terms cost the doublings of one mult plus about n*bits/(w+1) mixed additions */
+    public Point multiScalarStraus(long[] k, Point[] P) {
+    	checkLengths(k, P);
+    	PrimeField f = PrimeField.of(getP());
+    	long aM = f.toMont(getA());
+    	boolean minus3 = f.reduce(getA()) == f.reduce(-3);
+    	int n = k.length;
+    	int bits = 0;
+    	for(long ki : k) {
+    		bits = Math.max(bits, 64 - Long.numberOfLeadingZeros(Math.abs(ki)));
+    	}
+    	int w = ECMath.wNAFWidth(bits);
+    	int m = 1 << (w-2); /* odd multiples per point */
+    	long[][] J = new long[n*m][];
+    	for(int i = 0; i < n; i++) { /* (2j + 1)P[i] in Jacobian coordinates */
+    		System.arraycopy(P[i].oddMultiples(m, aM, minus3, f), 0, J, i*m, m);
+    	}
+    	long[][] table = Point.affine(J, f);
+    	int[][] naf = new int[n][];
+    	int length = 0;
+    	for(int i = 0; i < n; i++) {
+    		naf[i] = ECMath.wNAF(Math.abs(k[i]), w); /* |Long.MIN_VALUE| is negative, but wNAF reads it as 2^63 */
+    		length = Math.max(length, naf[i].length);
+    	}
+    	long[] R = {f.one(), f.one(), 0};
+    	for(int j = length - 1; j >= 0; j--) {
+    		Point.jacobianDouble(R, aM, minus3, f);
+    		for(int i = 0; i < n; i++) {
+    			if(j < naf[i].length && naf[i][j] != 0) {
+    				long[] T = table[i*m + (Math.abs(naf[i][j]) >> 1)];
+    				if(T != null) {
+    					boolean negate = (naf[i][j] < 0) != (k[i] < 0);
+    					Point.jacobianAddAffine(R, T[0], negate ? f.neg(T[1]) : T[1], aM, minus3, f);
+    				}
+    			}
+    		}
+    	}
+    	return Point.fromJacobian(R, f);
+    }
+    
+    /* Pippenger's method: for each c-bit window of the scalars (top first), every P[i] is added to
+    the bucket of its digit, and the buckets are summed as B_1 + 2B_2 + ... with two running sums.
+    that's n + 2^(c+1) additions per window, about (n + 2^(c+1))*bits/c in all, and with c close
+    to log2(n) - 2 the cost per term keeps falling as n grows */
+    public Point multiScalarPippenger(long[] k, Point[] P) {
+    	checkLengths(k, P);
+    	PrimeField f = PrimeField.of(getP());
+    	long aM = f.toMont(getA());
+    	boolean minus3 = f.reduce(getA()) == f.reduce(-3);
+    	int n = k.length;
+    	long[][] base = affine(P, f);
+    	long[] negY = new long[n];
+    	int bits = 0;
+    	for(int i = 0; i < n; i++) {
+    		bits = Math.max(bits, 64 - Long.numberOfLeadingZeros(Math.abs(k[i])));
+    		if(base[i] != null) {
+    			negY[i] = (k[i] < 0) ? f.neg(base[i][1]) : base[i][1]; /* k[i]P[i] = |k[i]|(-P[i]) */
+    		}
+    	}
+    	int c = Math.max(2, 31 - Integer.numberOfLeadingZeros(n) - 2);
+    	int mask = (1 << c) - 1;
+    	long[][] bucket = new long[1 << c][3];
+    	long[] R = {f.one(), f.one(), 0};
+    	for(int window = (bits + c - 1) / c - 1; window >= 0; window--) {
+    		for(int j = 0; j < c; j++) {
+    			Point.jacobianDouble(R, aM, minus3, f);
+    		}
+    		for(long[] B : bucket) {
+    			B[0] = f.one();
+    			B[1] = f.one();
+    			B[2] = 0;
+    		}
+    		for(int i = 0; i < n; i++) {
+    			int d = (int)((Math.abs(k[i]) >>> (window*c)) & mask);
+    			if(d != 0 && base[i] != null) {
+    				Point.jacobianAddAffine(bucket[d], base[i][0], negY[i], aM, minus3, f);
+    			}
+    		}
+    		long[] sum = {f.one(), f.one(), 0}; /* B_top + ... + B_d */
+    		long[] acc = {f.one(), f.one(), 0}; /* the sum of those sums, which counts B_d d times */
+    		for(int d = mask; d > 0; d--) {
+    			Point.jacobianAddChudnovsky(sum, Point.toChudnovsky(bucket[d], f), aM, minus3, f);
+    			Point.jacobianAddChudnovsky(acc, Point.toChudnovsky(sum, f), aM, minus3, f);
+    		}
+    		Point.jacobianAddChudnovsky(R, Point.toChudnovsky(acc, f), aM, minus3, f);
+    	}
+    	return Point.fromJacobian(R, f);
+    }
+    
+    /* the points as affine (x, y) in Montgomery form, or null for infinity, with one inversion:
+    (X : Y : Z) projective is (XZ : YZ^2 : Z) Jacobian, which Point.affine scales down */
+    private static long[][] affine(Point[] P, PrimeField f) {
+    	long[][] J = new long[P.length][];
+    	for(int i = 0; i < P.length; i++) {
+    		long Z = f.toMont(P[i].getZ());
+    		J[i] = new long[] {f.mul(f.toMont(P[i].getX()), Z), f.mul(f.toMont(P[i].getY()), f.sqr(Z)), Z};
+    	}
+    	return Point.affine(J, f);
+    }
+    
+    private static void checkLengths(long[] k, Point[] P) {
+    	if(k.length != P.length) {
+    		throw new IllegalArgumentException("multiScalar needs one scalar per point, got " + k.length + " scalars and " + P.length + " points");
+    	}
     }
    
 	public String toString() {
@@ -90,47 +286,90 @@ public class EllipticCurve {
 	}
 	
 	public boolean isEC() {
-		long a = getA();
-		long b = getB();
-		return Math.floorMod(4*a*a*a + 27*b*b, getP()) != 0; /* make sure no multiple roots */
+		PrimeField f = PrimeField.of(getP());
+		long a = f.reduce(getA());
+		long b = f.reduce(getB());
+		long a3 = f.mulMod(a, f.mulMod(a, a));
+		long b2 = f.mulMod(b, b);
+		return f.add(f.mulMod(f.reduce(4), a3), f.mulMod(f.reduce(27), b2)) != 0; /* make sure no multiple roots */
 	}
 	
-	public long order() { /* O(plogp) algorithm */
-		long order = getP() + 1;
-		for(long x = 0; x < getP(); x++) {
-			long jac = ECMath.jacobi(x*x*x + getA()*x + getB(), getP());
-			order += jac;
+	public long order() {
+		return order(orderStrategy);
+	}
+	
+	/* |E| counted with the given strategy, unless it's already known. COUNT is LegendreSum on all
+	processors. BSGS and SCHOOF need a prime p and a nonsingular curve, and fall back to COUNT
+	otherwise (or if they fail). AUTO counts for p up to COUNT_THRESHOLD and uses BSGS above it,
+	then SCHOOF if that fails. y^2 = x^3 + b with p = 1 (mod 3) has only six possible orders, which
+	GLV.jZeroOrder tells apart, so AUTO uses that first. COUNT needs p < 2^62, so for larger p the
+	result is -1 if the point methods fail (or if |E| is 2^63 or more, which doesn't fit in a long) */
+	public long order(OrderStrategy strategy) {
+		if(order > 0) {
+			return order;
+		}
+		boolean large = getP() > 3 && ECMath.isPrime(getP()) && isEC(); /* the point methods apply */
+		if(strategy == OrderStrategy.AUTO && Math.floorMod(getA(), getP()) == 0 && getP() % 3 == 1) {
+			order = GLV.jZeroOrder(getB(), getP());
+		}
+		if(order <= 0 && large && (strategy == OrderStrategy.BSGS || (strategy == OrderStrategy.AUTO && getP() > COUNT_THRESHOLD))) {
+			order = new Mestre(this).order();
+		}
+		if(order <= 0 && large && (strategy == OrderStrategy.SCHOOF || (strategy == OrderStrategy.AUTO && getP() > COUNT_THRESHOLD))) {
+			order = new Schoof(this).order();
+		}
+		if(order <= 0 && getP() < LegendreSum.LIMIT) {
+			order = LegendreSum.order(getA(), getB(), getP());
+		}
+		if(order <= 0) {
+			order = -1; /* error */
 		}
 		return order;
 	}
 	
-	public long pointOrder(Point G) {
-		List<Long> factors = ECMath.allFactors(order());
-		for(long l : factors) {
-			if(G.mult(l, getA(), getB(), getP()).equals(new Point())) {
-				return l;
+	private long rhs(long x) { /* x^3 + ax + b (mod p), without overflow for large p */
+		PrimeField f = PrimeField.of(getP());
+		long rval = f.mulMod(f.add(f.mulMod(x, x), f.reduce(getA())), x);
+		return f.add(rval, f.reduce(getB()));
+	}
+	
+	public long pointOrder(Point G) { /* divide the prime factors out of |E| while the multiple of G stays infinity */
+		long N = order();
+		for(long q : ECMath.factor(N).keySet()) {
+			while(N % q == 0 && mult(G, N / q).isInfinity()) {
+				N /= q;
 			}
 		}
-		return -1; /* error */
+		if(!mult(G, N).isInfinity()) {
+			return -1; /* error */
+		}
+		return N;
 	}
 	
-	public long log(Point P, Point G) { /* return k, where kG = P */
+	/* return k, where kG = P, with 1 <= k <= |G|, by Pohlig-Hellman (so the work is about the square
+	root of the largest prime factor of |G|). -1 if P isn't a multiple of G */
+	public long log(Point P, Point G) {
 		long N = pointOrder(G);
-		Point B = new Point(); // B = infinity
-		for(long i = 1; i <= N; i++) {
-			if((B = G.add(B, getA(), getB(), getP())).equals(P)) {
-				return i;
-			}
+		if(N <= 0) {
+			return -1; /* error */
 		}
-		return -1; /* error */
+		long k = PohligHellman.log(this, P, G, N);
+		return (k == 0) ? N : k;
+	}
+	
+	/* k with lo <= k <= hi and kG = P, or -1 if there isn't one, by parallel kangaroos in about
+	2sqrt(hi - lo) steps, whatever the order of G is */
+	public long logInInterval(Point P, Point G, long lo, long hi) {
+		return new Kangaroo<AffinePoint>(Kangaroo.group(this), AffinePoint.of(G, getP())).log(AffinePoint.of(P, getP()), lo, hi);
 	}
 	
 	public String listPoints() {
 		String s = "";
+		QuadraticResidueTable qr = QuadraticResidueTable.of(getP(), true);
 		for(long x = 0; x < getP(); x++) {
-			long temp = (x*x*x + getA()*x + getB()) % getP();
-			if(ECMath.jacobi(temp, getP()) == 1) {
-				Point P = new Point(x, ECMath.sqrt(temp, getP()), 1);
+			long temp = rhs(x);
+			if(qr.legendre(temp) == 1) {
+				Point P = new Point(x, qr.sqrt(temp), 1);
 				if(P.getY() > getP() - P.getY()) {
 					P.setY(getP() - P.getY());
 				}
@@ -143,15 +382,22 @@ public class EllipticCurve {
 	}
 	
 	public String listGmults(Point G) {
-		String s = "";
+		StringBuilder s = new StringBuilder();
 		long N = pointOrder(G);
-		Point temp = new Point(G);
-		for(long i = 1; i < N; i++) {
-			s += temp + ", ";
-			temp = temp.add(G, getA(), getB(), getP());
+		PointBuffer buffer = new PointBuffer(this, (int)Math.min(WALK_BLOCK, Math.max(N, 1)));
+		for(long i = 1; i <= N; i += WALK_BLOCK) {
+			int n = (int)Math.min(WALK_BLOCK, N - i + 1);
+			if(i == 1) {
+				buffer.walk(G, G, n);
+			}
+			else {
+				buffer.walk(n);
+			}
+			for(int j = 0; j < n; j++) {
+				s.append(buffer.get(j)).append(i + j < N ? ", " : "\n");
+			}
 		}
-		s += temp + "\n";
-		return s;
+		return s.toString();
 	}
 	
 	public static String listECs(long p) {
@@ -171,19 +417,24 @@ public class EllipticCurve {
 	}
 	
 	public static String listPrimeECs(long p) {
+		return listPrimeECs(p, OrderStrategy.AUTO);
+	}
+	
+	public static String listPrimeECs(long p, OrderStrategy strategy) { /* sorted by order, counted with strategy */
 		int count = 0;
 		String s = "";
 		List<EllipticCurve> curves = new ArrayList<EllipticCurve>();
 		for(long a = 0; a < p; a++) {
 			for(long b = 1; b < p; b++) { /* start b at 1 since y^2 = x^3 + ax has an even number of points */
 				EllipticCurve E = new EllipticCurve(a, b, p);
+				E.setOrderStrategy(strategy);
 				long order = E.order();
 				if(E.isEC() && ECMath.isPrime(order)) {
 					curves.add(E);
 				}
 			}
 		}
-		Collections.sort(curves, new EllipticCurveComparator());
+		Collections.sort(curves, new EllipticCurveComparator(strategy));
 		for(EllipticCurve E : curves) {
 			s += E + ", |E| = " + E.order() + "\n";
 			count++;
@@ -216,22 +467,26 @@ public class EllipticCurve {
 		int count = 0;
 		String s = "";
 		Random rand = new Random();
-		long a, b;
-		EllipticCurve E;
 		while(n > 0) {
-			a = Math.floorMod(rand.nextLong(), p);
-			b = Math.floorMod(rand.nextLong(), p);
-			E = new EllipticCurve(a, b, p);
-			if(E.isEC() && ECMath.isPrime(E.order())) {
-				s += E + ", |E| = " + E.order() + "\n";
-				n--;
-				count++;
-			}
+			EllipticCurve E = randomPrimeEC(p, rand);
+			s += E + ", |E| = " + E.order() + "\n";
+			n--;
+			count++;
 		}
 		s += count + " curves were generated.\n";
 		return s;
 	}
 	
+	/* a random nonsingular curve over F_p with a prime number of points */
+	public static EllipticCurve randomPrimeEC(long p, Random rand) {
+		while(true) {
+			EllipticCurve E = new EllipticCurve(Math.floorMod(rand.nextLong(), p), Math.floorMod(rand.nextLong(), p), p);
+			if(E.isEC() && ECMath.isPrime(E.order())) {
+				return E;
+			}
+		}
+	}
+	
 	public static void main(String[] args) { /* method for testing */
 		EllipticCurve E = new EllipticCurve(2, 2, 17);
 		Point G = new Point(5, 1, 1);
@@ -244,12 +499,23 @@ public class EllipticCurve {
 }
 
 class EllipticCurveComparator implements Comparator<EllipticCurve> {
+	private final EllipticCurve.OrderStrategy strategy; /* how orders not known yet are counted */
+	
+	public EllipticCurveComparator() {
+		this(EllipticCurve.OrderStrategy.AUTO);
+	}
+	
+	public EllipticCurveComparator(EllipticCurve.OrderStrategy strategy) {
+		this.strategy = strategy;
+	}
+	
 	@Override
 	public int compare(EllipticCurve E, EllipticCurve F) {
-		if(E.order() > F.order()) {
+		long m = E.order(strategy), n = F.order(strategy);
+		if(m > n) {
 			return 1;
 		}
-		if(E.order() < F.order()) {
+		if(m < n) {
 			return -1;
 		}
 		return 0;
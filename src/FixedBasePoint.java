@@ -0,0 +1,227 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class computes kG for a fixed point G on an EllipticCurve and many
+ * different scalars k, such as a generator used for key generation. It is the
+ * point version of FixedBasePow: the table holds j*2^(Wi)*G for every window
+ * position i and every digit 0 < j < 2^W, so kG is the sum of one table point
+ * per nonzero base-2^W digit of k, with no doublings at all. With W = 8 a
+ * 63-bit k takes at most 8 mixed additions (Jacobian plus affine, 11 field
+ * multiplications each), against 63 doublings and about 13 additions for
+ * Point.mult.
+ *
+ * The 8*255 table points are built with Chudnovsky additions and scaled down
+ * to affine coordinates together with one inversion, and kept in Montgomery
+ * form in a single long array (x and y interleaved, 32KB), with x = -1 for
+ * infinity (which only happens when G has a small order). Since the table
+ * only depends on the curve and G, it can be saved to a file with save and
+ * read back with load instead of being rebuilt, and the static of method
+ * caches the tables for the points that are used over and over. A saved table
+ * starts with the curve (a, b, p) and G, which load checks against the table
+ * itself, and against the expected curve and base point when they're given.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class FixedBasePoint {
+
+	private static final int W = 8; /* window width in bits */
+	private static final int DIGITS = (1 << W) - 1; /* nonzero digits per window */
+	private static final int WINDOWS = (63 + W - 1) / W; /* enough for every k < 2^63 */
+	private static final int MAGIC = 0x45434642; /* "ECFB", at the start of a saved table */
+	private static final int CACHE_SIZE = 16;
+
+	private final long a, b, p;
+	private final Point G;
+	private final PrimeField f;
+	private final long aM; /* a in Montgomery form */
+	private final boolean minus3;
+	private final long[] table; /* (x, y) of j*2^(Wi)*G at 2*(i*DIGITS + j - 1), in Montgomery form */
+
+	/* least recently used tables, keyed by (a, b, p, G) */
+	private static final Map<String, FixedBasePoint> cache = new LinkedHashMap<String, FixedBasePoint>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FixedBasePoint> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	public FixedBasePoint(EllipticCurve E, Point G) {
+		this(E.getA(), E.getB(), E.getP(), G, null);
+	}
+
+	private FixedBasePoint(long a, long b, long p, Point G, long[] table) { /* builds the table if it's null */
+		this.a = a;
+		this.b = b;
+		this.p = p;
+		this.f = new PrimeField(p);
+		this.aM = f.toMont(a);
+		this.minus3 = f.reduce(a) == f.reduce(-3);
+		this.G = G.mult(1, a, b, p); /* scaled to z = 1 */
+		this.table = (table != null) ? table : build();
+	}
+
+	private long[] build() {
+		long[][] J = new long[WINDOWS*DIGITS][]; /* Jacobian points, scaled down together at the end */
+		long[] B = (G.getZ() == 0) ? new long[] {f.one(), f.one(), 0} : new long[] {f.toMont(G.getX()), f.toMont(G.getY()), f.one()};
+		for(int i = 0; i < WINDOWS; i++) { /* B = 2^(Wi)*G */
+			long[] C = Point.toChudnovsky(B, f);
+			long[] cur = B;
+			for(int j = 1; j <= DIGITS; j++) {
+				J[i*DIGITS + j - 1] = cur;
+				cur = cur.clone();
+				Point.jacobianAddChudnovsky(cur, C, aM, minus3, f);
+			}
+			B = cur; /* 2^W*B */
+		}
+		long[] z = new long[J.length];
+		for(int i = 0; i < J.length; i++) {
+			z[i] = J[i][2];
+		}
+		f.batchMontInverse(z, z.length); /* infinity has z = 0, which is left alone */
+		long[] rval = new long[2*J.length];
+		for(int i = 0; i < J.length; i++) {
+			if(z[i] == 0) {
+				rval[2*i] = -1;
+			}
+			else {
+				long zz = f.sqr(z[i]);
+				rval[2*i] = f.mul(J[i][0], zz);
+				rval[2*i+1] = f.mul(J[i][1], f.mul(zz, z[i]));
+			}
+		}
+		return rval;
+	}
+
+	public static FixedBasePoint of(EllipticCurve E, Point G) { /* a (possibly cached) table for G on E */
+		Point A = G.mult(1, E.getA(), E.getB(), E.getP());
+		String key = E.getA() + "," + E.getB() + "," + E.getP() + "," + A.getX() + "," + A.getY() + "," + A.getZ();
+		FixedBasePoint rval;
+		synchronized(cache) {
+			rval = cache.get(key);
+		}
+		if(rval == null) { /* built outside the lock, as in GLV.of and BSGS.of. two threads may both
+			build it, and the first one wins */
+			FixedBasePoint built = new FixedBasePoint(E, A);
+			synchronized(cache) {
+				rval = cache.putIfAbsent(key, built);
+				if(rval == null) {
+					rval = built;
+				}
+			}
+		}
+		return rval;
+	}
+
+	public Point getBase() {
+		return G;
+	}
+
+	public EllipticCurve getCurve() {
+		return new EllipticCurve(a, b, p);
+	}
+
+	public Point mult(long k) { /* kG, which is infinity for k <= 0 like Point.mult */
+		if(k <= 0) {
+			return new Point();
+		}
+		long[] R = {f.one(), f.one(), 0};
+		for(int i = 0; k != 0; i++, k >>>= W) {
+			int j = (int)(k & DIGITS);
+			if(j != 0) {
+				int index = 2*(i*DIGITS + j - 1);
+				if(table[index] != -1) {
+					Point.jacobianAddAffine(R, table[index], table[index+1], aM, minus3, f);
+				}
+			}
+		}
+		return Point.fromJacobian(R, f);
+	}
+
+	public void save(File file) throws IOException { /* writes the curve, G, and the table */
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(W);
+			out.writeLong(a);
+			out.writeLong(b);
+			out.writeLong(p);
+			out.writeLong(G.getX());
+			out.writeLong(G.getY());
+			out.writeLong(G.getZ());
+			out.writeInt(table.length);
+			for(long t : table) {
+				out.writeLong(t);
+			}
+		}
+	}
+
+	/* reads a table written by save. the header is checked against the table: G must be on the
+	curve, and the table must start with G and 2^W*G */
+	public static FixedBasePoint load(File file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if(in.readInt() != MAGIC || in.readInt() != W) {
+				throw new IOException(file + " is not a FixedBasePoint table");
+			}
+			long a = in.readLong();
+			long b = in.readLong();
+			long p = in.readLong();
+			Point G = new Point(in.readLong(), in.readLong(), in.readLong());
+			int n = in.readInt();
+			if(n != 2*WINDOWS*DIGITS) {
+				throw new IOException(file + " has a table of the wrong size");
+			}
+			if(p < 3 || (p & 1) == 0) {
+				throw new IOException(file + " has an invalid modulus " + p);
+			}
+			long[] table = new long[n];
+			for(int i = 0; i < n; i++) {
+				table[i] = in.readLong();
+			}
+			FixedBasePoint rval = new FixedBasePoint(a, b, p, G, table);
+			if(!rval.consistent()) {
+				throw new IOException(file + " has a table that doesn't match its curve and base point");
+			}
+			return rval;
+		}
+	}
+
+	/* the same, for a table that has to be the one for G on E */
+	public static FixedBasePoint load(File file, EllipticCurve E, Point G) throws IOException {
+		FixedBasePoint rval = load(file);
+		PrimeField f = rval.f;
+		if(rval.p != E.getP() || f.reduce(rval.a) != f.reduce(E.getA()) || f.reduce(rval.b) != f.reduce(E.getB())
+				|| !rval.G.equals(G, rval.p)) {
+			throw new IOException(file + " is a table for " + rval.G + " on " + rval.getCurve() + ", not for " + G + " on " + E);
+		}
+		return rval;
+	}
+
+	private boolean consistent() { /* is G on the curve, with G and 2^W*G at the start of the first two windows? */
+		if(G.getZ() != 0) {
+			long x = G.getX(), y = G.getY(); /* z = 1 */
+			if(f.mulMod(y, y) != f.add(f.add(f.pow(x, 3), f.mulMod(f.reduce(a), x)), f.reduce(b))) {
+				return false;
+			}
+		}
+		return matches(0, G) && matches(DIGITS, G.mult(1L << W, a, b, p));
+	}
+
+	private boolean matches(int i, Point Q) { /* is table point i the point Q (with z = 1, or infinity)? */
+		if(Q.getZ() == 0) {
+			return table[2*i] == -1;
+		}
+		return table[2*i] == f.toMont(Q.getX()) && table[2*i+1] == f.toMont(Q.getY());
+	}
+}
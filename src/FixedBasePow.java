@@ -0,0 +1,92 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class computes g^e (mod p) for a fixed base g and many different
+ * exponents e. It precomputes the table g^(j*2^(wi)) for every window
+ * position i and every digit 0 < j < 2^w, so g^e is just the product of one
+ * table entry per nonzero base-2^w digit of e, with no squarings at all. With
+ * w = 4 and 64-bit exponents that's at most 16 multiplications instead of the
+ * 63 squarings and ~20 multiplications of ordinary exponentiation, paid for
+ * with 16*15 table entries that take about as long to build as 4 powers.
+ *
+ * Powers of two (e = 2^k) are a single table lookup, which is what
+ * QuadraticResidueTable.sqrt uses to step through the powers z^(2^k) of its
+ * quadratic non-residue z.
+ * The static of method caches tables for the bases that are used over and over.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class FixedBasePow {
+
+	private static final int W = 4; /* window width in bits */
+	private static final int CACHE_SIZE = 16;
+
+	private final PrimeField f;
+	private final long g;
+	private final int bits; /* largest exponent bit length the table covers */
+	private final long[][] table; /* table[i][j] = g^(j*2^(Wi)) in Montgomery form */
+
+	/* least recently used tables, keyed by (g, p) */
+	private static final Map<String, FixedBasePow> cache = new LinkedHashMap<String, FixedBasePow>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FixedBasePow> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	public FixedBasePow(long g, long p, int bits) { /* covers exponents 0 <= e < 2^bits */
+		this.f = new PrimeField(p);
+		this.g = f.reduce(g);
+		this.bits = Math.max(1, Math.min(bits, 63));
+		this.table = new long[(this.bits + W - 1) / W][1 << W];
+		long base = f.toMont(this.g); /* g^(2^(Wi)) */
+		for(int i = 0; i < table.length; i++) {
+			table[i][0] = f.one();
+			for(int j = 1; j < (1 << W); j++) {
+				table[i][j] = f.mul(table[i][j-1], base);
+			}
+			base = f.mul(table[i][(1 << W) - 1], base);
+		}
+	}
+
+	public static FixedBasePow of(long g, long p) { /* a (possibly cached) table for all exponents < 2^63 */
+		String key = g + "," + p;
+		synchronized(cache) {
+			FixedBasePow rval = cache.get(key);
+			if(rval == null) {
+				rval = new FixedBasePow(g, p, 63);
+				cache.put(key, rval);
+			}
+			return rval;
+		}
+	}
+
+	public long getBase() {
+		return g;
+	}
+
+	public long getP() {
+		return f.getP();
+	}
+
+	public long pow(long e) { /* g^e (mod p), or -1 if e is negative or longer than the table */
+		if(e < 0 || 64 - Long.numberOfLeadingZeros(e) > bits) {
+			return -1; /* error */
+		}
+		long rval = 0;
+		boolean started = false;
+		for(int i = 0; e != 0; i++, e >>>= W) {
+			int digit = (int)(e & ((1 << W) - 1));
+			if(digit != 0) {
+				rval = started ? f.mul(rval, table[i][digit]) : table[i][digit];
+				started = true;
+			}
+		}
+		return started ? f.fromMont(rval) : f.reduce(1);
+	}
+}
@@ -0,0 +1,291 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class speeds up scalar multiplication on curves y^2 = x^3 + b over
+ * F_p with p = 1 (mod 3) and a prime number n of points, using the method of
+ * Gallant, Lambert and Vanstone. For a cube root of unity beta (mod p), the
+ * map phi(x, y) = (beta*x, y) takes the curve to itself, and since the group
+ * is cyclic of prime order it acts on every point as multiplication by some
+ * lambda (mod n), a root of lambda^2 + lambda + 1 = 0. So phi(P) = lambda*P
+ * costs a single field multiplication.
+ *
+ * kP is then computed as k1*P + k2*phi(P) with k = k1 + k2*lambda (mod n)
+ * and k1, k2 about sqrt(n) in size, by interleaving the wNAFs of k1 and k2
+ * over one chain of doublings, like EllipticCurve.multiScalarStraus. mult
+ * has its own loop, since the table for phi(P) is the table for P with every
+ * x multiplied by beta, so only one set of odd multiples (and one inversion)
+ * is needed. That takes half as many doublings as kP, and about the same
+ * number of additions. k1 and k2 come from a reduced
+ * basis (a1, b1), (a2, b2) of the lattice of (x, y) with x + y*lambda = 0
+ * (mod n), found once with the extended Euclidean algorithm, and the
+ * rounding of b2*k/n and -b1*k/n uses precomputed 2^64*b2/n and 2^64*(-b1)/n,
+ * so splitting k takes four multiplications.
+ *
+ * n itself is found without counting points: p = u^2 + 3v^2 (Cornacchia's
+ * algorithm), and the trace of Frobenius is one of the six numbers
+ * +-2u, +-(u + 3v), +-(u - 3v). The candidates p + 1 - t with (p + 1 - t)P
+ * != infinity for some point P are ruled out, which usually leaves one after
+ * the first point. EllipticCurve.order uses jZeroOrder for these curves too.
+ *
+ * The results only make sense for points on the curve, since phi(P) =
+ * lambda*P only holds there.
+ */
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public final class GLV {
+
+	private static final int CACHE_SIZE = 16;
+	private static final int CHECKS = 20; /* points used to rule out the wrong orders */
+
+	private final long b, p;
+	private final long n; /* the (prime) number of points */
+	private final long beta; /* cube root of unity (mod p) */
+	private final long lambda; /* phi(P) = lambda*P */
+	private final long a1, b1, a2, b2; /* reduced basis, with a1*b2 - a2*b1 = n */
+	private final long g1, g2; /* round(2^64*b2/n) and round(-2^64*b1/n) */
+
+	/* least recently used endomorphisms (or the lack of one), keyed by (b, p) */
+	private static final Map<String, GLV> cache = new LinkedHashMap<String, GLV>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, GLV> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	private static final GLV NONE = new GLV(); /* cached for curves without a GLV endomorphism */
+
+	private GLV() {
+		b = p = n = beta = lambda = a1 = b1 = a2 = b2 = g1 = g2 = 0;
+	}
+
+	private GLV(long b, long p, long n, long beta, long lambda) {
+		this.b = b;
+		this.p = p;
+		this.n = n;
+		this.beta = beta;
+		this.lambda = lambda;
+		long sqrtN = (long)Math.sqrt((double)n);
+		while(sqrtN*sqrtN > n) {
+			sqrtN--;
+		}
+		while((sqrtN+1)*(sqrtN+1) <= n) {
+			sqrtN++;
+		}
+		long r0 = n, r1 = lambda, t0 = 0, t1 = 1; /* s*n + t*lambda = r */
+		while(r1 > sqrtN) { /* r0 is then the last remainder >= sqrt(n) */
+			long q = r0 / r1;
+			long r = r0 - q*r1, t = t0 - q*t1;
+			r0 = r1;
+			r1 = r;
+			t0 = t1;
+			t1 = t;
+		}
+		long q = r0 / r1;
+		long r2 = r0 - q*r1, t2 = t0 - q*t1;
+		long x1 = r1, y1 = -t1; /* (r, -t) satisfies r - t*lambda = 0 (mod n) */
+		long x2 = r0, y2 = -t0;
+		if((double)r2*r2 + (double)t2*t2 < (double)x2*x2 + (double)y2*y2) {
+			x2 = r2;
+			y2 = -t2;
+		}
+		if(x1*y2 - x2*y1 < 0) {
+			x2 = -x2;
+			y2 = -y2;
+		}
+		this.a1 = x1;
+		this.b1 = y1;
+		this.a2 = x2;
+		this.b2 = y2;
+		this.g1 = round64(y2, n);
+		this.g2 = round64(-y1, n);
+	}
+
+	private static long round64(long x, long n) { /* round(2^64*x/n), halves away from zero */
+		BigInteger N = BigInteger.valueOf(n);
+		BigInteger X = BigInteger.valueOf(x).shiftLeft(65);
+		X = (x < 0) ? X.subtract(N) : X.add(N);
+		return X.divide(N.shiftLeft(1)).longValue();
+	}
+
+	/* the endomorphism for E, or null if E isn't y^2 = x^3 + b with p = 1 (mod 3) and a prime
+	number of points (or p is too big for the order to fit in a long, or too small to bother) */
+	public static GLV of(EllipticCurve E) {
+		long p = E.getP();
+		if(Math.floorMod(E.getA(), p) != 0 || p % 3 != 1 || p < 1000 || p >= (1L << 62)) {
+			return null;
+		}
+		long b = Math.floorMod(E.getB(), p);
+		String key = b + "," + p;
+		GLV rval;
+		synchronized(cache) {
+			rval = cache.get(key);
+		}
+		if(rval == null) { /* built outside the lock (jZeroOrder and primality testing take a while), so
+			lookups of other curves aren't held up. two threads may both build it, and the first one wins */
+			GLV built = build(b, p);
+			synchronized(cache) {
+				rval = cache.putIfAbsent(key, (built == null) ? NONE : built);
+				if(rval == null) {
+					rval = (built == null) ? NONE : built;
+				}
+			}
+		}
+		return (rval == NONE) ? null : rval;
+	}
+
+	private static GLV build(long b, long p) {
+		if(b == 0) {
+			return null;
+		}
+		long n = jZeroOrder(b, p);
+		if(n < 1000 || !ECMath.isPrime(n) || n % 3 != 1) {
+			return null;
+		}
+		PrimeField fp = PrimeField.of(p);
+		long beta = cubeRoot(p);
+		PrimeField fn = new PrimeField(n);
+		long lambda = cubeRoot(n);
+		Point G = new EllipticCurve(0, b, p).randomPoint(new Random(p));
+		Point phiG = new Point(fp.mulMod(beta, G.getX()), G.getY(), 1);
+		if(!G.mult(lambda, 0, b, p).equals(phiG)) { /* the other root, lambda^2 = -1 - lambda */
+			lambda = fn.reduce(-1 - lambda);
+			if(!G.mult(lambda, 0, b, p).equals(phiG)) {
+				return null; /* error */
+			}
+		}
+		return new GLV(b, p, n, beta, lambda);
+	}
+
+	private static long cubeRoot(long q) { /* a root of x^2 + x + 1 (mod q), (-1 + sqrt(-3))/2 */
+		PrimeField f = new PrimeField(q);
+		long s = ECMath.sqrt(q - 3, q);
+		return f.mulMod(f.reduce(s - 1), (q + 1) / 2);
+	}
+
+	/* the number of points on y^2 = x^3 + b over F_p, for p = 1 (mod 3) and b != 0 (mod p), or -1
+	if points didn't narrow the six possible orders down to one (or p is outside 1000 < p < 2^62) */
+	public static long jZeroOrder(long b, long p) {
+		b = Math.floorMod(b, p);
+		if(b == 0 || p % 3 != 1 || p < 1000 || p >= (1L << 62)) {
+			return -1; /* error */
+		}
+		long r = ECMath.sqrt(p - 3, p); /* Cornacchia: p = u^2 + 3v^2 */
+		if(r < p/2) {
+			r = p - r;
+		}
+		long r0 = p, r1 = r;
+		while(r1 > 0 && r1 > p / r1) { /* until r1^2 < p */
+			long t = r0 % r1;
+			r0 = r1;
+			r1 = t;
+		}
+		long u = r1;
+		if((p - u*u) % 3 != 0) {
+			return -1; /* error */
+		}
+		long v = (long)Math.sqrt((double)((p - u*u) / 3));
+		while(v*v > (p - u*u) / 3) {
+			v--;
+		}
+		while((v+1)*(v+1) <= (p - u*u) / 3) {
+			v++;
+		}
+		if(u*u + 3*v*v != p) {
+			return -1; /* error */
+		}
+		long[] traces = {2*u, -2*u, u + 3*v, -u - 3*v, u - 3*v, -u + 3*v};
+		boolean[] ruledOut = new boolean[traces.length];
+		int left = traces.length;
+		EllipticCurve E = new EllipticCurve(0, b, p);
+		Random rand = new Random(b ^ p);
+		for(int i = 0; i < CHECKS && left > 1; i++) {
+			Point P = E.randomPoint(rand);
+			for(int j = 0; j < traces.length; j++) {
+				if(!ruledOut[j] && !P.mult(p + 1 - traces[j], 0, b, p).isInfinity()) {
+					ruledOut[j] = true;
+					left--;
+				}
+			}
+		}
+		long rval = -1;
+		for(int j = 0; j < traces.length; j++) {
+			if(!ruledOut[j]) {
+				if(rval != -1 && rval != p + 1 - traces[j]) {
+					return -1; /* error */
+				}
+				rval = p + 1 - traces[j];
+			}
+		}
+		return rval;
+	}
+
+	public long getN() {
+		return n;
+	}
+
+	public long getBeta() {
+		return beta;
+	}
+
+	public long getLambda() {
+		return lambda;
+	}
+
+	public Point endomorphism(Point P) { /* phi(X : Y : Z) = (beta*X : Y : Z) = lambda*P */
+		PrimeField f = PrimeField.of(p);
+		return new Point(f.mulMod(beta, f.reduce(P.getX())), P.getY(), P.getZ());
+	}
+
+	/* {k1, k2} with k1 + k2*lambda = k (mod n), both about sqrt(n). c1 = round(b2*k/n) and
+	c2 = round(-b1*k/n) are the high words of k*g1 and k*g2, rounded. the products below can
+	wrap around, but k1 and k2 are small, so they come out right anyway */
+	public long[] decompose(long k) {
+		k = Math.floorMod(k, n);
+		long c1 = Math.multiplyHigh(k, g1) + ((k*g1) >>> 63);
+		long c2 = Math.multiplyHigh(k, g2) + ((k*g2) >>> 63);
+		return new long[] {k - c1*a1 - c2*a2, -c1*b1 - c2*b2};
+	}
+
+	/* kP = k1*P + k2*phi(P) for P on the curve, as in Point.mult but with two width-w NAFs
+	of half the length sharing one chain of doublings. the odd multiples of phi(P) are those of
+	P with x multiplied by beta, so they cost m multiplications. infinity for k <= 0, like
+	Point.mult */
+	public Point mult(Point P, long k) {
+		if(k <= 0 || P.getZ() % p == 0) {
+			return new Point();
+		}
+		long[] c = decompose(k);
+		PrimeField f = PrimeField.of(p);
+		int w = ECMath.wNAFWidth(64 - Long.numberOfLeadingZeros(Math.abs(c[0]) | Math.abs(c[1])));
+		int[][] naf = {ECMath.wNAF(Math.abs(c[0]), w), ECMath.wNAF(Math.abs(c[1]), w)};
+		int m = 1 << (w-2); /* the odd multiples (2i + 1)P, i < m */
+		long[][] T = Point.affine(P.oddMultiples(m, 0, false, f), f);
+		long[][][] table = {T, new long[m][]};
+		long betaM = f.toMont(beta);
+		for(int i = 0; i < m; i++) {
+			if(T[i] != null) {
+				table[1][i] = new long[] {f.mul(T[i][0], betaM), T[i][1]};
+			}
+		}
+		long[] R = {f.one(), f.one(), 0};
+		for(int i = Math.max(naf[0].length, naf[1].length) - 1; i >= 0; i--) {
+			Point.jacobianDouble(R, 0, false, f);
+			for(int j = 0; j < 2; j++) {
+				if(i < naf[j].length && naf[j][i] != 0) {
+					long[] Q = table[j][Math.abs(naf[j][i]) >> 1];
+					if(Q != null) { /* -(x, y) = (x, -y), for a negative digit or a negative k_j */
+						boolean negative = (naf[j][i] < 0) != (c[j] < 0);
+						Point.jacobianAddAffine(R, Q[0], negative ? f.neg(Q[1]) : Q[1], 0, false, f);
+					}
+				}
+			}
+		}
+		return Point.fromJacobian(R, f);
+	}
+}
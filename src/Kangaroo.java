@@ -0,0 +1,294 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class finds discrete logarithms kG = P when k is known to be in an
+ * interval [lo, hi], with Pollard's kangaroo (lambda) method, in about
+ * 2sqrt(hi - lo) group operations however large the order of G is. It works
+ * on any group given as a Kangaroo.Group, and there are groups for
+ * EllipticCurve and BinaryEllipticCurve (their logInInterval methods).
+ *
+ * With N = hi - lo + 1 and P' = P - lo*G, k' = k - lo is in [0, N). Tame
+ * kangaroos start at dG for d near N/2 and wild ones at P' + dG for small d,
+ * and every kangaroo jumps forward by s_j (adding s_jG, and s_j to its
+ * distance d) with j a hash of the point it's on. The JUMPS jump sizes s_j are
+ * random with mean about m*sqrt(N)/4 for m kangaroos (powers of two, the usual
+ * choice, took half again as many steps here). Since the jump only depends
+ * on the point, a wild kangaroo that lands on a tame one's footprint follows
+ * it from then on, and (k' + d_wild)G = d_tame*G gives k' = d_tame - d_wild.
+ *
+ * This is the parallel version of van Oorschot and Wiener: each thread runs
+ * one tame and one wild kangaroo, so memory per thread is constant, and only
+ * distinguished points (a hash with its low bits zero) go into a shared
+ * DistinguishedTable with the kangaroo's distance and herd. A tame kangaroo
+ * meeting a wild one there gives k. Two of the same herd meeting would just
+ * follow each other from then on, so the later one starts over somewhere else.
+ *
+ * The interval should be well inside the order of G: kangaroos that lap a
+ * small group meet at k + (a multiple of the order), which is out of range,
+ * and log can give up without finding the k inside it (use log on the curve
+ * for those).
+ *
+ * getSteps can be polled from another thread while log runs, and cancel makes
+ * it return -1.
+ */
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Kangaroo<T> {
+
+	private static final int MAX_WORK = 32; /* give up after this many times the expected number of steps */
+	private static final int JUMP_BITS = 5, JUMPS = 1 << JUMP_BITS; /* the jump is the top JUMP_BITS bits of the hash */
+	private static final long SMALL = 1L << 8; /* intervals narrower than this are just tried */
+
+	/* a group for the kangaroos. hash must be the same for every representative of a point */
+	public interface Group<T> {
+		T add(T P, T Q);
+		T mult(T P, long k); /* kP for k >= 0 */
+		T negate(T P);
+		boolean equals(T P, T Q);
+		long hash(T P);
+	}
+
+	private final Group<T> group;
+	private final T G;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = 1;
+
+	private final LongAdder steps = new LongAdder();
+	private volatile boolean cancelled = false;
+
+	/* for the kangaroos of one call to log */
+	private T target, shifted; /* P, and P' = P - lo*G */
+	private long N, lo;
+	private long[] sizes; /* s_j */
+	private Object[] jumps; /* s_j * G */
+	private long mean; /* the average jump */
+	private long dMask; /* distinguished points have hash & dMask = 0 */
+	private long maxSteps;
+	private DistinguishedTable table;
+	private final AtomicLong result = new AtomicLong(-1);
+
+	public Kangaroo(Group<T> group, T G) {
+		this.group = group;
+		this.G = G;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public long getSteps() { /* group operations so far in the current (or last) call to log */
+		return steps.sum();
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/* k with lo <= k <= hi and kG = P, or -1 if the kangaroos didn't find one in MAX_WORK times the
+	expected number of steps (so k probably isn't in the interval), or log was cancelled. needs 0 <= lo <= hi */
+	public long log(T P, long lo, long hi) {
+		steps.reset();
+		result.set(-1);
+		cancelled = false;
+		if(lo < 0 || hi < lo || hi - lo >= Long.MAX_VALUE / 4) {
+			return -1; /* error */
+		}
+		this.lo = lo;
+		this.N = hi - lo + 1;
+		T start = group.mult(G, lo);
+		if(N < SMALL) {
+			for(long k = lo; k <= hi; k++, start = group.add(start, G)) {
+				if(group.equals(start, P)) {
+					return k;
+				}
+			}
+			return -1; /* error */
+		}
+		target = P;
+		shifted = group.add(P, group.negate(start));
+		int m = 2*threads;
+		double sqrtN = Math.sqrt((double)N);
+		mean = (long)Math.max(1, m*sqrtN/4);
+		Random rand = new Random(seed);
+		sizes = new long[JUMPS];
+		jumps = new Object[JUMPS];
+		for(int j = 0; j < JUMPS; j++) { /* uniform in [1, 2*mean) */
+			sizes[j] = 1 + Math.floorMod(rand.nextLong(), Math.max(1, 2*mean - 1));
+			jumps[j] = group.mult(G, sizes[j]);
+		}
+		int dBits = Math.max(0, 63 - Long.numberOfLeadingZeros((long)(sqrtN / (8.0*m))));
+		dMask = (1L << dBits) - 1;
+		maxSteps = (long)(MAX_WORK * (2*sqrtN + (double)m * (1L << dBits)));
+		table = new DistinguishedTable((int)Math.min(1 << 24, Math.max(1 << 12, Long.highestOneBit(1024L * m) << 1)));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new Herds(0, threads));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return result.get();
+	}
+
+	/* the points of E as AffinePoints. add has to scale its result down anyway, so every point is
+	already reduced, and equals and hash just compare and mix the coordinates (Point.hashCode(p)
+	would cost an inversion and two allocations on every jump) */
+	public static Group<AffinePoint> group(final EllipticCurve E) {
+		final long a = E.getA(), b = E.getB(), p = E.getP();
+		return new Group<AffinePoint>() {
+			public AffinePoint add(AffinePoint P, AffinePoint Q) {
+				return P.add(Q, a, b, p);
+			}
+
+			public AffinePoint mult(AffinePoint P, long k) {
+				return AffinePoint.of(E.mult(P.toPoint(), k), p);
+			}
+
+			public AffinePoint negate(AffinePoint P) {
+				return P.negate(p);
+			}
+
+			public boolean equals(AffinePoint P, AffinePoint Q) {
+				return P.equals(Q);
+			}
+
+			public long hash(AffinePoint P) {
+				return P.hashCode();
+			}
+		};
+	}
+
+	/* the points of a binary curve. -(X : Y : Z) = (X : XZ + Y : Z) in LD coordinates */
+	public static Group<PolynomialPoint> group(BinaryEllipticCurve E) {
+		final Polynomial a = E.getA(), b = E.getB(), modulus = E.getModulus();
+		return new Group<PolynomialPoint>() {
+			public PolynomialPoint add(PolynomialPoint P, PolynomialPoint Q) {
+				return P.add(new PolynomialPoint(Q), a, b, modulus); /* add can change Q, so pass a copy */
+			}
+
+			public PolynomialPoint mult(PolynomialPoint P, long k) {
+				return P.mult(k, a, b, modulus);
+			}
+
+			public PolynomialPoint negate(PolynomialPoint P) {
+				return new PolynomialPoint(P.getX(), P.getX().mult(P.getZ()).add(P.getY()).mod(modulus), P.getZ());
+			}
+
+			public boolean equals(PolynomialPoint P, PolynomialPoint Q) {
+				return P.equals(Q, modulus);
+			}
+
+			public long hash(PolynomialPoint P) {
+				return P.hashCode(modulus);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private T jumps(int j) {
+		return (T)jumps[j];
+	}
+
+	private static long mix(long h) { /* spreads the bits of a hash, so the low ones are random */
+		h *= 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	private boolean done() {
+		return cancelled || result.get() != -1 || steps.sum() > maxSteps;
+	}
+
+	/* runs the kangaroos of threads from, ..., to-1, splitting the range in half until there's one per task */
+	private class Herds extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		Herds(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Herds(from, mid), new Herds(mid, to));
+				return;
+			}
+			new Pair(from).run();
+		}
+	}
+
+	/* one tame kangaroo (herd 0) and one wild one (herd 1), jumping in turn */
+	private class Pair {
+		private final Random rand;
+		private final Object[] position = new Object[2];
+		private final long[] distance = new long[2];
+
+		Pair(int id) {
+			rand = new Random(seed * 0x9E3779B97F4A7C15L + id + 1);
+			restart(0);
+			restart(1);
+		}
+
+		private void restart(int herd) { /* tame at dG with d = N/2 + [0, mean), wild at P' + dG with d in [0, mean) */
+			distance[herd] = (herd == 0 ? N/2 : 0) + Math.floorMod(rand.nextLong(), mean);
+			T D = group.mult(G, distance[herd]);
+			position[herd] = (herd == 0) ? D : group.add(shifted, D);
+		}
+
+		@SuppressWarnings("unchecked")
+		void run() {
+			while(!done()) {
+				for(int herd = 0; herd < 2; herd++) {
+					T X = (T)position[herd];
+					long h = mix(group.hash(X));
+					if((h & dMask) == 0 && distinguish(herd, h >>> 2)) {
+						continue; /* it started over */
+					}
+					int j = (int)(h >>> (64 - JUMP_BITS));
+					position[herd] = group.add(X, jumps(j));
+					distance[herd] += sizes[j];
+				}
+				steps.add(2);
+			}
+		}
+
+		/* records the kangaroo's distinguished point, and returns true if it had to start over */
+		private boolean distinguish(int herd, long key) {
+			long[] other = table.putIfAbsent(key, distance[herd], herd);
+			if(other == null) {
+				return false;
+			}
+			if(other[1] != herd) { /* (k' + wild)G = tame*G */
+				long tame = (herd == 0) ? distance[herd] : other[0], wild = (herd == 0) ? other[0] : distance[herd];
+				long k = lo + tame - wild;
+				if(k >= lo && k - lo < N && group.equals(group.mult(G, k), target)) {
+					result.compareAndSet(-1, k);
+					return false;
+				}
+			}
+			restart(herd); /* following another kangaroo of its herd (or a hash collision) */
+			return true;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class counts the points of y^2 = x^3 + ax + b over F_p the direct
+ * way, |E| = p + 1 + (sum of the Legendre symbols (x^3 + ax + b / p) for
+ * x = 0, ..., p-1), which is what EllipticCurve.order does with the COUNT
+ * strategy. It is O(p), but each x is cheap:
+ *
+ * The cubic isn't evaluated from scratch. Its forward differences
+ * d1 = f(x+1) - f(x) = 3x^2 + 3x + a + 1, d2 = 6x + 6 and d3 = 6 are carried
+ * along, so the next value is three additions mod p (each an add and a
+ * conditional subtraction) and no multiplications at all.
+ *
+ * The Legendre symbol is a bit lookup in the QuadraticResidueTable for small
+ * p, and otherwise the binary Jacobi algorithm, which only shifts and
+ * subtracts (without branches), instead of the remainders ECMath.jacobi
+ * takes at every step.
+ *
+ * [0, p) is split into blocks that run in parallel on a fork-join pool, each
+ * block starting its differences from scratch. Java's vector API is still an
+ * incubator module, so the inner loop is plain scalar code; the table lookup
+ * and the Jacobi loop are data-dependent anyway.
+ */
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class LegendreSum {
+
+	private static final long MIN_BLOCK = 1L << 14; /* smallest range worth a task of its own */
+	private static final int BLOCKS_PER_THREAD = 8; /* so that threads that finish early can steal work */
+	static final long LIMIT = 1L << 62; /* p must be below this */
+
+	private LegendreSum() {
+	}
+
+	/* |E| for the curve y^2 = x^3 + ax + b (mod p), on all processors */
+	public static long order(long a, long b, long p) {
+		return order(a, b, p, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static long order(long a, long b, long p, int threads) {
+		return p + 1 + sum(a, b, p, threads);
+	}
+
+	/* the sum of (x^3 + ax + b / p) for 0 <= x < p, split into blocks over the given number of threads.
+	p must be below 2^62 so that sums of two residues don't overflow */
+	public static long sum(long a, long b, long p, int threads) {
+		if(p < 2 || p >= LIMIT) {
+			throw new IllegalArgumentException("LegendreSum needs 2 <= p < 2^62, got " + p);
+		}
+		QuadraticResidueTable qr = QuadraticResidueTable.of(p, true);
+		threads = Math.max(1, threads);
+		long block = Math.max(MIN_BLOCK, p / ((long)threads * BLOCKS_PER_THREAD) + 1);
+		if(threads == 1 || p <= block) {
+			return sum(a, b, p, qr, 0, p);
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new Range(a, b, p, qr, block, 0, p));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/* the sum over lo <= x < hi, on this thread */
+	static long sum(long a, long b, long p, QuadraticResidueTable qr, long lo, long hi) {
+		if(lo >= hi) {
+			return 0;
+		}
+		BigInteger P = BigInteger.valueOf(p), X = BigInteger.valueOf(lo), A = BigInteger.valueOf(a);
+		long fx = X.pow(3).add(A.multiply(X)).add(BigInteger.valueOf(b)).mod(P).longValue(); /* f(lo) */
+		long d1 = X.multiply(X).add(X).multiply(BigInteger.valueOf(3)).add(A).add(BigInteger.ONE).mod(P).longValue();
+		long d2 = X.add(BigInteger.ONE).multiply(BigInteger.valueOf(6)).mod(P).longValue();
+		long d3 = 6 % p;
+		long rval = 0;
+		if(qr.hasTable()) {
+			for(long x = lo; x < hi; x++) {
+				rval += qr.legendreReduced(fx);
+				fx = addMod(fx, d1, p);
+				d1 = addMod(d1, d2, p);
+				d2 = addMod(d2, d3, p);
+			}
+		}
+		else {
+			for(long x = lo; x < hi; x++) {
+				rval += jacobi(fx, p);
+				fx = addMod(fx, d1, p);
+				d1 = addMod(d1, d2, p);
+				d2 = addMod(d2, d3, p);
+			}
+		}
+		return rval;
+	}
+
+	private static long addMod(long u, long v, long p) { /* u + v (mod p) for 0 <= u, v < p < 2^62 */
+		long s = u + v;
+		return (s >= p) ? s - p : s;
+	}
+
+	/* the Jacobi symbol (a/n) for 0 <= a < n and odd n, by the binary algorithm: factors of 2 come out
+	with a shift, (2/n) = -1 for n = 3, 5 (mod 8), and reciprocity flips the sign when both are 3 (mod 4).
+	the swap is done with the sign mask of a - n instead of a branch (which mispredicts half the time),
+	and the sign is kept as a bit, which made it about three times as fast */
+	static int jacobi(long a, long n) {
+		long sign = 0; /* the low bit is 1 for -1 */
+		while(a != 0) {
+			int z = Long.numberOfTrailingZeros(a);
+			a >>>= z;
+			sign ^= z & ((n >>> 1) ^ (n >>> 2)); /* bits 1 and 2 of n differ for n = 3, 5 (mod 8) */
+			long d = a - n;
+			long m = d >> 63; /* all ones if a < n, when a and n swap */
+			sign ^= (a & n & m) >>> 1;
+			n += d & m; /* min(a, n) */
+			a = (d ^ m) - m; /* |a - n|, even */
+		}
+		return (n == 1) ? 1 - 2*(int)(sign & 1) : 0;
+	}
+
+	/* the sum over lo <= x < hi, split in half until the ranges are down to a block */
+	private static class Range extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		private final long a, b, p;
+		private final QuadraticResidueTable qr;
+		private final long block;
+		private final long lo, hi;
+
+		Range(long a, long b, long p, QuadraticResidueTable qr, long block, long lo, long hi) {
+			this.a = a;
+			this.b = b;
+			this.p = p;
+			this.qr = qr;
+			this.block = block;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected Long compute() {
+			if(hi - lo <= block) {
+				return sum(a, b, p, qr, lo, hi);
+			}
+			long mid = lo + (hi - lo) / 2;
+			Range left = new Range(a, b, p, qr, block, lo, mid);
+			left.fork();
+			long right = new Range(a, b, p, qr, block, mid, hi).compute();
+			return left.join() + right;
+		}
+	}
+}
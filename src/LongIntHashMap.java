@@ -0,0 +1,121 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * A hash table from long keys to int values, for the baby steps of the
+ * baby-step giant-step algorithms (keys are x-coordinates, values are step
+ * numbers). A HashMap<Long, Integer> would box every key and value and chase
+ * a pointer per lookup; here the keys and values are two parallel arrays with
+ * open addressing and linear probing, so a lookup is a multiplication, a
+ * shift, and usually one or two array reads, and nothing is allocated once the
+ * table is big enough.
+ *
+ * Keys must be non-negative (Long.MIN_VALUE marks an empty slot), which holds
+ * for residues mod p. get returns -1 for a missing key, so values should be
+ * non-negative too. clear empties the table without giving up its arrays, so
+ * one table can be reused for many searches.
+ */
+
+import java.util.Arrays;
+
+public final class LongIntHashMap {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] values;
+	private int mask; /* capacity - 1, with a power of two capacity */
+	private int shift; /* 64 - log2(capacity) */
+	private int size = 0;
+
+	public LongIntHashMap(int expected) { /* room for expected keys at a load factor of at most 1/2 */
+		allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expected) * 2 - 1) << 1));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slot(long key) { /* Fibonacci hashing: the top bits of key*2^64/phi */
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	/* sets the value for key, and returns the old value, or -1 if key is new */
+	public int put(long key, int value) {
+		if(key < 0) {
+			throw new IllegalArgumentException("LongIntHashMap keys must be non-negative, got " + key);
+		}
+		if(2*(size + 1) > keys.length) {
+			grow();
+		}
+		for(int i = slot(key); ; i = (i + 1) & mask) {
+			if(keys[i] == EMPTY) {
+				keys[i] = key;
+				values[i] = value;
+				size++;
+				return -1;
+			}
+			if(keys[i] == key) {
+				int old = values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+	}
+
+	/* adds key with value unless it's already there, and returns the value it had, or -1 */
+	public int putIfAbsent(long key, int value) {
+		int old = get(key);
+		if(old == -1) {
+			put(key, value);
+		}
+		return old;
+	}
+
+	public int get(long key) { /* the value for key, or -1 */
+		for(int i = slot(key); ; i = (i + 1) & mask) {
+			long k = keys[i];
+			if(k == key) {
+				return values[i];
+			}
+			if(k == EMPTY) {
+				return -1;
+			}
+		}
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != -1;
+	}
+
+	public void clear() { /* empties the table, keeping its capacity */
+		if(size > 0) {
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(2*oldKeys.length);
+		size = 0;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
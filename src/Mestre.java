@@ -0,0 +1,181 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class finds the number of points N of y^2 = x^3 + ax + b over F_p
+ * with baby steps and giant steps, in O(p^(1/4)) group operations. By
+ * Hasse's theorem N is in [p + 1 - 2sqrt(p), p + 1 + 2sqrt(p)], an interval
+ * of width about 4sqrt(p). For a random point P, a multiple m of the order
+ * of P in that interval is found with sqrt(2sqrt(p)) baby steps jP (whose
+ * x-coordinates go into a LongIntHashMap, so both jP and -jP are covered)
+ * and as many giant steps c*P, c = lo + w, lo + 3w + 1, ..., each of which
+ * covers 2w + 1 possible m. Both are walks in a PointBuffer, so a step is one
+ * mixed addition and nothing is allocated. Then the order of P is m with
+ * the primes that aren't needed divided out.
+ *
+ * N is a multiple of the order of every point, so once the least common
+ * multiple of the orders is more than the width of the interval, N is the
+ * one multiple of it in the interval. The group might not have an element of
+ * order that large (its exponent can be as small as about sqrt(p)), and that
+ * is what Mestre's trick is for: the quadratic twist E' (y^2 = x^3 + ad^2x
+ * + bd^3 for a non-residue d) has N' = 2p + 2 - N points, and for p > 229
+ * either E or E' has a point of order more than 4sqrt(p). So points are taken
+ * alternately from E and E', and N is the only number in the interval that
+ * is a multiple of the orders on E while 2p + 2 - N is a multiple of the
+ * orders on E' (found with the Chinese remainder theorem).
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+
+public final class Mestre {
+
+	private static final int MAX_POINTS = 64; /* points to try before giving up */
+	private static final int BLOCK = 1024; /* giant steps per walk */
+
+	private final long a, b, p;
+	private final PrimeField f;
+	private final long lo, hi; /* the Hasse interval */
+	private final Random rand;
+	private int points = 0; /* points used by the last call to order */
+
+	public Mestre(EllipticCurve E) {
+		this(E.getA(), E.getB(), E.getP());
+	}
+
+	public Mestre(long a, long b, long p) {
+		this.p = p;
+		this.f = PrimeField.of(p);
+		this.a = f.reduce(a);
+		this.b = f.reduce(b);
+		long s = (long)Math.sqrt(4.0*p); /* |t| <= floor(2sqrt(p)) = floor(sqrt(4p)), with 4p < 2^64 unsigned */
+		while(Long.compareUnsigned(s*s, p << 2) > 0) {
+			s--;
+		}
+		while(s + 1 < (1L << 32) && Long.compareUnsigned((s+1)*(s+1), p << 2) <= 0) { /* (s+1)^2 would wrap around at 2^32 */
+			s++;
+		}
+		this.lo = p + 1 - s;
+		this.hi = p + 1 + s;
+		this.rand = new Random(p ^ (a << 20) ^ b);
+	}
+
+	private static long isqrt(long n) {
+		long r = (long)Math.sqrt((double)n);
+		while(r*r > n) {
+			r--;
+		}
+		while((r+1)*(r+1) <= n) {
+			r++;
+		}
+		return r;
+	}
+
+	public int getPoints() {
+		return points;
+	}
+
+	/* |E|, or -1 if p is outside 229 < p < 2^62 (or not prime), the curve is singular, or
+	MAX_POINTS points didn't narrow the interval down to one number */
+	public long order() {
+		if(p <= 229 || p >= (1L << 62) || !ECMath.isPrime(p) || !new EllipticCurve(a, b, p).isEC()) {
+			return -1; /* error */
+		}
+		long d = QuadraticResidueTable.of(p).getNonResidue();
+		long dd = f.mulMod(d, d);
+		long aT = f.mulMod(a, dd), bT = f.mulMod(b, f.mulMod(dd, d)); /* the twist */
+		BigInteger L = BigInteger.ONE, LT = BigInteger.ONE; /* lcm of the orders on E and on E' */
+		BigInteger width = BigInteger.valueOf(hi - lo);
+		for(points = 1; points <= MAX_POINTS; points++) {
+			boolean twist = (points % 2 == 0);
+			long ca = twist ? aT : a, cb = twist ? bT : b;
+			long order = pointOrder(new EllipticCurve(ca, cb, p).randomPoint(rand), ca, cb);
+			if(order <= 0) {
+				return -1; /* error */
+			}
+			BigInteger o = BigInteger.valueOf(order);
+			if(twist) {
+				LT = LT.divide(LT.gcd(o)).multiply(o);
+			}
+			else {
+				L = L.divide(L.gcd(o)).multiply(o);
+			}
+			/* N = 0 (mod L) and N = 2p + 2 (mod LT), which has a solution mod lcm(L, LT) */
+			BigInteger g = L.gcd(LT);
+			BigInteger M = L.divide(g).multiply(LT);
+			if(M.compareTo(width) <= 0) {
+				continue;
+			}
+			BigInteger target = BigInteger.valueOf(2*p + 2);
+			if(!target.mod(g).equals(BigInteger.ZERO)) {
+				return -1; /* error */
+			}
+			/* N = L*k with L*k = 2p + 2 (mod LT), k = ((2p + 2)/g)*(L/g)^(-1) (mod LT/g) */
+			BigInteger m = LT.divide(g);
+			BigInteger k = m.equals(BigInteger.ONE) ? BigInteger.ZERO : target.divide(g).multiply(L.divide(g).modInverse(m)).mod(m);
+			BigInteger N = L.multiply(k);
+			N = N.add(M.multiply(BigInteger.valueOf(lo).subtract(N).add(M).subtract(BigInteger.ONE).divide(M))); /* smallest >= lo */
+			if(N.compareTo(BigInteger.valueOf(hi)) <= 0) {
+				return N.longValue();
+			}
+			return -1; /* error */
+		}
+		return -1; /* error */
+	}
+
+	/* the order of P on y^2 = x^3 + ca*x + cb: a multiple of it in the Hasse interval (which
+	both E and its twist share), with the primes that aren't needed divided out */
+	long pointOrder(Point P, long ca, long cb) {
+		long m = multipleOfOrder(P, ca, cb);
+		if(m <= 0) {
+			return -1; /* error */
+		}
+		for(long q : ECMath.factor(m).keySet()) {
+			while(m % q == 0 && P.mult(m / q, ca, cb, p).isInfinity()) {
+				m /= q;
+			}
+		}
+		return m;
+	}
+
+	/* some m > 0 with mP = infinity, in the Hasse interval unless a smaller one turns up */
+	private long multipleOfOrder(Point P, long ca, long cb) {
+		if(P.isInfinity()) {
+			return 1;
+		}
+		long width = hi - lo;
+		int w = (int)Math.max(1, isqrt((width + 1) / 2)); /* w baby steps, giant steps of 2w + 1 */
+		PointBuffer baby = new PointBuffer(ca, cb, p, w);
+		baby.walk(P, P, w); /* jP at slot j - 1 */
+		LongIntHashMap table = new LongIntHashMap(w);
+		for(int j = 1; j <= w; j++) {
+			if(baby.isInfinity(j-1)) {
+				return j; /* the order is at most w */
+			}
+			int other = table.putIfAbsent(baby.getX(j-1), j);
+			if(other != -1) { /* jP = +-other*P */
+				return (baby.getY(j-1) == baby.getY(other-1)) ? j - other : j + other;
+			}
+		}
+		long stride = 2L*w + 1;
+		long c = lo + w; /* the giant step c*P covers c - w, ..., c + w */
+		int n = (int)Math.min(BLOCK, (width + stride) / stride + 1);
+		PointBuffer giant = new PointBuffer(ca, cb, p, n);
+		giant.walk(P.mult(c, ca, cb, p), P.mult(stride, ca, cb, p), n);
+		for(long done = 0; c - w <= hi; done += n) {
+			if(done > 0) {
+				giant.walk(n);
+			}
+			for(int i = 0; i < n && c - w <= hi; i++, c += stride) {
+				if(giant.isInfinity(i)) {
+					return c;
+				}
+				int j = table.get(giant.getX(i));
+				if(j != -1) { /* c*P = +-jP */
+					return (giant.getY(i) == baby.getY(j-1)) ? c - j : c + j;
+				}
+			}
+		}
+		return -1; /* error */
+	}
+}
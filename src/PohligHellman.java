@@ -0,0 +1,116 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class finds discrete logarithms kG = P by the Pohlig-Hellman
+ * method, which is what EllipticCurve.log uses. If G has order
+ * n = q1^e1 * ... * qr^er, then k (mod qi^ei) can be found in the subgroup of
+ * order qi^ei, and those are combined with the Chinese remainder theorem. The
+ * subgroup problem itself is e logarithms in the subgroup of order q: with
+ * G0 = (n/q)G and k = k0 + k1*q + ... + k(e-1)*q^(e-1) (mod q^e),
+ *
+ *     kj = log_G0 ((n/q^(j+1))(P - (k0 + ... + k(j-1)*q^(j-1))G)).
+ *
+ * Each of those is a search through the multiples of G0 for q up to
+ * DIRECT_LIMIT, baby steps and giant steps (the BSGS class) for q up to
+ * BSGS_LIMIT, and Pollard's rho (the Rho class) above it, so the whole
+ * logarithm takes about sqrt(largest q) group operations instead of n. For
+ * the smooth orders of the curves in the examples that's a few hundred steps.
+ * BSGS tables for q of at least CACHE_LIMIT come from BSGS.of, so they serve
+ * all e digits and later calls with the same G; smaller tables are cheaper
+ * to rebuild than to keep, and would only push the big ones out of the cache.
+ *
+ * If P isn't a multiple of G, one of the subgroup problems has no solution
+ * (or nP isn't infinity to begin with), and log returns NO_SOLUTION right
+ * away instead of after running through every multiple of G.
+ */
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.SortedMap;
+
+public final class PohligHellman {
+
+	public static final long NO_SOLUTION = -1; /* P is not a multiple of G */
+	private static final long BSGS_LIMIT = 1L << 32; /* subgroups of prime order up to this use baby steps and giant steps */
+	private static final long DIRECT_LIMIT = 64; /* up to this, every multiple is tried */
+	private static final long CACHE_LIMIT = 1L << 20; /* from this on, BSGS tables are cached */
+
+	private PohligHellman() {
+	}
+
+	/* k with 0 <= k < n and kG = P, where n is the order of G, or NO_SOLUTION */
+	public static long log(EllipticCurve E, Point P, Point G, long n) {
+		return log(E, P, G, n, ECMath.factor(n));
+	}
+
+	/* the same, given the factorization of n */
+	public static long log(EllipticCurve E, Point P, Point G, long n, SortedMap<Long, Integer> factors) {
+		if(n < 1 || !E.mult(P, n).isInfinity()) {
+			return NO_SOLUTION;
+		}
+		BigInteger k = BigInteger.ZERO, M = BigInteger.ONE; /* k (mod M) so far */
+		for(Map.Entry<Long, Integer> entry : factors.entrySet()) {
+			long q = entry.getKey();
+			long qe = 1;
+			for(int i = 0; i < entry.getValue(); i++) {
+				qe *= q;
+			}
+			long kq = primePowerLog(E, P, G, n, q, entry.getValue());
+			if(kq < 0) {
+				return NO_SOLUTION;
+			}
+			BigInteger Q = BigInteger.valueOf(qe); /* k = kq (mod q^e), and q^e is prime to M */
+			BigInteger t = BigInteger.valueOf(kq).subtract(k).multiply(M.modInverse(Q)).mod(Q);
+			k = k.add(M.multiply(t));
+			M = M.multiply(Q);
+		}
+		long rval = k.longValue();
+		return E.mult(G, rval).equals(P, E.getP()) ? rval : NO_SOLUTION;
+	}
+
+	/* k (mod q^e), one base q digit at a time in the subgroup of order q, or -1 */
+	private static long primePowerLog(EllipticCurve E, Point P, Point G, long n, long q, int e) {
+		long p = E.getP();
+		Point G0 = E.mult(G, n / q);
+		long k = 0, qj = 1; /* k (mod q^j) so far, and q^j */
+		long cofactor = n / q; /* n/q^(j+1) */
+		for(int j = 0; j < e; j++) {
+			Point R = P;
+			if(k != 0) {
+				R = P.add(E.mult(G, -k, n), E.getA(), E.getB(), p); /* P - kG */
+			}
+			long d = primeLog(E, E.mult(R, cofactor), G0, q);
+			if(d < 0) {
+				return -1; /* error */
+			}
+			k += d*qj;
+			qj *= q;
+			cofactor /= q;
+		}
+		return k;
+	}
+
+	/* d with 0 <= d < q and dG = P for G of prime order q, or -1 */
+	private static long primeLog(EllipticCurve E, Point P, Point G, long q) {
+		if(P.isInfinity()) {
+			return 0;
+		}
+		if(q <= DIRECT_LIMIT) { /* G, 2G, ..., (q-1)G with one inversion */
+			Point[] multiples = Point.walk(G, G, (int)q - 1, E.getA(), E.getB(), E.getP());
+			for(int d = 0; d < multiples.length; d++) {
+				if(multiples[d].equals(P, E.getP())) {
+					return d + 1;
+				}
+			}
+			return -1; /* error */
+		}
+		if(q > BSGS_LIMIT) {
+			return new Rho(E, G, q).log(P);
+		}
+		if(q < CACHE_LIMIT) {
+			return new BSGS(E, G, q).log(P);
+		}
+		return BSGS.of(E, G, q).log(P); /* the same table for every digit, and for later calls */
+	}
+}
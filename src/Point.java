@@ -8,9 +8,23 @@ package src;
  * at infinity; otherwise, the z-coordinate is 1, and (x : y : 1)
  * represents (x, y) in affine coordinates. But the toString method prints
  * either (x, y) or the string "infinity".
+ *
+ * mult uses Jacobian coordinates (x = X/Z^2, y = Y/Z^3), where a doubling
+ * costs 10 field multiplications (8 when a = -3, 7 when a = 0) instead of 14,
+ * and adding a point with z = 1 costs 11. The CHUDNOVSKY option instead
+ * carries Z^2 and Z^3 of the points it adds, so they're added for 14
+ * multiplications without inverting their z. Either way k is recoded as a
+ * width-w NAF, so only about one bit in w+1 needs an addition.
  */
 
 public class Point {
+	
+    public enum Coordinates { /* coordinate systems for mult */
+    	PROJECTIVE, /* (X : Y : Z) = (X/Z, Y/Z), Washington's formulas */
+    	JACOBIAN, /* (X : Y : Z) = (X/Z^2, Y/Z^3), with the base point added in affine coordinates */
+    	CHUDNOVSKY /* Jacobian, with the base point kept as (X : Y : Z : Z^2 : Z^3) */
+    }
+    
     private long x;
     private long y;
     private long z;
@@ -58,13 +72,52 @@ public class Point {
     }
 
     @Override
-    public boolean equals(Object other) {
+    public boolean equals(Object other) { /* the same coordinates, which is what's wanted for reduced points */
+    	if(!(other instanceof Point)) {
+    		return false;
+    	}
     	Point Q = (Point)other;
     	return this.x == Q.getX() && this.y == Q.getY() && this.z == Q.getZ();
     }
+    
+    @Override
+    public int hashCode() {
+    	return 31*(31*Long.hashCode(x) + Long.hashCode(y)) + Long.hashCode(z);
+    }
+    
+    /* the same point mod p, whatever the projective representatives: (X1 : Y1 : Z1) = (X2 : Y2 : Z2)
+    if X1*Z2 = X2*Z1 and Y1*Z2 = Y2*Z1, which needs two cross-multiplications instead of two inversions */
+    public boolean equals(Point Q, long p) {
+    	PrimeField f = PrimeField.of(p);
+    	long z1 = f.reduce(getZ()), z2 = f.reduce(Q.getZ());
+    	if(z1 == 0 || z2 == 0) { /* infinity is only equal to infinity */
+    		return z1 == z2;
+    	}
+    	return f.mulMod(f.reduce(getX()), z2) == f.mulMod(f.reduce(Q.getX()), z1)
+    			&& f.mulMod(f.reduce(getY()), z2) == f.mulMod(f.reduce(Q.getY()), z1);
+    }
+    
+    /* a hash code that's the same for every representative of the point mod p (so it agrees with
+    equals(Q, p)). that means hashing the reduced point, which is free for z = 1 and infinity */
+    public int hashCode(long p) {
+    	PrimeField f = PrimeField.of(p);
+    	long zz = f.reduce(getZ());
+    	if(zz == 0) {
+    		return new Point().hashCode();
+    	}
+    	if(zz == 1) {
+    		return new Point(f.reduce(getX()), f.reduce(getY()), 1).hashCode();
+    	}
+    	long inv = ECMath.inverse(zz, p);
+    	return new Point(f.mulMod(f.reduce(getX()), inv), f.mulMod(f.reduce(getY()), inv), 1).hashCode();
+    }
+
+    public boolean isInfinity() {
+    	return z == 0;
+    }
 
     public String toString() {
-    	if(this.equals(new Point())) {
+    	if(isInfinity()) {
     		return "infinity";
     	}
     	return "(" + x + ", " + y + ")";
@@ -72,93 +125,369 @@ public class Point {
     
     public Point addHelper(Point Q, long a, long b, long p) { /* uses projective coordinates formulas from Washington's Elliptic Curves text.
     this method separate so mult doesn't invert the z-coordinate O(logk) times */
+    	PrimeField f = PrimeField.of(p);
+    	return fromMont(toMont(this, f).addMont(toMont(Q, f), f.toMont(a), f), f);
+    }
+    
+    /* the same formulas as addHelper, but on coordinates in Montgomery form, so every
+    product is a single PrimeField multiplication and nothing can overflow. P = Q and
+    P = -Q are recognized from u and v, so it works for any projective representatives */
+    private Point addMont(Point Q, long a, PrimeField f) {
     	long x3, y3, z3;
-    	Point infinity = new Point();
-    	if(!equals(Q) && !equals(new Point(Q.getX(), Math.floorMod(-Q.getY(), p), Q.getZ()))) { /* if P != +-Q */
-    		long u = Math.floorMod(Q.getY()*getZ(), p) - Math.floorMod(getY()*Q.getZ(), p);
-    		long v = Math.floorMod(Q.getX()*getZ(), p) - Math.floorMod(getX()*Q.getZ(), p);
-    		long w = Math.floorMod(Math.floorMod(u*u, p)*Math.floorMod(getZ()*Q.getZ(), p), p) - Math.floorMod(v*v*v, p) - Math.floorMod(Math.floorMod(2*v*v, p), p)*Math.floorMod(getX()*Q.getZ(), p);
-    		x3 = Math.floorMod(v*w, p);
-    		y3 = Math.floorMod(u*(Math.floorMod(v*v, p)*Math.floorMod(getX()*Q.getZ(), p) - w), p) - Math.floorMod(Math.floorMod(v*v*v, p)*Math.floorMod(getY()*Q.getZ(), p), p);
-    		z3 = Math.floorMod(Math.floorMod(v*v*v, p)*Math.floorMod(getZ()*Q.getZ(), p), p);
-    	}
-    	else if(equals(Q)) { /* if P = Q */
-    		long t = Math.floorMod(a*getZ()*getZ(), p) + Math.floorMod(3*getX()*getX(), p);
-    		long u = Math.floorMod(getY()*getZ(), p);
-    		long v = Math.floorMod(u*getX()*getY(), p);
-    		long w = Math.floorMod(t*t, p) - Math.floorMod(8*v, p);
-    		x3 = Math.floorMod(2*u*w, p);
-    		y3 = Math.floorMod(t*(4*v - w), p) - Math.floorMod(8*getY()*getY()*u*u, p);
-    		z3 = Math.floorMod(8*u*u*u, p);
+    	if(Q.getZ() == 0) { /* if Q = infinity ==> P + Q = P */
+    		return new Point(this);
+    	}
+    	if(getZ() == 0) { /* if P = infinity ==> P + Q = Q */
+    		return new Point(Q);
+    	}
+    	long u = 0, v = 0, x1z2 = 0, y1z2 = 0, z1z2 = 0;
+    	if(this != Q) {
+    		x1z2 = f.mul(getX(), Q.getZ());
+    		y1z2 = f.mul(getY(), Q.getZ());
+    		u = f.sub(f.mul(Q.getY(), getZ()), y1z2);
+    		v = f.sub(f.mul(Q.getX(), getZ()), x1z2);
+    	}
+    	if(v != 0) { /* if P != +-Q */
+    		z1z2 = f.mul(getZ(), Q.getZ());
+    		long vv = f.sqr(v);
+    		long vvv = f.mul(vv, v);
+    		long vvx = f.mul(vv, x1z2);
+    		long w = f.sub(f.sub(f.mul(f.sqr(u), z1z2), vvv), f.add(vvx, vvx));
+    		x3 = f.mul(v, w);
+    		y3 = f.sub(f.mul(u, f.sub(vvx, w)), f.mul(vvv, y1z2));
+    		z3 = f.mul(vvv, z1z2);
+    	}
+    	else if(u == 0) { /* if P = Q */
+    		long xx = f.sqr(getX());
+    		long t = f.add(f.mul(a, f.sqr(getZ())), f.add(f.add(xx, xx), xx));
+    		u = f.mul(getY(), getZ());
+    		v = f.mul(f.mul(u, getX()), getY());
+    		long v4 = f.add(f.add(v, v), f.add(v, v));
+    		long w = f.sub(f.sqr(t), f.add(v4, v4));
+    		long uw = f.mul(u, w);
+    		long yu = f.mul(getY(), u);
+    		long yu2 = f.add(yu, yu);
+    		long yu8 = f.add(f.sqr(yu2), f.sqr(yu2)); /* 8Y^2u^2 = 2(2Yu)^2 */
+    		long u2 = f.add(u, u);
+    		x3 = f.add(uw, uw);
+    		y3 = f.sub(f.mul(t, f.sub(v4, w)), yu8);
+    		z3 = f.mul(f.sqr(u2), u2); /* 8u^3 = (2u)^3 */
     	}
     	else { /* if P = -Q ==> P + Q = infinity */
     		x3 = 0;
-    		y3 = 1;
+    		y3 = f.one();
     		z3 = 0;
     	}
-    	if(equals(infinity)) { /* if P = infinity ==> P + Q = Q */
-    		x3 = Q.getX();
-    		y3 = Q.getY();
-    		z3 = Q.getZ();
+    	return new Point(x3, y3, z3);
+    }
+    
+    private static Point toMont(Point P, PrimeField f) {
+    	return new Point(f.toMont(P.getX()), f.toMont(P.getY()), f.toMont(P.getZ()));
+    }
+    
+    private static Point fromMont(Point P, PrimeField f) {
+    	return new Point(f.fromMont(P.getX()), f.fromMont(P.getY()), f.fromMont(P.getZ()));
+    }
+    
+    /* scales a point in Montgomery form back down to z = 1 (or to (0, 1, 0) for infinity)
+    and converts it out of Montgomery form */
+    private static Point normalize(Point P, PrimeField f) {
+    	if(P.getZ() == 0) {
+    		return new Point(); /* scale infinity down to unique (0, 1, 0) */
     	}
-    	if(Q.equals(infinity)) { /* if Q = infinity ==> P + Q = P */
-    		x3 = getX();
-    		y3 = getY();
-    		z3 = getZ();
+    	long inv = f.montInverse(P.getZ());
+    	return new Point(f.fromMont(f.mul(P.getX(), inv)), f.fromMont(f.mul(P.getY(), inv)), 1);
+    }
+    
+    /* scales every point in P (projective, mod p) down to z = 1, or to (0, 1, 0) for infinity, in
+    place. all the z's are inverted together (Montgomery's trick), so it takes one inversion */
+    public static void normalizeAll(Point[] P, long p) {
+    	PrimeField f = PrimeField.of(p);
+    	long[] z = new long[P.length];
+    	for(int i = 0; i < P.length; i++) {
+    		z[i] = f.toMont(P[i].getZ());
     	}
-    	return new Point(x3, y3, z3);
+    	f.batchMontInverse(z, z.length); /* infinity has z = 0, which is left alone */
+    	for(int i = 0; i < P.length; i++) {
+    		if(z[i] == 0) {
+    			P[i].setX(0);
+    			P[i].setY(1);
+    		}
+    		else {
+    			P[i].setX(f.fromMont(f.mul(f.toMont(P[i].getX()), z[i])));
+    			P[i].setY(f.fromMont(f.mul(f.toMont(P[i].getY()), z[i])));
+    		}
+    		P[i].setZ(z[i] == 0 ? 0 : 1);
+    	}
+    }
+    
+    /* returns the n points start, start + step, ..., start + (n-1)step in reduced coordinates.
+    the walk stays projective and scales the points down together at the end with a single
+    inversion (Montgomery's trick), instead of one inversion per step. the result needs a Point per
+    step anyway, so this fills the array directly; a walk that doesn't need Points (or that is done
+    block after block) should use a PointBuffer, which allocates nothing */
+    public static Point[] walk(Point start, Point step, int n, long a, long b, long p) {
+    	PrimeField f = PrimeField.of(p);
+    	long aM = f.toMont(a);
+    	Point S = toMont(step, f);
+    	Point C = toMont(start, f);
+    	Point[] rval = new Point[n];
+    	for(int i = 0; i < n; i++) {
+    		rval[i] = fromMont(C, f);
+    		if(i < n-1) {
+    			C = C.addMont(S, aM, f);
+    		}
+    	}
+    	normalizeAll(rval, p);
+    	return rval;
     }
     
-    public Point add(Point Q, long a, long b, long p) { /* call addhelper and
+    public Point add(Point Q, long a, long b, long p) { /* add in projective coordinates and
 	    reduce the coordinates at the end, since the result is an equivalence
 	         class, so it must be scaled back down to reduced coordinates */
-    	Point R = addHelper(Q, a, b, p);
-    	if(Math.floorMod(R.getZ(), p) == 0) {
-    		R.setY(1); /* scale infinity down to unique (0, 1, 0) */
-    	}
-    	else {
-    		long inv = ECMath.inverse(R.getZ(), p);
-    		R.setX(R.getX() * inv);
-    		R.setY(R.getY() * inv); /* scale z coordinate back down to 1 */
-    		R.setZ(R.getZ() * inv);
-    	}
-    	R.setX(Math.floorMod(R.getX(), p));
-    	R.setY(Math.floorMod(R.getY(), p)); /* reduce coordinates mod p */
-    	R.setZ(Math.floorMod(R.getZ(), p));
-    	return R;
+    	PrimeField f = PrimeField.of(p);
+    	return normalize(toMont(this, f).addMont(toMont(Q, f), f.toMont(a), f), f);
+    }
+    
+    public Point mult(long k, long a, long b, long p) { /* compute kP with a wNAF in Jacobian coordinates */
+    	return mult(k, a, b, p, Coordinates.JACOBIAN);
     }
     
-    public Point mult(long k, long a, long b, long p) { /* compute kP using repeated doubling */
+    private Point multProjective(long k, long a, long b, long p) { /* compute kP using repeated doubling */
+    	PrimeField f = PrimeField.of(p);
+    	long aM = f.toMont(a);
     	long A = k;
-    	Point B = new Point(0, 1, 0);
-    	Point C = new Point(this);
+    	Point B = new Point(0, f.one(), 0);
+    	Point C = toMont(this, f); /* stay in Montgomery form until the end */
     	while(A > 0) {
     		if(A % 2 == 0) { /* if A is even */
     			A /= 2;
-    			C = C.addHelper(C, a, b, p);
-    			C.setX(Math.floorMod(C.getX(), p));
-    			C.setY(Math.floorMod(C.getY(), p)); /* have to reduce mod p O(logk) times to prevent overflow */
-    			C.setZ(Math.floorMod(C.getZ(), p));
+    			C = C.addMont(C, aM, f);
     		}
     		else { /* if A is odd */
     			A -= 1;
-    			B = B.addHelper(C, a, b, p);
-    			B.setX(Math.floorMod(B.getX(), p));
-    			B.setY(Math.floorMod(B.getY(), p)); /* have to reduce mod p O(logk) times to prevent overflow */
-    			B.setZ(Math.floorMod(B.getZ(), p));
+    			B = B.addMont(C, aM, f);
     		}
     	}
-    	if(Math.floorMod(B.getZ(), p) == 0)
-    		B.setY(1); /* scale infinity down to unique (0, 1, 0) */
+    	return normalize(B, f);
+    }
+    
+    /* kP in the given coordinate system, for k >= 0 (kP = infinity for k < 0). PROJECTIVE is the
+    binary method. JACOBIAN and CHUDNOVSKY use a width-w NAF of k (see ECMath.wNAF): the odd
+    multiples P, 3P, ..., (2^(w-1) - 1)P are computed once, and scaled to z = 1 with a single
+    inversion for JACOBIAN (so every addition is a mixed one), or kept with their Z^2 and Z^3 for
+    CHUDNOVSKY (so no inversion at all). Then each bit of k costs a doubling, and each nonzero digit
+    an addition of a table point or its negative, (x, -y). The result is the same in every system */
+    public Point mult(long k, long a, long b, long p, Coordinates coords) {
+    	if(coords == Coordinates.PROJECTIVE) {
+    		return multProjective(k, a, b, p);
+    	}
+    	if(k <= 0 || getZ() % p == 0) {
+    		return new Point();
+    	}
+    	PrimeField f = PrimeField.of(p);
+    	long aM = f.toMont(a);
+    	boolean minus3 = f.reduce(a) == f.reduce(-3);
+    	int w = ECMath.wNAFWidth(64 - Long.numberOfLeadingZeros(k));
+    	int[] naf = ECMath.wNAF(k, w);
+    	int m = 1 << (w-2); /* the odd multiples (2i + 1)P, i < m */
+    	long[][] T = oddMultiples(m, aM, minus3, f);
+    	long[][] pos = new long[m][], neg = new long[m][]; /* (2i + 1)P and -(2i + 1)P, null for infinity */
+    	if(coords == Coordinates.JACOBIAN) {
+    		pos = affine(T, f);
+    		for(int i = 0; i < m; i++) {
+    			if(pos[i] != null) {
+    				neg[i] = new long[] {pos[i][0], f.neg(pos[i][1])};
+    			}
+    		}
+    	}
+    	else {
+    		for(int i = 0; i < m; i++) {
+    			if(T[i][2] != 0) {
+    				pos[i] = toChudnovsky(T[i], f);
+    				neg[i] = pos[i].clone();
+    				neg[i][1] = f.neg(neg[i][1]);
+    			}
+    		}
+    	}
+    	long[] R = {f.one(), f.one(), 0};
+    	for(int i = naf.length - 1; i >= 0; i--) {
+    		jacobianDouble(R, aM, minus3, f);
+    		if(naf[i] != 0) {
+    			long[] Q = (naf[i] > 0) ? pos[naf[i] >> 1] : neg[(-naf[i]) >> 1];
+    			if(Q == null) { /* adding infinity */
+    			}
+    			else if(Q.length == 2) {
+    				jacobianAddAffine(R, Q[0], Q[1], aM, minus3, f);
+    			}
+    			else {
+    				jacobianAddChudnovsky(R, Q, aM, minus3, f);
+    			}
+    		}
+    	}
+    	return fromJacobian(R, f);
+    }
+    
+    /* the odd multiples P, 3P, ..., (2m - 1)P in Jacobian coordinates, in Montgomery form */
+    long[][] oddMultiples(int m, long a, boolean minus3, PrimeField f) {
+    	long[][] T = new long[m][];
+    	long Z = f.toMont(getZ()); /* (X : Y : Z) projective is (XZ : YZ^2 : Z) Jacobian */
+    	long ZZ = f.sqr(Z);
+    	T[0] = new long[] {f.mul(f.toMont(getX()), Z), f.mul(f.toMont(getY()), ZZ), Z};
+    	if(m > 1) {
+    		long[] D = T[0].clone();
+    		jacobianDouble(D, a, minus3, f);
+    		long[] C = toChudnovsky(D, f);
+    		for(int i = 1; i < m; i++) {
+    			T[i] = T[i-1].clone();
+    			jacobianAddChudnovsky(T[i], C, a, minus3, f);
+    		}
+    	}
+    	return T;
+    }
+    
+    /* the Jacobian points T scaled to affine (x, y) in Montgomery form with a single inversion,
+    or null for infinity */
+    static long[][] affine(long[][] T, PrimeField f) {
+    	int m = T.length;
+    	long[][] rval = new long[m][];
+    	long[] z = new long[m];
+    	for(int i = 0; i < m; i++) {
+    		z[i] = T[i][2];
+    	}
+    	f.batchMontInverse(z, m); /* infinity has z = 0, which is left alone */
+    	for(int i = 0; i < m; i++) {
+    		if(z[i] != 0) {
+    			long zz = f.sqr(z[i]);
+    			rval[i] = new long[] {f.mul(T[i][0], zz), f.mul(T[i][1], f.mul(zz, z[i]))};
+    		}
+    	}
+    	return rval;
+    }
+    
+    /* scales a Jacobian point (X, Y, Z) in Montgomery form down to (X/Z^2, Y/Z^3, 1), or infinity */
+    static Point fromJacobian(long[] R, PrimeField f) {
+    	if(R[2] == 0) {
+    		return new Point();
+    	}
+    	long zInv = f.montInverse(R[2]);
+    	long zz = f.sqr(zInv);
+    	return new Point(f.fromMont(f.mul(R[0], zz)), f.fromMont(f.mul(R[1], f.mul(zz, zInv))), 1);
+    }
+    
+    static long[] toChudnovsky(long[] R, PrimeField f) { /* (X, Y, Z) -> (X, Y, Z, Z^2, Z^3) */
+    	long ZZ = f.sqr(R[2]);
+    	return new long[] {R[0], R[1], R[2], ZZ, f.mul(ZZ, R[2])};
+    }
+    
+    /* R = 2R in Jacobian coordinates, in place. dbl-2001-b for a = -3 (3M + 5S), otherwise
+    dbl-2007-bl (2M + 8S, or 2M + 5S for a = 0, where the a*Z^4 term drops out) */
+    static void jacobianDouble(long[] R, long a, boolean minus3, PrimeField f) {
+    	long X = R[0], Y = R[1], Z = R[2];
+    	if(Z == 0) { /* 2*infinity = infinity */
+    		return;
+    	}
+    	if(minus3) {
+    		long delta = f.sqr(Z);
+    		long gamma = f.sqr(Y);
+    		long beta = f.mul(X, gamma);
+    		long alpha = f.mul(f.sub(X, delta), f.add(X, delta));
+    		alpha = f.add(f.add(alpha, alpha), alpha); /* 3(X - Z^2)(X + Z^2) = 3X^2 - 3Z^4 */
+    		long beta4 = f.add(f.add(beta, beta), f.add(beta, beta));
+    		long X3 = f.sub(f.sqr(alpha), f.add(beta4, beta4));
+    		long Z3 = f.sub(f.sub(f.sqr(f.add(Y, Z)), gamma), delta); /* 2YZ */
+    		long gg = f.sqr(gamma);
+    		long gg4 = f.add(f.add(gg, gg), f.add(gg, gg));
+    		R[0] = X3;
+    		R[1] = f.sub(f.mul(alpha, f.sub(beta4, X3)), f.add(gg4, gg4));
+    		R[2] = Z3;
+    		return;
+    	}
+    	long XX = f.sqr(X);
+    	long YY = f.sqr(Y);
+    	long YYYY = f.sqr(YY);
+    	long ZZ = f.sqr(Z);
+    	long S = f.sub(f.sub(f.sqr(f.add(X, YY)), XX), YYYY); /* 2XY^2 */
+    	S = f.add(S, S);
+    	long M = f.add(f.add(XX, XX), XX);
+    	if(a != 0) {
+    		M = f.add(M, f.mul(a, f.sqr(ZZ)));
+    	}
+    	long T = f.sub(f.sqr(M), f.add(S, S));
+    	long Y4 = f.add(f.add(YYYY, YYYY), f.add(YYYY, YYYY));
+    	R[0] = T;
+    	R[1] = f.sub(f.mul(M, f.sub(S, T)), f.add(Y4, Y4));
+    	R[2] = f.sub(f.sub(f.sqr(f.add(Y, Z)), YY), ZZ); /* 2YZ */
+    }
+    
+    /* R = R + (x2, y2) for an affine point, in place (madd-2007-bl, 7M + 4S) */
+    static void jacobianAddAffine(long[] R, long x2, long y2, long a, boolean minus3, PrimeField f) {
+    	long X1 = R[0], Y1 = R[1], Z1 = R[2];
+    	if(Z1 == 0) { /* infinity + Q = Q */
+    		R[0] = x2;
+    		R[1] = y2;
+    		R[2] = f.one();
+    		return;
+    	}
+    	long Z1Z1 = f.sqr(Z1);
+    	long H = f.sub(f.mul(x2, Z1Z1), X1);
+    	long r = f.sub(f.mul(y2, f.mul(Z1, Z1Z1)), Y1);
+    	if(H == 0) { /* R = +-Q */
+    		jacobianPlusMinus(R, r, a, minus3, f);
+    		return;
+    	}
+    	long HH = f.sqr(H);
+    	long I = f.add(f.add(HH, HH), f.add(HH, HH));
+    	long J = f.mul(H, I);
+    	r = f.add(r, r);
+    	long V = f.mul(X1, I);
+    	long X3 = f.sub(f.sub(f.sqr(r), J), f.add(V, V));
+    	long YJ = f.mul(Y1, J);
+    	R[0] = X3;
+    	R[1] = f.sub(f.mul(r, f.sub(V, X3)), f.add(YJ, YJ));
+    	R[2] = f.sub(f.sub(f.sqr(f.add(Z1, H)), Z1Z1), HH); /* 2Z1H */
+    }
+    
+    /* R = R + C for C = (X2, Y2, Z2, Z2^2, Z2^3) in Chudnovsky coordinates, in place (11M + 3S) */
+    static void jacobianAddChudnovsky(long[] R, long[] C, long a, boolean minus3, PrimeField f) {
+    	long X1 = R[0], Y1 = R[1], Z1 = R[2];
+    	if(C[2] == 0) { /* R + infinity = R */
+    		return;
+    	}
+    	if(Z1 == 0) {
+    		R[0] = C[0];
+    		R[1] = C[1];
+    		R[2] = C[2];
+    		return;
+    	}
+    	long Z1Z1 = f.sqr(Z1);
+    	long U1 = f.mul(X1, C[3]);
+    	long S1 = f.mul(Y1, C[4]);
+    	long H = f.sub(f.mul(C[0], Z1Z1), U1);
+    	long r = f.sub(f.mul(C[1], f.mul(Z1, Z1Z1)), S1);
+    	if(H == 0) {
+    		jacobianPlusMinus(R, r, a, minus3, f);
+    		return;
+    	}
+    	long HH = f.sqr(H);
+    	long HHH = f.mul(H, HH);
+    	long V = f.mul(U1, HH);
+    	long X3 = f.sub(f.sub(f.sqr(r), HHH), f.add(V, V));
+    	R[0] = X3;
+    	R[1] = f.sub(f.mul(r, f.sub(V, X3)), f.mul(S1, HHH));
+    	R[2] = f.mul(f.mul(Z1, C[2]), H);
+    }
+    
+    /* the addition formulas break down when both points have the same x: R + R = 2R if the y's
+    agree too (r = 0), otherwise R + (-R) = infinity */
+    private static void jacobianPlusMinus(long[] R, long r, long a, boolean minus3, PrimeField f) {
+    	if(r == 0) {
+    		jacobianDouble(R, a, minus3, f);
+    	}
     	else {
-    		long inv = ECMath.inverse(B.getZ(), p);
-    		B.setX(B.getX() * inv);
-    		B.setY(B.getY() * inv); /* scale z coordinate back down to 1 */
-    		B.setZ(B.getZ() * inv);
+    		R[0] = f.one();
+    		R[1] = f.one();
+    		R[2] = 0;
     	}
-    	B.setX(Math.floorMod(B.getX(), p));
-		B.setY(Math.floorMod(B.getY(), p)); /* reduce coordinates mod p */
-		B.setZ(Math.floorMod(B.getZ(), p));
-    	return B;
     }
-}
\ No newline at end of file
+}
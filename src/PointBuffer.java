@@ -0,0 +1,258 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * A fixed number of points on one EllipticCurve, stored as three parallel
+ * long arrays x[], y[], z[] (Jacobian coordinates in Montgomery form) instead
+ * of one Point object each. Walks, additions and normalization read and
+ * write the arrays in place, with all their scratch space allocated once in
+ * the constructor, so a walk of any length creates no garbage at all.
+ * EllipticCurve.log, EllipticCurve.listGmults, BSGS, and Mestre use one.
+ *
+ * walk(start, step, n) fills slots 0, ..., n-1 with start + i*step using
+ * mixed additions (the step is scaled to z = 1 first), then scales all n
+ * points down to z = 1 with one inversion. walk(n) carries on from where the
+ * last walk stopped, so a long walk can go through the buffer a block at a
+ * time. Individual slots can be read as a Point or an AffinePoint, compared
+ * with a point, and added together.
+ *
+ * A PointBuffer is mutable and not thread-safe, so each thread needs its own.
+ */
+
+public final class PointBuffer {
+
+	private final long a, b, p;
+	private final PrimeField f;
+	private final long aM; /* a in Montgomery form */
+	private final boolean minus3;
+	private final long[] x, y, z; /* slot i is (x[i] : y[i] : z[i]), Jacobian, in Montgomery form */
+	private final long[] inverses; /* scratch for normalize: the z's, then their inverses */
+	private final long[] prefix; /* scratch for normalize: prefix products */
+	private final long[] R = new long[3]; /* the next point of the walk */
+	private final long[] T = new long[3]; /* scratch for add */
+	private final long[] C = new long[5]; /* scratch for add, in Chudnovsky coordinates */
+	private long stepX, stepY; /* the step of the walk, affine, in Montgomery form */
+	private boolean stepInfinity = true;
+
+	public PointBuffer(EllipticCurve E, int capacity) {
+		this(E.getA(), E.getB(), E.getP(), capacity);
+	}
+
+	public PointBuffer(long a, long b, long p, int capacity) {
+		this.a = a;
+		this.b = b;
+		this.p = p;
+		this.f = PrimeField.of(p);
+		this.aM = f.toMont(a);
+		this.minus3 = f.reduce(a) == f.reduce(-3);
+		x = new long[capacity];
+		y = new long[capacity];
+		z = new long[capacity];
+		inverses = new long[capacity];
+		prefix = new long[capacity];
+		R[0] = f.one();
+		R[1] = f.one();
+	}
+
+	public int capacity() {
+		return x.length;
+	}
+
+	public EllipticCurve getCurve() {
+		return new EllipticCurve(a, b, p);
+	}
+
+	public void set(int i, Point P) { /* (X : Y : Z) projective is (XZ : YZ^2 : Z) Jacobian */
+		long Z = f.toMont(P.getZ());
+		if(Z == 0) {
+			setInfinity(i);
+			return;
+		}
+		x[i] = f.mul(f.toMont(P.getX()), Z);
+		y[i] = f.mul(f.toMont(P.getY()), f.sqr(Z));
+		z[i] = Z;
+	}
+
+	public void set(int i, AffinePoint P) {
+		if(P.isInfinity()) {
+			setInfinity(i);
+			return;
+		}
+		x[i] = f.toMont(P.getX());
+		y[i] = f.toMont(P.getY());
+		z[i] = f.one();
+	}
+
+	public void setInfinity(int i) {
+		x[i] = f.one();
+		y[i] = f.one();
+		z[i] = 0;
+	}
+
+	public void copy(int from, int to) {
+		x[to] = x[from];
+		y[to] = y[from];
+		z[to] = z[from];
+	}
+
+	public boolean isInfinity(int i) {
+		return z[i] == 0;
+	}
+
+	public Point get(int i) { /* slot i in reduced coordinates (an inversion unless it's normalized) */
+		if(z[i] == 0) {
+			return new Point();
+		}
+		if(z[i] == f.one()) {
+			return new Point(f.fromMont(x[i]), f.fromMont(y[i]), 1);
+		}
+		T[0] = x[i];
+		T[1] = y[i];
+		T[2] = z[i];
+		return Point.fromJacobian(T, f);
+	}
+
+	public long getX(int i) { /* affine x of slot i (not infinity), with an inversion unless it's normalized */
+		return (z[i] == f.one()) ? f.fromMont(x[i]) : get(i).getX();
+	}
+
+	public long getY(int i) {
+		return (z[i] == f.one()) ? f.fromMont(y[i]) : get(i).getY();
+	}
+
+	public AffinePoint getValue(int i) {
+		Point P = get(i);
+		return P.getZ() == 0 ? AffinePoint.INFINITY : AffinePoint.of(P.getX(), P.getY());
+	}
+
+	public Point[] toArray(int n) { /* slots 0, ..., n-1 in reduced coordinates, with one inversion */
+		normalize(n);
+		Point[] rval = new Point[n];
+		for(int i = 0; i < n; i++) {
+			rval[i] = get(i);
+		}
+		return rval;
+	}
+
+	/* whether slot i is P (a point in any projective coordinates): (X : Y : Z) Jacobian is (x, y)
+	if X = xZ^2 and Y = yZ^3, which for a normalized slot is just a comparison */
+	public boolean equals(int i, Point P) {
+		long Pz = f.toMont(P.getZ());
+		if(Pz == 0 || z[i] == 0) {
+			return Pz == z[i];
+		}
+		long Pinv = (Pz == f.one()) ? Pz : f.montInverse(Pz);
+		return matches(i, f.mul(f.toMont(P.getX()), Pinv), f.mul(f.toMont(P.getY()), Pinv));
+	}
+
+	private boolean matches(int i, long px, long py) { /* slot i (not infinity) is the affine (px, py) in Montgomery form */
+		if(z[i] == f.one()) {
+			return x[i] == px && y[i] == py;
+		}
+		long zz = f.sqr(z[i]);
+		return x[i] == f.mul(px, zz) && y[i] == f.mul(py, f.mul(zz, z[i]));
+	}
+
+	/* the first slot i < n that is P, or -1. P is converted once, so for normalized slots
+	(after a walk) each comparison is two long comparisons */
+	public int indexOf(Point P, int n) {
+		long Pz = f.toMont(P.getZ());
+		if(Pz == 0) {
+			for(int i = 0; i < n; i++) {
+				if(z[i] == 0) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		long Pinv = (Pz == f.one()) ? Pz : f.montInverse(Pz);
+		long px = f.mul(f.toMont(P.getX()), Pinv), py = f.mul(f.toMont(P.getY()), Pinv);
+		for(int i = 0; i < n; i++) {
+			if(z[i] != 0 && matches(i, px, py)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public void negate(int i) { /* -(X : Y : Z) = (X : -Y : Z) */
+		y[i] = f.neg(y[i]);
+	}
+
+	/* slot dest = slot i + slot j, in place (mixed addition if slot j is normalized) */
+	public void add(int i, int j, int dest) {
+		T[0] = x[i];
+		T[1] = y[i];
+		T[2] = z[i];
+		if(z[j] == f.one()) {
+			Point.jacobianAddAffine(T, x[j], y[j], aM, minus3, f);
+		}
+		else {
+			long ZZ = f.sqr(z[j]);
+			C[0] = x[j];
+			C[1] = y[j];
+			C[2] = z[j];
+			C[3] = ZZ;
+			C[4] = f.mul(ZZ, z[j]);
+			Point.jacobianAddChudnovsky(T, C, aM, minus3, f);
+		}
+		x[dest] = T[0];
+		y[dest] = T[1];
+		z[dest] = T[2];
+	}
+
+	public void twice(int i, int dest) { /* slot dest = 2*(slot i) */
+		T[0] = x[i];
+		T[1] = y[i];
+		T[2] = z[i];
+		Point.jacobianDouble(T, aM, minus3, f);
+		x[dest] = T[0];
+		y[dest] = T[1];
+		z[dest] = T[2];
+	}
+
+	/* scales slots 0, ..., n-1 down to z = 1 (infinity stays z = 0) in place, with one
+	inversion for all of them (Montgomery's trick) */
+	public void normalize(int n) {
+		System.arraycopy(z, 0, inverses, 0, n);
+		f.batchMontInverse(inverses, n, prefix); /* infinity has z = 0, which is left alone */
+		for(int i = 0; i < n; i++) {
+			long zInv = inverses[i];
+			if(zInv != 0) {
+				long zz = f.sqr(zInv);
+				x[i] = f.mul(x[i], zz);
+				y[i] = f.mul(y[i], f.mul(zz, zInv));
+				z[i] = f.one();
+			}
+		}
+	}
+
+	/* fills slots 0, ..., n-1 with start, start + step, ..., start + (n-1)step, normalized */
+	public void walk(Point start, Point step, int n) {
+		long Z = f.toMont(step.getZ());
+		stepInfinity = (Z == 0);
+		if(!stepInfinity) {
+			long zInv = (Z == f.one()) ? Z : f.montInverse(Z);
+			stepX = f.mul(f.toMont(step.getX()), zInv);
+			stepY = f.mul(f.toMont(step.getY()), zInv);
+		}
+		set(0, start);
+		R[0] = x[0];
+		R[1] = y[0];
+		R[2] = z[0];
+		walk(n);
+	}
+
+	/* fills slots 0, ..., n-1 with the next n points of the last walk, normalized */
+	public void walk(int n) {
+		for(int i = 0; i < n; i++) {
+			x[i] = R[0];
+			y[i] = R[1];
+			z[i] = R[2];
+			if(!stepInfinity) {
+				Point.jacobianAddAffine(R, stepX, stepY, aM, minus3, f);
+			}
+		}
+		normalize(n);
+	}
+}
@@ -84,6 +84,11 @@ public class Polynomial {
 		return true;
 	}
 	
+	@Override
+	public int hashCode() { /* equal polynomials have the same set of exponents */
+		return poly.hashCode();
+	}
+	
 	public Polynomial add(Polynomial q) {
 		Polynomial rval = new Polynomial();
 		Iterator<Integer> itr = poly.iterator();
@@ -119,6 +124,14 @@ public class Polynomial {
 		return rval;
 	}
 	
+	public Polynomial square() { /* (sum of z^i)^2 = sum of z^(2i), since the cross terms appear twice and cancel mod 2 */
+		Polynomial rval = new Polynomial();
+		for(int i : poly) {
+			rval.poly.add(2*i);
+		}
+		return rval;
+	}
+	
 	public Polynomial mod(Polynomial q) {
 		Polynomial rval = new Polynomial(this);
 		int pmax = rval.degree();
@@ -131,14 +144,61 @@ public class Polynomial {
 		return rval;
 	}
 	
-	public Polynomial modExp(long k, Polynomial q) {
-		Polynomial temp = new Polynomial(this);
+	public Polynomial modExp(long k, Polynomial q) { /* sliding windows, like PrimeField.montPow */
+		int bits = 64 - Long.numberOfLeadingZeros(k);
+		int w = ECMath.windowWidth(bits);
 		Polynomial rval = new Polynomial("1");
-		while(k > 0) {
-			if((k & 1) == 1) /* if k is odd */
-				rval = rval.mult(temp).mod(q); /* rval = rval * temp (mod q) */
-			k >>= 1;
-			temp = temp.mult(temp).mod(q); /* temp = temp^2 (mod q) */
+		if(w == 1) {
+			Polynomial temp = new Polynomial(this);
+			while(k > 0) {
+				if((k & 1) == 1) /* if k is odd */
+					rval = rval.mult(temp).mod(q); /* rval = rval * temp (mod q) */
+				k >>= 1;
+				temp = temp.square().mod(q); /* temp = temp^2 (mod q) */
+			}
+			return rval;
+		}
+		Polynomial[] odd = new Polynomial[1 << (w-1)]; /* odd[i] = p^(2i+1) (mod q) */
+		odd[0] = this.mod(q);
+		Polynomial square = odd[0].square().mod(q);
+		for(int i = 1; i < odd.length; i++) {
+			odd[i] = odd[i-1].mult(square).mod(q);
+		}
+		int i = bits - 1;
+		while(i >= 0) {
+			if(((k >>> i) & 1) == 0) {
+				rval = rval.square().mod(q);
+				i--;
+				continue;
+			}
+			int l = Math.max(i - w + 1, 0); /* the window is bits i..l, and must end in a 1 */
+			while(((k >>> l) & 1) == 0) {
+				l++;
+			}
+			for(int j = l; j <= i; j++) {
+				rval = rval.square().mod(q);
+			}
+			rval = rval.mult(odd[(int)((k >>> l) & ((1L << (i - l + 1)) - 1)) >>> 1]).mod(q);
+			i = l - 1;
+		}
+		return rval;
+	}
+	
+	public Polynomial modExp2(long x, Polynomial b, long y, Polynomial q) { /* p^x * b^y (mod q) by Shamir's trick */
+		Polynomial pb = this.mult(b).mod(q);
+		Polynomial rval = new Polynomial("1");
+		for(int i = 63 - Long.numberOfLeadingZeros(x | y); i >= 0; i--) {
+			rval = rval.square().mod(q);
+			int bits = (int)(((x >>> i) & 1) | (((y >>> i) & 1) << 1));
+			if(bits == 1) {
+				rval = rval.mult(this).mod(q);
+			}
+			else if(bits == 2) {
+				rval = rval.mult(b).mod(q);
+			}
+			else if(bits == 3) {
+				rval = rval.mult(pb).mod(q);
+			}
 		}
 		return rval;
 	}
@@ -58,10 +58,96 @@ public class PolynomialPoint {
     }
 
     @Override
-    public boolean equals(Object other) {
+    public boolean equals(Object other) { /* the same coordinates, which is what's wanted for reduced points */
+    	if(!(other instanceof PolynomialPoint)) {
+    		return false;
+    	}
     	PolynomialPoint Q = (PolynomialPoint)other;
     	return this.x.equals(Q.getX()) && this.y.equals(Q.getY()) && this.z.equals(Q.getZ());
     }
+    
+    @Override
+    public int hashCode() {
+    	return 31*(31*x.hashCode() + y.hashCode()) + z.hashCode();
+    }
+    
+    /* the same point, whatever the LD representatives: (x1 : y1 : z1) = (x2 : y2 : z2) if
+    x1*z2 = x2*z1 and y1*z2^2 = y2*z1^2 (mod modulus), with no inversions */
+    public boolean equals(PolynomialPoint Q, Polynomial modulus) {
+    	Polynomial zero = new Polynomial();
+    	Polynomial z1 = getZ().mod(modulus), z2 = Q.getZ().mod(modulus);
+    	if(z1.equals(zero) || z2.equals(zero)) { /* infinity is only equal to infinity */
+    		return z1.equals(z2);
+    	}
+    	return getX().mult(z2).add(Q.getX().mult(z1)).mod(modulus).equals(zero)
+    			&& getY().mult(z2.square()).add(Q.getY().mult(z1.square())).mod(modulus).equals(zero);
+    }
+    
+    /* a hash code that's the same for every representative of the point (so it agrees with
+    equals(Q, modulus)). that means hashing the reduced point, which is free for z = 1 and infinity */
+    public int hashCode(Polynomial modulus) {
+    	Polynomial zz = getZ().mod(modulus);
+    	if(zz.equals(new Polynomial())) {
+    		return new PolynomialPoint().hashCode();
+    	}
+    	if(zz.equals(new Polynomial("1"))) {
+    		return new PolynomialPoint(getX().mod(modulus), getY().mod(modulus), zz).hashCode();
+    	}
+    	Polynomial inv = zz.inverse(modulus);
+    	return new PolynomialPoint(getX().mult(inv).mod(modulus), getY().mult(inv.square()).mod(modulus), new Polynomial("1")).hashCode();
+    }
+    
+    /* scales every point in P down to z = 1, or to (1 : 0 : 0) for infinity, in place. all the z's
+    are inverted together (Montgomery's trick: invert the product, then peel off one factor at a
+    time), so it takes one inversion, which is an exponentiation for polynomials */
+    public static void normalizeAll(PolynomialPoint[] P, Polynomial modulus) {
+    	Polynomial zero = new Polynomial();
+    	Polynomial[] prefix = new Polynomial[P.length]; /* product of the nonzero z's before i */
+    	Polynomial acc = new Polynomial("1");
+    	for(int i = 0; i < P.length; i++) {
+    		P[i].setZ(P[i].getZ().mod(modulus));
+    		prefix[i] = acc;
+    		if(!P[i].getZ().equals(zero)) {
+    			acc = acc.mult(P[i].getZ()).mod(modulus);
+    		}
+    	}
+    	Polynomial inv = acc.inverse(modulus);
+    	for(int i = P.length - 1; i >= 0; i--) {
+    		Polynomial zz = P[i].getZ();
+    		if(zz.equals(zero)) {
+    			P[i].setX(new Polynomial("1"));
+    			P[i].setY(new Polynomial());
+    			continue;
+    		}
+    		Polynomial zInv = inv.mult(prefix[i]).mod(modulus);
+    		inv = inv.mult(zz).mod(modulus);
+    		P[i].setX(P[i].getX().mult(zInv).mod(modulus));
+    		P[i].setY(P[i].getY().mult(zInv.square()).mod(modulus));
+    		P[i].setZ(new Polynomial("1"));
+    	}
+    }
+    
+    /* returns the n points start, start + step, ..., start + (n-1)step in reduced coordinates.
+    the walk stays in LD coordinates, and the points are scaled down together at the end with
+    one inversion, instead of two inversions per step as with repeated add */
+    public static PolynomialPoint[] walk(PolynomialPoint start, PolynomialPoint step, int n, Polynomial a, Polynomial b, Polynomial modulus) {
+    	PolynomialPoint infinity = new PolynomialPoint();
+    	PolynomialPoint S = new PolynomialPoint(step);
+    	normalizeAll(new PolynomialPoint[] {S}, modulus); /* so every step is a mixed addition */
+    	PolynomialPoint C = new PolynomialPoint(start);
+    	PolynomialPoint[] rval = new PolynomialPoint[n];
+    	for(int i = 0; i < n; i++) {
+    		rval[i] = C;
+    		if(i < n-1) {
+    			C = reduce(C.addHelper(new PolynomialPoint(S), a, b, modulus), modulus);
+    			if(C.getZ().equals(new Polynomial())) {
+    				C = infinity; /* so the next step sees infinity */
+    			}
+    		}
+    	}
+    	normalizeAll(rval, modulus);
+    	return rval;
+    }
 
     public String toString() {
     	if(this.equals(new PolynomialPoint())) {
@@ -82,33 +168,24 @@ public class PolynomialPoint {
     	}
     	// point doubling
     	if(new PolynomialPoint(getX().mod(modulus), getY().mod(modulus), getZ().mod(modulus)).equals(Q)) {
-    		Polynomial z3 = getX().mult(getX());
-    		Polynomial temp = getZ().mult(getZ());
-    		z3 = z3.mult(temp);
-    		Polynomial x3 = getX().mult(getX());
-    		x3 = x3.mult(x3);
-    		temp = getZ().mult(getZ());
-    		temp = temp.mult(temp);
-    		temp = temp.mult(b);
-    		x3 = x3.add(temp);
-    		Polynomial y3 = getZ().mult(getZ());
-    		y3 = y3.mult(y3);
-    		y3 = b.mult(y3).mult(z3);
-    		temp = a.mult(z3).add(getY().mult(getY())).add(b.mult(getZ().modExp(4, modulus)));
-    		temp = x3.mult(temp);
-    		y3 = y3.add(temp);
-    		return new PolynomialPoint(x3, y3, z3);
+    		return twice(a, b, modulus);
     	}
     	// point addition
-    	Q.setX(Q.getX().mult(Q.getZ().inverse(modulus)));
-    	Polynomial temp = Q.getZ().mult(Q.getZ());
-    	temp = temp.inverse(modulus);
-    	Q.setY(Q.getY().mult(temp));
-    	Q.setZ(new Polynomial("1"));
+    	Polynomial temp;
+    	if(!Q.getZ().mod(modulus).equals(new Polynomial("1"))) { /* scale Q down to z = 1, unless it already is */
+    		Q.setX(Q.getX().mult(Q.getZ().inverse(modulus)));
+    		temp = Q.getZ().mult(Q.getZ());
+    		temp = temp.inverse(modulus);
+    		Q.setY(Q.getY().mult(temp));
+    		Q.setZ(new Polynomial("1"));
+    	}
     	Polynomial A = Q.getY().mult(getZ().mult(getZ()));
     	A = A.add(getY());
     	Polynomial B = Q.getX().mult(getZ());
     	B = B.add(getX());
+    	if(A.mod(modulus).equals(new Polynomial()) && B.mod(modulus).equals(new Polynomial())) { /* P = Q with other coordinates */
+    		return twice(a, b, modulus);
+    	}
     	Polynomial C = getZ().mult(B);
     	temp = a.mult(getZ()).mult(getZ());
     	temp = C.add(temp);
@@ -127,6 +204,25 @@ public class PolynomialPoint {
     	return new PolynomialPoint(x3, y3, z3);
     }
     
+    private PolynomialPoint twice(Polynomial a, Polynomial b, Polynomial modulus) { /* LD doubling, P + P */
+    	Polynomial z3 = getX().mult(getX());
+    	Polynomial temp = getZ().mult(getZ());
+    	z3 = z3.mult(temp);
+    	Polynomial x3 = getX().mult(getX());
+    	x3 = x3.mult(x3);
+    	temp = getZ().mult(getZ());
+    	temp = temp.mult(temp);
+    	temp = temp.mult(b);
+    	x3 = x3.add(temp);
+    	Polynomial y3 = getZ().mult(getZ());
+    	y3 = y3.mult(y3);
+    	y3 = b.mult(y3).mult(z3);
+    	temp = a.mult(z3).add(getY().mult(getY())).add(b.mult(getZ().modExp(4, modulus)));
+    	temp = x3.mult(temp);
+    	y3 = y3.add(temp);
+    	return new PolynomialPoint(x3, y3, z3);
+    }
+    
     public PolynomialPoint add(PolynomialPoint Q, Polynomial a, Polynomial b, Polynomial modulus) {
     	PolynomialPoint rval = this.addHelper(Q, a, b, modulus);
     	Polynomial temp = rval.getZ().mod(modulus);
@@ -144,25 +240,44 @@ public class PolynomialPoint {
     	return rval;
     }
     
-    public PolynomialPoint mult(long k, Polynomial a, Polynomial b, Polynomial modulus) { /* compute kP using repeated doubling */
-    	long A = k;
-    	PolynomialPoint B = new PolynomialPoint();
-    	PolynomialPoint C = new PolynomialPoint(this);
-    	while(A > 0) {
-    		if(A % 2 == 0) { /* if A is even */
-    			A /= 2;
-    			C = C.add(C, a, b, modulus);
-    			C.setX(C.getX().mod(modulus));
-    			C.setY(C.getY().mod(modulus)); /* reduce to prevent huge-degree polynomials */
-    			C.setZ(C.getZ().mod(modulus));
-    		} else { /* if A is odd */
-    			A -= 1;
-    			B = B.add(C, a, b, modulus);
-    			B.setX(B.getX().mod(modulus));
-    			B.setY(B.getY().mod(modulus)); /* reduce to prevent huge-degree polynomials */
-    			B.setZ(B.getZ().mod(modulus));
+    /* compute kP using a width-w NAF of k (see ECMath.wNAF): the odd multiples P, 3P, ..., (2^(w-1) - 1)P
+    are computed once, and their negatives are free, since -(x, y) = (x, x + y) on a binary curve. then each
+    bit of k is a doubling, and only about one bit in w+1 needs an addition, against half of them before */
+    public PolynomialPoint mult(long k, Polynomial a, Polynomial b, Polynomial modulus) {
+    	PolynomialPoint infinity = new PolynomialPoint();
+    	if(k <= 0) {
+    		return infinity;
+    	}
+    	int w = ECMath.wNAFWidth(64 - Long.numberOfLeadingZeros(k));
+    	int[] naf = ECMath.wNAF(k, w);
+    	int m = 1 << (w-2);
+    	PolynomialPoint[] pos = new PolynomialPoint[m]; /* (2i + 1)P */
+    	PolynomialPoint[] neg = new PolynomialPoint[m]; /* -(2i + 1)P */
+    	pos[0] = reduce(infinity.add(new PolynomialPoint(this), a, b, modulus), modulus); /* scaled to z = 1 */
+    	if(m > 1) {
+    		PolynomialPoint D = reduce(pos[0].add(pos[0], a, b, modulus), modulus);
+    		for(int i = 1; i < m; i++) {
+    			pos[i] = reduce(pos[i-1].add(new PolynomialPoint(D), a, b, modulus), modulus);
+    		}
+    	}
+    	for(int i = 0; i < m; i++) {
+    		neg[i] = pos[i].equals(infinity) ? pos[i] : new PolynomialPoint(pos[i].getX(), pos[i].getX().add(pos[i].getY()), pos[i].getZ());
+    	}
+    	PolynomialPoint B = infinity;
+    	for(int i = naf.length - 1; i >= 0; i--) {
+    		B = reduce(B.add(B, a, b, modulus), modulus);
+    		if(naf[i] != 0) {
+    			PolynomialPoint Q = (naf[i] > 0) ? pos[naf[i] >> 1] : neg[(-naf[i]) >> 1];
+    			B = reduce(B.add(new PolynomialPoint(Q), a, b, modulus), modulus); /* add can change Q, so pass a copy */
     		}
     	}
     	return B;
     }
-}
\ No newline at end of file
+    
+    private static PolynomialPoint reduce(PolynomialPoint P, Polynomial modulus) { /* reduce to prevent huge-degree polynomials */
+    	P.setX(P.getX().mod(modulus));
+    	P.setY(P.getY().mod(modulus));
+    	P.setZ(P.getZ().mod(modulus));
+    	return P;
+    }
+}
@@ -0,0 +1,264 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class implements arithmetic in the prime field GF(p) for any odd
+ * modulus p < 2^63. Elements are kept in Montgomery form aR (mod p) with
+ * R = 2^64, so a product is one 64x64 -> 128 bit multiplication (using
+ * Math.multiplyHigh for the upper half) followed by a Montgomery reduction,
+ * which is a couple of multiplications and a conditional subtraction. No
+ * intermediate value ever overflows a long, so the same code works for
+ * p = 17 and for p = 2^63 - 25.
+ *
+ * Values passed to mul, sqr, add, sub, neg, and montPow must already be in
+ * Montgomery form (use toMont and fromMont to convert). The methods mulMod
+ * and pow take and return ordinary residues, and are what ECMath uses.
+ *
+ * Mersenne primes p = 2^k - 1 (such as 2^31 - 1 and 2^61 - 1) are detected
+ * automatically. For those, elements are kept as ordinary residues (so
+ * "Montgomery form" is just the identity) and a product is reduced by folding
+ * the bits above 2^k back down, since 2^k = 1 (mod p), which is one shift,
+ * one mask, and an add. Pseudo-Mersenne primes 2^k - c with c > 1 would need
+ * two multiplications by c, which is no faster than a one-word Montgomery
+ * reduction, so they stay on Montgomery arithmetic here (unlike in
+ * PrimeField256 and BigPrimeField, where the special form does pay off).
+ *
+ * A PrimeField only stores a few precomputed constants, so it is immutable
+ * and can be shared between threads. The static of method caches the most
+ * recently used field, since most callers work with one modulus at a time.
+ *
+ * With the system property src.countMults set to true (before this class is
+ * loaded), every mul and sqr is counted, and multiplications() returns the
+ * running total. CoordinateBenchmark uses it to print measured costs. The
+ * flag is a static final, so the JIT removes the check when it's off; the
+ * count itself is a plain long, so it is only exact on a single thread.
+ */
+
+public final class PrimeField {
+
+	private final long p;
+	private final long pInv; /* -p^(-1) (mod 2^64) */
+	private final long r; /* R (mod p), which is 1 in Montgomery form */
+	private final long r2; /* R^2 (mod p), used to convert into Montgomery form */
+	private final long r3; /* R^3 (mod p), used to convert an inverse back into Montgomery form */
+	private final boolean small; /* p < 2^31, so a plain product of residues fits in a long */
+	private final int k; /* p = 2^k - 1 for a Mersenne prime, k = 0 otherwise */
+	private final long mask; /* 2^k - 1 */
+
+	private static volatile PrimeField cached = null;
+	private static final boolean COUNT = Boolean.getBoolean("src.countMults");
+	private static long mults = 0;
+
+	public PrimeField(long p) {
+		this(p, true);
+	}
+
+	/* detectSpecialForm = false forces Montgomery arithmetic even for p = 2^k - 1 (used for benchmarks) */
+	public PrimeField(long p, boolean detectSpecialForm) {
+		if(p < 3 || (p & 1) == 0) {
+			throw new IllegalArgumentException("Montgomery arithmetic needs an odd modulus p >= 3, got " + p);
+		}
+		this.p = p;
+		this.small = p < (1L << 31);
+		int bits = 64 - Long.numberOfLeadingZeros(p);
+		if(detectSpecialForm && (p & (p+1)) == 0) { /* p = 2^bits - 1 */
+			this.k = bits;
+			this.mask = p;
+			this.pInv = 0;
+			this.r = 1; /* residues are stored as they are */
+			this.r2 = 1;
+			this.r3 = 1;
+			return;
+		}
+		this.k = 0;
+		this.mask = 0;
+		long inv = p; /* p*p = 1 (mod 8), so p is its own inverse to 3 bits */
+		for(int i = 0; i < 5; i++) { /* each Newton step doubles the number of correct bits */
+			inv *= 2 - p*inv;
+		}
+		this.pInv = -inv;
+		long one = Long.remainderUnsigned(-1L, p) + 1; /* 2^64 = (2^64 - 1) + 1 */
+		this.r = (one == p) ? 0 : one;
+		long rr = this.r;
+		for(int i = 0; i < 64; i++) { /* R^2 = R*2^64 */
+			rr = add(rr, rr);
+		}
+		this.r2 = rr;
+		this.r3 = mul(rr, rr); /* R^2*R^2/R */
+	}
+
+	public static PrimeField of(long p) { /* returns a (possibly cached) field for the modulus p */
+		PrimeField f = cached;
+		if(f == null || f.p != p) {
+			f = new PrimeField(p);
+			cached = f;
+		}
+		return f;
+	}
+
+	public long getP() {
+		return p;
+	}
+
+	public static long multiplications() { /* mul and sqr calls so far, if src.countMults is set */
+		return mults;
+	}
+
+	public long one() { /* 1 in Montgomery form */
+		return r;
+	}
+
+	public boolean isSpecialForm() { /* is p = 2^k - 1, with a fast folding reduction? */
+		return k != 0;
+	}
+
+	public long reduce(long a) {
+		return Math.floorMod(a, p);
+	}
+
+	public long toMont(long a) {
+		if(k != 0) {
+			return reduce(a);
+		}
+		return mul(reduce(a), r2);
+	}
+
+	public long fromMont(long a) {
+		if(k != 0) {
+			return a;
+		}
+		return redc(0, a);
+	}
+
+	/* Montgomery reduction of the 128-bit value (hi, lo) < p*2^64, returns (hi, lo)/R (mod p) */
+	private long redc(long hi, long lo) {
+		long m = lo * pInv; /* chosen so that lo + m*p = 0 (mod 2^64) */
+		long mhi = Math.multiplyHigh(m, p) + ((m >> 63) & p); /* unsigned high half of m*p */
+		long rval = hi + mhi + (lo != 0 ? 1 : 0) - p; /* the low halves cancel, carrying 1 unless lo = 0 */
+		return rval + ((rval >> 63) & p); /* < 2p before subtracting p, so this is in (-p, p) */
+	}
+
+	/* reduction of the 128-bit value (hi, lo) < 2^(2k) for p = 2^k - 1, using 2^k = 1 (mod p). for k = 63
+	(2^63 - 1 isn't prime, but ECMath.modExp takes any odd modulus) t can reach 2^63, so it's compared unsigned */
+	private long fold(long hi, long lo) {
+		long t = ((hi << (64 - k)) | (lo >>> k)) + (lo & mask); /* < 2^(k+1), unsigned */
+		t = (t & mask) + (t >>> k); /* <= 2^k */
+		return (Long.compareUnsigned(t, p) >= 0) ? t - p : t;
+	}
+
+	public long mul(long a, long b) { /* a, b in Montgomery form */
+		if(COUNT) {
+			mults++;
+		}
+		if(k != 0) {
+			return fold(Math.multiplyHigh(a, b), a * b);
+		}
+		return redc(Math.multiplyHigh(a, b), a * b);
+	}
+
+	public long sqr(long a) {
+		return mul(a, a);
+	}
+
+	/* add and sub are branch-free (adding p back with a mask), since whether a reduction is needed
+	is a coin flip that the CPU can't predict, and the point formulas are full of them */
+	public long add(long a, long b) {
+		long rval = (a - p) + b; /* in (-p, p), so nothing overflows even for p close to 2^63 */
+		return rval + ((rval >> 63) & p);
+	}
+
+	public long sub(long a, long b) {
+		long rval = a - b;
+		return rval + ((rval >> 63) & p);
+	}
+
+	public long neg(long a) {
+		return (a == 0) ? 0 : p - a;
+	}
+
+	/* a^e with a in Montgomery form, e >= 0. this stays right-to-left binary: the chain of squarings
+	and the chain of multiplications don't depend on each other, so the CPU overlaps them, and a
+	sliding window (which puts every multiplication on the critical path) measured no faster */
+	public long montPow(long a, long e) {
+		long rval = r;
+		while(e > 0) {
+			if((e & 1) == 1) /* if e is odd */
+				rval = mul(rval, a);
+			e >>= 1;
+			a = sqr(a);
+		}
+		return rval;
+	}
+	
+	/* a^x * b^y with a, b in Montgomery form and x, y >= 0, using Shamir's trick: one shared
+	sequence of squarings, multiplying by a, b, or ab (precomputed) at each bit */
+	public long montPow2(long a, long x, long b, long y) {
+		long ab = mul(a, b);
+		long rval = r;
+		for(int i = 63 - Long.numberOfLeadingZeros(x | y); i >= 0; i--) {
+			rval = sqr(rval);
+			int bits = (int)(((x >>> i) & 1) | (((y >>> i) & 1) << 1));
+			if(bits == 1) {
+				rval = mul(rval, a);
+			}
+			else if(bits == 2) {
+				rval = mul(rval, b);
+			}
+			else if(bits == 3) {
+				rval = mul(rval, ab);
+			}
+		}
+		return rval;
+	}
+	
+	public long montInverse(long a) { /* a^(-1) in Montgomery form, or 0 if a = 0 */
+		if(a == 0) {
+			return 0;
+		}
+		return mul(ECMath.inverse(a, p), r3); /* (aR)^(-1)*R^3/R = a^(-1)R */
+	}
+	
+	/* replaces each nonzero a[i], i < n, by its inverse (everything in Montgomery form) using
+	Montgomery's trick: one inversion and 3(n-1) multiplications. zeros are left alone */
+	public void batchMontInverse(long[] a, int n) {
+		batchMontInverse(a, n, new long[n]);
+	}
+	
+	/* the same, with the prefix products kept in scratch (at least n long), so nothing is allocated */
+	public void batchMontInverse(long[] a, int n, long[] scratch) {
+		long[] prefix = scratch; /* prefix[i] = product of the nonzero a[j] with j < i */
+		long acc = r;
+		for(int i = 0; i < n; i++) {
+			prefix[i] = acc;
+			if(a[i] != 0) {
+				acc = mul(acc, a[i]);
+			}
+		}
+		long inv = montInverse(acc); /* inverse of the product of all the nonzero a[i] */
+		for(int i = n-1; i >= 0; i--) {
+			if(a[i] != 0) {
+				long t = mul(inv, prefix[i]);
+				inv = mul(inv, a[i]);
+				a[i] = t;
+			}
+		}
+	}
+
+	public long mulMod(long a, long b) { /* a*b (mod p) for ordinary residues 0 <= a, b < p */
+		if(small) {
+			return (a * b) % p;
+		}
+		if(k != 0) {
+			return mul(a, b);
+		}
+		return mul(mul(a, b), r2); /* (ab/R)*R^2/R = ab */
+	}
+
+	public long pow(long a, long e) { /* a^e (mod p) for an ordinary residue a */
+		return fromMont(montPow(toMont(a), e));
+	}
+	
+	public long pow2(long a, long x, long b, long y) { /* a^x * b^y (mod p) for ordinary residues a, b */
+		return fromMont(montPow2(toMont(a), x, toMont(b), y));
+	}
+}
@@ -0,0 +1,565 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class implements arithmetic in GF(p) for odd primes p < 2^256, with
+ * every element stored in a long[4] (four 64-bit limbs, least significant
+ * limb first) in Montgomery form aR (mod p), R = 2^256. It is the fast path
+ * behind BigPoint for the usual cryptographic curve sizes: BigInteger creates
+ * several new objects per multiplication, while the methods here write their
+ * result into an array supplied by the caller and allocate nothing.
+ *
+ * Multiplication is the CIOS (coarsely integrated operand scanning) form of
+ * Montgomery multiplication: one limb of b at a time is multiplied in and one
+ * limb of the running sum is reduced away. Java 17 has no unsigned 64x64 -> 128
+ * multiply, so the high half is derived from Math.multiplyHigh. Addition and
+ * subtraction use a conditional subtraction (or addition) of p.
+ *
+ * Results may be written to one of the inputs (mul(a, b, a) is fine), since
+ * every method reads its inputs into locals before writing anything.
+ *
+ * Primes of a special form are detected automatically. For those, elements
+ * are ordinary residues rather than Montgomery residues, the full 512-bit
+ * product is formed, and it is reduced with shifts and adds:
+ *  - pseudo-Mersenne primes p = 2^k - c (secp256k1's 2^256 - 2^32 - 977,
+ *    2^255 - 19, ...) fold the upper half back in, using 2^256 = 2^(256-k)c
+ *    modulo 2^(256-k)p, and then the bits above 2^k, using 2^k = c (mod p);
+ *  - the NIST prime P-256 uses the word-level Solinas formula from FIPS 186-4
+ *    (appendix D.2.3), which needs only 32-bit additions and subtractions.
+ */
+
+import java.math.BigInteger;
+
+public final class PrimeField256 {
+
+	private static final int MONTGOMERY = 0;
+	private static final int PSEUDO_MERSENNE = 1;
+	private static final int NIST_P256 = 2;
+	private static final BigInteger P256 = new BigInteger("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16);
+	private static final long M32 = 0xffffffffL;
+
+	private final int form;
+	private final long fold; /* 2^256 = fold (mod 2^(256-k)p) for PSEUDO_MERSENNE */
+	private final int k; /* p = 2^k - c for PSEUDO_MERSENNE */
+	private final long c; /* 2^k = c (mod p), so fold = 2^(256-k)c */
+	private final long p0, p1, p2, p3; /* the limbs of p */
+	private final long pInv; /* -p^(-1) (mod 2^64) */
+	private final long[] one; /* R (mod p) */
+	private final long[] r2; /* R^2 (mod p) */
+	private final long[] pMinus2; /* exponent for Fermat inversion */
+	private final BigInteger p;
+
+	public PrimeField256(BigInteger p) {
+		this(p, true);
+	}
+
+	/* detectSpecialForm = false forces Montgomery arithmetic for every p (used for benchmarks) */
+	public PrimeField256(BigInteger p, boolean detectSpecialForm) {
+		if(p.signum() <= 0 || !p.testBit(0) || p.bitLength() > 256) {
+			throw new IllegalArgumentException("PrimeField256 needs an odd modulus below 2^256, got " + p);
+		}
+		this.p = p;
+		long[] limbs = toLimbs(p);
+		p0 = limbs[0];
+		p1 = limbs[1];
+		p2 = limbs[2];
+		p3 = limbs[3];
+		BigInteger c = BigInteger.ONE.shiftLeft(256).subtract(p.shiftLeft(256 - p.bitLength()));
+		if(detectSpecialForm && p.equals(P256)) {
+			form = NIST_P256;
+		}
+		else if(detectSpecialForm && p.bitLength() > 192 && c.bitLength() < 63) {
+			form = PSEUDO_MERSENNE;
+		}
+		else {
+			form = MONTGOMERY;
+		}
+		fold = (form == PSEUDO_MERSENNE) ? c.longValue() : 0;
+		this.k = p.bitLength();
+		this.c = fold >>> (256 - k);
+		long inv = p0; /* Newton's method for p0^(-1) (mod 2^64), as in PrimeField */
+		for(int i = 0; i < 5; i++) {
+			inv *= 2 - p0*inv;
+		}
+		pInv = -inv;
+		BigInteger R = (form == MONTGOMERY) ? BigInteger.ONE.shiftLeft(256) : BigInteger.ONE;
+		one = toLimbs(R.mod(p));
+		r2 = toLimbs(R.multiply(R).mod(p));
+		pMinus2 = toLimbs(p.subtract(BigInteger.TWO));
+	}
+
+	public boolean isSpecialForm() {
+		return form != MONTGOMERY;
+	}
+
+	public static boolean supports(BigInteger p) {
+		return p.signum() > 0 && p.testBit(0) && p.bitLength() <= 256;
+	}
+
+	public BigInteger getP() {
+		return p;
+	}
+
+	public long[] newElement() {
+		return new long[4];
+	}
+
+	public static long[] toLimbs(BigInteger a) { /* 0 <= a < 2^256 */
+		long[] rval = new long[4];
+		for(int i = 0; i < 4; i++) {
+			rval[i] = a.shiftRight(64*i).longValue();
+		}
+		return rval;
+	}
+
+	public static BigInteger fromLimbs(long[] a) {
+		BigInteger rval = BigInteger.ZERO;
+		for(int i = 3; i >= 0; i--) {
+			rval = rval.shiftLeft(64).or(new BigInteger(Long.toUnsignedString(a[i])));
+		}
+		return rval;
+	}
+
+	public void toMont(BigInteger a, long[] r) {
+		long[] limbs = toLimbs(a.mod(p));
+		if(form != MONTGOMERY) {
+			copy(limbs, r);
+			return;
+		}
+		mul(limbs, r2, r);
+	}
+
+	public BigInteger fromMont(long[] a) {
+		if(form != MONTGOMERY) {
+			return fromLimbs(a);
+		}
+		long[] rval = new long[4];
+		mul(a, new long[] {1, 0, 0, 0}, rval); /* aR * 1 / R = a */
+		return fromLimbs(rval);
+	}
+
+	public void setOne(long[] r) {
+		copy(one, r);
+	}
+
+	public static void copy(long[] a, long[] r) {
+		r[0] = a[0];
+		r[1] = a[1];
+		r[2] = a[2];
+		r[3] = a[3];
+	}
+
+	public static boolean isZero(long[] a) {
+		return (a[0] | a[1] | a[2] | a[3]) == 0;
+	}
+
+	public static boolean equal(long[] a, long[] b) {
+		return ((a[0] ^ b[0]) | (a[1] ^ b[1]) | (a[2] ^ b[2]) | (a[3] ^ b[3])) == 0;
+	}
+
+	/* unsigned high half of a*b */
+	static long mulHigh(long a, long b) {
+		return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+	}
+
+	/* the carry out of s = x + y, and the borrow out of d = x - y, as 0 or 1 without a branch
+	(Hacker's Delight 2-13). which way a carry goes is a coin flip, so branches mispredict half the time */
+	private static long carry(long x, long y, long s) {
+		return ((x & y) | ((x | y) & ~s)) >>> 63;
+	}
+
+	private static long borrow(long x, long y, long d) {
+		return ((~x & y) | ((~x | y) & d)) >>> 63;
+	}
+
+	/* r = a*b/R (mod p), the CIOS loop unrolled over the four limbs of a */
+	public void mul(long[] a, long[] b, long[] r) {
+		if(form != MONTGOMERY) {
+			mulSpecial(a, b, r);
+			return;
+		}
+		long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		long t0 = 0, t1 = 0, t2 = 0, t3 = 0, t4 = 0;
+		for(int i = 0; i < 4; i++) {
+			long bi = b[i];
+			long lo, hi, c, s, u, m;
+			/* t += a*bi */
+			lo = a0*bi; hi = mulHigh(a0, bi);
+			s = t0 + lo; hi += carry(t0, lo, s);
+			t0 = s; c = hi;
+			lo = a1*bi; hi = mulHigh(a1, bi);
+			s = t1 + lo; hi += carry(t1, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t1 = s; c = hi;
+			lo = a2*bi; hi = mulHigh(a2, bi);
+			s = t2 + lo; hi += carry(t2, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t2 = s; c = hi;
+			lo = a3*bi; hi = mulHigh(a3, bi);
+			s = t3 + lo; hi += carry(t3, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t3 = s; c = hi;
+			s = t4 + c;
+			long t5 = carry(t4, c, s);
+			t4 = s;
+			/* t = (t + m*p)/2^64, with m chosen so that the low limb cancels */
+			m = t0*pInv;
+			lo = m*p0; hi = mulHigh(m, p0);
+			s = t0 + lo; hi += carry(t0, lo, s);
+			c = hi;
+			lo = m*p1; hi = mulHigh(m, p1);
+			s = t1 + lo; hi += carry(t1, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t0 = s; c = hi;
+			lo = m*p2; hi = mulHigh(m, p2);
+			s = t2 + lo; hi += carry(t2, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t1 = s; c = hi;
+			lo = m*p3; hi = mulHigh(m, p3);
+			s = t3 + lo; hi += carry(t3, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t2 = s; c = hi;
+			s = t4 + c;
+			t3 = s;
+			t4 = t5 + carry(t4, c, s);
+		}
+		reduceOnce(t0, t1, t2, t3, t4, r);
+	}
+
+	public void sqr(long[] a, long[] r) {
+		if(form != MONTGOMERY) {
+			sqrSpecial(a, r);
+			return;
+		}
+		mul(a, a, r);
+	}
+
+	/* r = a^2 (mod p) for the special forms. the six cross products a_i*a_j (i < j) are added up
+	once and doubled with a shift, then the four squares go in, so it takes 10 limb products
+	instead of the 16 of mulSpecial */
+	private void sqrSpecial(long[] a, long[] r) {
+		long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		long lo, hi, c, s, u;
+		long r1 = a0*a1; /* a0*(a1, a2, a3) at limbs 1 to 4 */
+		c = mulHigh(a0, a1);
+		lo = a0*a2; hi = mulHigh(a0, a2);
+		long r2 = lo + c; c = hi + carry(lo, c, r2);
+		lo = a0*a3; hi = mulHigh(a0, a3);
+		long r3 = lo + c; long r4 = hi + carry(lo, c, r3);
+		lo = a1*a2; hi = mulHigh(a1, a2); /* a1*(a2, a3) at limbs 3 to 5 */
+		s = r3 + lo; hi += carry(r3, lo, s);
+		r3 = s; c = hi;
+		lo = a1*a3; hi = mulHigh(a1, a3);
+		s = r4 + lo; hi += carry(r4, lo, s);
+		u = s + c; hi += carry(s, c, u);
+		r4 = u;
+		long r5 = hi;
+		lo = a2*a3; hi = mulHigh(a2, a3); /* a2*a3 at limbs 5 and 6 */
+		s = r5 + lo; hi += carry(r5, lo, s);
+		r5 = s;
+		long r6 = hi;
+		long r7 = r6 >>> 63; /* times 2 */
+		r6 = (r6 << 1) | (r5 >>> 63);
+		r5 = (r5 << 1) | (r4 >>> 63);
+		r4 = (r4 << 1) | (r3 >>> 63);
+		r3 = (r3 << 1) | (r2 >>> 63);
+		r2 = (r2 << 1) | (r1 >>> 63);
+		r1 = r1 << 1;
+		long r0 = a0*a0; /* plus the squares, a_i^2 at limbs 2i and 2i + 1 */
+		hi = mulHigh(a0, a0);
+		s = r1 + hi; c = carry(r1, hi, s);
+		r1 = s;
+		lo = a1*a1; hi = mulHigh(a1, a1);
+		s = r2 + lo; u = s + c; c = carry(r2, lo, s) | carry(s, c, u);
+		r2 = u;
+		s = r3 + hi; u = s + c; c = carry(r3, hi, s) | carry(s, c, u);
+		r3 = u;
+		lo = a2*a2; hi = mulHigh(a2, a2);
+		s = r4 + lo; u = s + c; c = carry(r4, lo, s) | carry(s, c, u);
+		r4 = u;
+		s = r5 + hi; u = s + c; c = carry(r5, hi, s) | carry(s, c, u);
+		r5 = u;
+		lo = a3*a3; hi = mulHigh(a3, a3);
+		s = r6 + lo; u = s + c; c = carry(r6, lo, s) | carry(s, c, u);
+		r6 = u;
+		r7 += hi + c; /* a^2 < 2^512, so nothing carries out */
+		if(form == NIST_P256) {
+			reduceP256(r0, r1, r2, r3, r4, r5, r6, r7, r);
+		}
+		else {
+			reducePseudoMersenne(r0, r1, r2, r3, r4, r5, r6, r7, r);
+		}
+	}
+
+	/* r = a*b (mod p) for the special forms: the low half of the product is written to r,
+	the high half is kept in t0..t3, and then the special reduction is applied */
+	private void mulSpecial(long[] a, long[] b, long[] r) {
+		long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+		for(int i = 0; i < 4; i++) {
+			long bi = b[i]; /* read before r[i] is written, in case r = b */
+			long lo, hi, c, s, u;
+			lo = a0*bi; hi = mulHigh(a0, bi);
+			s = t0 + lo; hi += carry(t0, lo, s);
+			t0 = s; c = hi;
+			lo = a1*bi; hi = mulHigh(a1, bi);
+			s = t1 + lo; hi += carry(t1, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t1 = s; c = hi;
+			lo = a2*bi; hi = mulHigh(a2, bi);
+			s = t2 + lo; hi += carry(t2, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			t2 = s; c = hi;
+			lo = a3*bi; hi = mulHigh(a3, bi);
+			s = t3 + lo; hi += carry(t3, lo, s);
+			u = s + c; hi += carry(s, c, u); s = u;
+			r[i] = t0; /* limb i of the product is final */
+			t0 = t1;
+			t1 = t2;
+			t2 = s;
+			t3 = hi;
+		}
+		if(form == NIST_P256) {
+			reduceP256(r[0], r[1], r[2], r[3], t0, t1, t2, t3, r);
+		}
+		else {
+			reducePseudoMersenne(r[0], r[1], r[2], r[3], t0, t1, t2, t3, r);
+		}
+	}
+
+	/* (h3 : h2 : h1 : h0 : l3 : l2 : l1 : l0) = H*2^256 + L = H*fold + L, folded twice */
+	private void reducePseudoMersenne(long l0, long l1, long l2, long l3, long h0, long h1, long h2, long h3, long[] r) {
+		long lo, hi, c, s, u;
+		lo = h0*fold; hi = mulHigh(h0, fold);
+		s = l0 + lo; hi += carry(l0, lo, s);
+		l0 = s; c = hi;
+		lo = h1*fold; hi = mulHigh(h1, fold);
+		s = l1 + lo; hi += carry(l1, lo, s);
+		u = s + c; hi += carry(s, c, u); s = u;
+		l1 = s; c = hi;
+		lo = h2*fold; hi = mulHigh(h2, fold);
+		s = l2 + lo; hi += carry(l2, lo, s);
+		u = s + c; hi += carry(s, c, u); s = u;
+		l2 = s; c = hi;
+		lo = h3*fold; hi = mulHigh(h3, fold);
+		s = l3 + lo; hi += carry(l3, lo, s);
+		u = s + c; hi += carry(s, c, u); s = u;
+		l3 = s; c = hi; /* c < fold < 2^63, so c*fold < 2^126 */
+		lo = c*fold; hi = mulHigh(c, fold);
+		s = l0 + lo; c = hi + carry(l0, lo, s);
+		l0 = s;
+		s = l1 + c; c = carry(l1, c, s);
+		l1 = s;
+		s = l2 + c; c = carry(l2, c, s);
+		l2 = s;
+		s = l3 + c; c = carry(l3, c, s);
+		l3 = s;
+		if(c != 0) { /* one more 2^256 = fold, the result is now tiny so nothing carries out */
+			s = l0 + fold; c = carry(l0, fold, s);
+			l0 = s;
+			l1 += c;
+			c = (l1 == 0 && c == 1) ? 1 : 0;
+			l2 += c;
+			c = (l2 == 0 && c == 1) ? 1 : 0;
+			l3 += c;
+		}
+		if(k < 256) { /* the result is below 2^256, which is up to 2^(256-k) times p, so fold once more at
+			bit k (in l3, since k > 192): (top)2^k + rest = (top)c + rest, and top*c < fold < 2^63 */
+			long top = l3 >>> (k - 192);
+			l3 &= (1L << (k - 192)) - 1;
+			lo = top*this.c; /* c is the carry here */
+			s = l0 + lo; c = carry(l0, lo, s);
+			l0 = s;
+			s = l1 + c; c = carry(l1, c, s);
+			l1 = s;
+			s = l2 + c; c = carry(l2, c, s);
+			l2 = s;
+			l3 += c;
+		}
+		r[0] = l0;
+		r[1] = l1;
+		r[2] = l2;
+		r[3] = l3;
+		while(!lessThanP(r)) { /* below 2^k + 2^63 < 2p now (for k = 256, 2^256 - c + fold) */
+			reduceOnce(l0, l1, l2, l3, 0, r);
+			l0 = r[0];
+			l1 = r[1];
+			l2 = r[2];
+			l3 = r[3];
+		}
+	}
+
+	private boolean lessThanP(long[] a) {
+		if(a[3] != p3) {
+			return Long.compareUnsigned(a[3], p3) < 0;
+		}
+		if(a[2] != p2) {
+			return Long.compareUnsigned(a[2], p2) < 0;
+		}
+		if(a[1] != p1) {
+			return Long.compareUnsigned(a[1], p1) < 0;
+		}
+		return Long.compareUnsigned(a[0], p0) < 0;
+	}
+
+	/* FIPS 186-4 D.2.3: with the product written as sixteen 32-bit words c15 ... c0,
+	r = s1 + 2s2 + 2s3 + s4 + s5 - d1 - d2 - d3 - d4 (mod p), collected here word by word */
+	private void reduceP256(long l0, long l1, long l2, long l3, long h0, long h1, long h2, long h3, long[] r) {
+		long c0 = l0 & M32, c1 = l0 >>> 32, c2 = l1 & M32, c3 = l1 >>> 32;
+		long c4 = l2 & M32, c5 = l2 >>> 32, c6 = l3 & M32, c7 = l3 >>> 32;
+		long c8 = h0 & M32, c9 = h0 >>> 32, c10 = h1 & M32, c11 = h1 >>> 32;
+		long c12 = h2 & M32, c13 = h2 >>> 32, c14 = h3 & M32, c15 = h3 >>> 32;
+		long w0 = c0 + c8 + c9 - c11 - c12 - c13 - c14;
+		long w1 = c1 + c9 + c10 - c12 - c13 - c14 - c15;
+		long w2 = c2 + c10 + c11 - c13 - c14 - c15;
+		long w3 = c3 + 2*c11 + 2*c12 + c13 - c15 - c8 - c9;
+		long w4 = c4 + 2*c12 + 2*c13 + c14 - c9 - c10;
+		long w5 = c5 + 2*c13 + 2*c14 + c15 - c10 - c11;
+		long w6 = c6 + 3*c14 + 2*c15 + c13 - c8 - c9;
+		long w7 = c7 + 3*c15 + c8 - c10 - c11 - c12 - c13;
+		long carry;
+		while(true) { /* propagate signed carries; whatever is left above 2^256 is 2^224 - 2^192 - 2^96 + 1 */
+			w1 += w0 >> 32; w0 &= M32;
+			w2 += w1 >> 32; w1 &= M32;
+			w3 += w2 >> 32; w2 &= M32;
+			w4 += w3 >> 32; w3 &= M32;
+			w5 += w4 >> 32; w4 &= M32;
+			w6 += w5 >> 32; w5 &= M32;
+			w7 += w6 >> 32; w6 &= M32;
+			carry = w7 >> 32; w7 &= M32;
+			if(carry == 0) {
+				break;
+			}
+			w0 += carry;
+			w3 -= carry;
+			w6 -= carry;
+			w7 += carry;
+		}
+		reduceOnce(w0 | (w1 << 32), w2 | (w3 << 32), w4 | (w5 << 32), w6 | (w7 << 32), 0, r);
+	}
+
+	/* r = (t4 : t3 : t2 : t1 : t0) - p if that is non-negative, where the input is < 2p. the
+	subtraction is always done, and a mask picks the result */
+	private void reduceOnce(long t0, long t1, long t2, long t3, long t4, long[] r) {
+		long d0 = t0 - p0;
+		long b = borrow(t0, p0, d0);
+		long x = t1 - p1, d1 = x - b;
+		b = borrow(t1, p1, x) | borrow(x, b, d1);
+		x = t2 - p2;
+		long d2 = x - b;
+		b = borrow(t2, p2, x) | borrow(x, b, d2);
+		x = t3 - p3;
+		long d3 = x - b;
+		b = borrow(t3, p3, x) | borrow(x, b, d3);
+		long keep = -(b & (t4 ^ 1)); /* all ones if t < p (a borrow out of the top, and t4 = 0) */
+		r[0] = d0 ^ ((t0 ^ d0) & keep);
+		r[1] = d1 ^ ((t1 ^ d1) & keep);
+		r[2] = d2 ^ ((t2 ^ d2) & keep);
+		r[3] = d3 ^ ((t3 ^ d3) & keep);
+	}
+
+	public void add(long[] a, long[] b, long[] r) {
+		long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		long s0 = a0 + b[0];
+		long c = carry(a0, b[0], s0);
+		long x = a1 + b[1], s1 = x + c;
+		c = carry(a1, b[1], x) | carry(x, c, s1);
+		x = a2 + b[2];
+		long s2 = x + c;
+		c = carry(a2, b[2], x) | carry(x, c, s2);
+		x = a3 + b[3];
+		long s3 = x + c;
+		c = carry(a3, b[3], x) | carry(x, c, s3);
+		reduceOnce(s0, s1, s2, s3, c, r);
+	}
+
+	public void sub(long[] a, long[] b, long[] r) { /* a - b, plus p masked in if that borrowed */
+		long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		long d0 = a0 - b[0];
+		long w = borrow(a0, b[0], d0);
+		long x = a1 - b[1], d1 = x - w;
+		w = borrow(a1, b[1], x) | borrow(x, w, d1);
+		x = a2 - b[2];
+		long d2 = x - w;
+		w = borrow(a2, b[2], x) | borrow(x, w, d2);
+		x = a3 - b[3];
+		long d3 = x - w;
+		w = borrow(a3, b[3], x) | borrow(x, w, d3);
+		long mask = -w;
+		long q0 = p0 & mask, q1 = p1 & mask, q2 = p2 & mask, q3 = p3 & mask;
+		long s0 = d0 + q0;
+		long c = carry(d0, q0, s0);
+		x = d1 + q1;
+		long s1 = x + c;
+		c = carry(d1, q1, x) | carry(x, c, s1);
+		x = d2 + q2;
+		long s2 = x + c;
+		c = carry(d2, q2, x) | carry(x, c, s2);
+		r[0] = s0;
+		r[1] = s1;
+		r[2] = s2;
+		r[3] = d3 + q3 + c;
+	}
+
+	public void neg(long[] a, long[] r) { /* r = p - a, or 0 for a = 0 */
+		if(isZero(a)) {
+			copy(a, r);
+			return;
+		}
+		long a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		long d0 = p0 - a0;
+		long w = borrow(p0, a0, d0);
+		long x = p1 - a1, d1 = x - w;
+		w = borrow(p1, a1, x) | borrow(x, w, d1);
+		x = p2 - a2;
+		long d2 = x - w;
+		w = borrow(p2, a2, x) | borrow(x, w, d2);
+		r[0] = d0;
+		r[1] = d1;
+		r[2] = d2;
+		r[3] = p3 - a3 - w;
+	}
+
+	/* r = a^(p-2) = a^(-1); r must be a different array from a */
+	public void inverse(long[] a, long[] r) {
+		pow(a, pMinus2, r);
+	}
+	
+	/* r = a^e for an exponent e given as four limbs, by sliding windows of up to 5 bits: the odd
+	powers a, a^3, ..., a^31 are precomputed, which for p - 2 saves about half the multiplications
+	of the binary method. r must not be the same array as a */
+	public void pow(long[] a, long[] e, long[] r) {
+		int top = 255;
+		while(top >= 0 && ((e[top >> 6] >>> (top & 63)) & 1) == 0) {
+			top--;
+		}
+		int w = ECMath.windowWidth(top + 1);
+		long[][] odd = new long[1 << (w-1)][4]; /* odd[i] = a^(2i+1) */
+		copy(a, odd[0]);
+		long[] a2 = new long[4];
+		sqr(a, a2);
+		for(int i = 1; i < odd.length; i++) {
+			mul(odd[i-1], a2, odd[i]);
+		}
+		setOne(r);
+		int i = top;
+		while(i >= 0) {
+			if(((e[i >> 6] >>> (i & 63)) & 1) == 0) {
+				sqr(r, r);
+				i--;
+				continue;
+			}
+			int l = Math.max(i - w + 1, 0); /* the window is bits i..l, and must end in a 1 */
+			while(((e[l >> 6] >>> (l & 63)) & 1) == 0) {
+				l++;
+			}
+			int window = 0;
+			for(int j = i; j >= l; j--) {
+				sqr(r, r);
+				window = (window << 1) | (int)((e[j >> 6] >>> (j & 63)) & 1);
+			}
+			mul(r, odd[window >>> 1], r);
+			i = l - 1;
+		}
+	}
+}
@@ -233,6 +233,15 @@ public class PrimePanel extends JPanel {
 			}
 		});
 		
+		JButton fixedMultiplication = new JButton("kG");
+		fixedMultiplication.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Point G = new Point(Gx, Gy, 1);
+				Point result = FixedBasePoint.of(new EllipticCurve(a, b, p), G).mult(k); /* the table for G is kept */
+				output.setText(output.getText() + k + "" + G + " = " + result + "\n");
+			}
+		});
+		
 		JButton log = new JButton("log_G(P)");
 		log.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
@@ -244,6 +253,7 @@ public class PrimePanel extends JPanel {
 		
 		arithmeticPan.add(addition);
 		arithmeticPan.add(multiplication);
+		arithmeticPan.add(fixedMultiplication);
 		arithmeticPan.add(log);
 		
 		JPanel orderPan = new JPanel();
@@ -0,0 +1,189 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class holds everything about square roots mod a prime p that doesn't
+ * depend on the number whose root is taken: p - 1 = q*2^e with q odd, the
+ * least quadratic non-residue n, and a table of the powers z^(2^k) of
+ * z = n^q, which is all Shanks' algorithm ever multiplies by. ECMath.sqrt
+ * used to work these out again for every call.
+ *
+ * For small p (up to TABLE_LIMIT) the table can also list the squares
+ * outright: one pass over y = 0, ..., p/2 (using (y+1)^2 = y^2 + 2y + 1, so
+ * no multiplications) marks every residue y^2 in a bitmap and records y as
+ * its square root. Then legendre and sqrt are lookups, which is what
+ * EllipticCurve.order and listPoints want, since they ask about every x.
+ *
+ * The table is immutable once built (apart from the powers of z, which are
+ * filled in the first time they're needed), so it can be shared between
+ * threads. The static of method caches the most recently used table.
+ */
+
+import java.util.Arrays;
+
+public final class QuadraticResidueTable {
+
+	public static final long TABLE_LIMIT = 1L << 22; /* largest p with a lookup table (16MB of roots) */
+
+	private final long p;
+	private final int e; /* p - 1 = q*2^e with q odd */
+	private final long q;
+	private final long nonResidue; /* least quadratic non-residue, 0 for p = 2 */
+	private volatile FixedBasePow powers = null; /* z^(2^k) for z = n^q, built the first time Shanks' loop needs it */
+	private final long[] residues; /* bit a is set if a is a nonzero square, or null without the lookup table */
+	private final int[] roots; /* roots[a] = the smaller square root of a, or -1 */
+
+	private static volatile QuadraticResidueTable cached = null;
+
+	public QuadraticResidueTable(long p) {
+		this(p, p <= TABLE_LIMIT);
+	}
+
+	/* buildTable = false keeps only the constants for Shanks' algorithm, whatever the size of p */
+	public QuadraticResidueTable(long p, boolean buildTable) {
+		if(p < 2) {
+			throw new IllegalArgumentException("QuadraticResidueTable needs a prime modulus, got " + p);
+		}
+		this.p = p;
+		if(p == 2) {
+			this.e = 0;
+			this.q = 1;
+			this.nonResidue = 0;
+			buildTable = true; /* there are no non-residues, so Shanks' algorithm doesn't apply */
+		}
+		else {
+			this.e = Long.numberOfTrailingZeros(p-1);
+			this.q = (p-1) >> e;
+			long n = 2;
+			while(ECMath.jacobi(n, p) != -1) {
+				n++;
+			}
+			this.nonResidue = n;
+		}
+		if(buildTable && p <= TABLE_LIMIT) {
+			residues = new long[(int)((p + 63) >> 6)];
+			roots = new int[(int)p];
+			Arrays.fill(roots, -1);
+			long sq = 0; /* y^2 (mod p) */
+			for(long y = 0; y <= p/2; y++) {
+				if(y != 0) {
+					residues[(int)(sq >> 6)] |= 1L << sq;
+				}
+				if(roots[(int)sq] == -1) {
+					roots[(int)sq] = (int)y;
+				}
+				sq += 2*y + 1; /* (y+1)^2 = y^2 + 2y + 1 < 3p */
+				while(sq >= p) {
+					sq -= p;
+				}
+			}
+		}
+		else {
+			residues = null;
+			roots = null;
+		}
+	}
+
+	/* returns a (possibly cached) table for p. with wantTable, the lookup table is built if p is small
+	enough, otherwise a cached table without one will do */
+	public static QuadraticResidueTable of(long p, boolean wantTable) {
+		QuadraticResidueTable t = cached;
+		if(t == null || t.p != p || (wantTable && t.roots == null && p <= TABLE_LIMIT)) {
+			t = new QuadraticResidueTable(p, wantTable);
+			cached = t;
+		}
+		return t;
+	}
+
+	public static QuadraticResidueTable of(long p) {
+		return of(p, false);
+	}
+
+	public long getP() {
+		return p;
+	}
+
+	public long getNonResidue() {
+		return nonResidue;
+	}
+
+	public int getE() {
+		return e;
+	}
+
+	public long getQ() {
+		return q;
+	}
+
+	public boolean hasTable() {
+		return roots != null;
+	}
+
+	public long legendre(long a) { /* 1 if a is a nonzero square, -1 if not, 0 if p | a */
+		a = Math.floorMod(a, p);
+		if(residues == null) {
+			return ECMath.jacobi(a, p);
+		}
+		if(a == 0) {
+			return 0;
+		}
+		return ((residues[(int)(a >> 6)] >>> a) & 1) == 1 ? 1 : -1;
+	}
+
+	int legendreReduced(long a) { /* legendre for 0 <= a < p with the lookup table, without the floorMod */
+		if(a == 0) {
+			return 0;
+		}
+		return (int)((residues[(int)(a >> 6)] >>> a) & 1) * 2 - 1;
+	}
+
+	public long sqrt(long a) { /* Shanks' algorithm for sqrt(a) (mod p), or -1 if a is not a square */
+		a = Math.floorMod(a, p);
+		if(roots != null) {
+			return roots[(int)a];
+		}
+		if(a == 0) /* sqrt(0) = 0 */
+			return 0;
+		PrimeField f = PrimeField.of(p);
+		if((p % 4) == 3) { /* easy for p = 3 (mod 4) */
+			long x = f.pow(a, (p+1)/4);
+			return (f.mulMod(x, x) == a) ? x : -1;
+		}
+		if((p % 8) == 5 && f.pow(a, (p-1)/4) == 1) /* sometimes easy for p = 5 (mod 8) */
+			return f.pow(a, (p+3)/8);
+		long y, r, x, b, t;
+		long j = 0; /* y = z^(2^j), which is the only form y ever takes */
+		r = e;
+		x = f.pow(a, (q-1)/2);
+		b = f.mulMod(a, f.mulMod(x, x));
+		x = f.mulMod(a, x);
+		while(b != 1) {
+			long m = 0;
+			long bb = b;
+			while(bb != 1) { /* smallest m with b^(2^m) = 1, squaring as we go */
+				bb = f.mulMod(bb, bb);
+				m++;
+			}
+			if(m == r) { /* a is not a square */
+				return -1;
+			}
+			FixedBasePow Z = zPowers();
+			t = Z.pow(1L << (j+r-m-1)); /* t = y^(2^(r-m-1)), a table lookup */
+			j += r-m;
+			y = Z.pow(1L << j); /* y = t^2 */
+			r = m;
+			x = f.mulMod(x, t);
+			b = f.mulMod(b, y);
+		}
+		return x;
+	}
+
+	private FixedBasePow zPowers() {
+		FixedBasePow Z = powers;
+		if(Z == null) {
+			Z = new FixedBasePow(ECMath.modExp(nonResidue, q, p), p, e);
+			powers = Z;
+		}
+		return Z;
+	}
+}
@@ -0,0 +1,390 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class finds discrete logarithms k with kG = P on an EllipticCurve by
+ * Pollard's rho method, in O(sqrt(n)) group operations for a point G of
+ * order n, instead of the n additions of walking through G, 2G, 3G, ...
+ *
+ * Every point W on a walk is written as W = aG + bP for known a, b (mod n).
+ * The next point is W + R_j for one of ADDERS precomputed random points
+ * R_j = c_jG + d_jP, with j a hash of the x-coordinate (an r-adding walk). Two
+ * walks that ever meet go on together, so when two of them land on the same
+ * point with different (a, b), a1 + b1*k = a2 + b2*k (mod n) gives k.
+ *
+ * Walks run on all processors in parallel (van Oorschot and Wiener). A
+ * point is distinguished if the low bits of its x-coordinate are zero, and
+ * only those go into a shared hash table, so two walks are found to have met
+ * a few steps after they do, and the table stays small. The table (a
+ * DistinguishedTable) is lock-free: a slot is claimed with a compare-and-set
+ * on its key.
+ *
+ * The negation map: a walk only visits one of W and -W (the one with the
+ * smaller y), negating (a, b) when it switches. That halves the space being
+ * searched, which saves a factor of sqrt(2). The catch is that a walk can fall
+ * into a fruitless cycle W -> W' -> W when W' + R_j = -W. Those 2-cycles are
+ * noticed when a point's x equals the x of two steps before, and escaped by
+ * doubling the point of the cycle with the smaller x (both walks in the same
+ * cycle pick the same one). Longer cycles are much rarer, and a walk that goes
+ * on too long without a distinguished point is simply restarted.
+ *
+ * Each thread runs BATCH walks at once in affine coordinates (Montgomery
+ * form). An affine addition needs an inversion, so the BATCH denominators of
+ * a step are inverted together with Montgomery's trick, which makes a step
+ * about 6 multiplications plus a share of one inversion.
+ *
+ * getSteps and getDistinguished can be polled from another thread while log
+ * runs, and cancel makes it return -1 at the next step.
+ *
+ * A Rho can also be one worker of a DistributedRho: then its distinguished
+ * points also go to a Sink (the coordinator), every worker uses the same
+ * adders and the same number of distinguished bits but its own walks, and log
+ * runs until it finds k itself or is cancelled.
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Rho {
+
+	private static final int ADDERS = 256; /* r, a power of two; 2-cycles start once every 2r steps or so */
+	private static final int BATCH = 128; /* walks per thread, sharing inversions */
+	private static final long SMALL = 1L << 10; /* below this n, just try every k */
+	private static final int MAX_GCD = 1 << 10; /* most candidates tried when b1 - b2 and n share a factor */
+	private static final int MAX_WORK = 64; /* give up after this many times the expected number of steps */
+
+	private final long a, b, p;
+	private final PrimeField f;
+	private final long aM; /* a in Montgomery form, for doubling */
+	private final Point G;
+	private final long n;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = 1;
+
+	private final LongAdder steps = new LongAdder();
+	private final AtomicInteger distinguished = new AtomicInteger();
+	private volatile boolean cancelled = false;
+
+	/* for the walks of one call to log */
+	private Point P;
+	private long[] RX, RY, C, D; /* the adders R_j = C[j]G + D[j]P, affine, in Montgomery form */
+	private int dBits; /* distinguished points have this many low zero bits in x */
+	private long maxLength; /* steps without a distinguished point before a walk is restarted */
+	private long maxSteps;
+	private DistinguishedTable table;
+	private final AtomicLong result = new AtomicLong(-1);
+
+	/* for a worker of DistributedRho */
+	private Sink sink;
+	private long walkSeed = 0;
+	private int sinkBits;
+
+	/* where a worker's distinguished points go, from all its threads: the x-coordinate of uG + vP
+	(in Montgomery form, which is the same on every worker) */
+	interface Sink {
+		void distinguished(long x, long u, long v);
+	}
+
+	/* G is a point of order n on E (for instance |E| or E.pointOrder(G)) */
+	public Rho(EllipticCurve E, Point G, long n) {
+		this.a = E.getA();
+		this.b = E.getB();
+		this.p = E.getP();
+		this.f = new PrimeField(p);
+		this.aM = f.toMont(f.reduce(a));
+		this.G = G;
+		this.n = n;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setSeed(long seed) { /* the walks are random, but repeatable for a given seed and number of threads */
+		this.seed = seed;
+	}
+
+	public long getSteps() { /* group operations so far in the current (or last) call to log */
+		return steps.sum();
+	}
+
+	public int getDistinguished() {
+		return distinguished.get();
+	}
+
+	/* makes this a DistributedRho worker: its walks are numbered from walkSeed on (different for every
+	worker), and distinguished points have dBits low zero bits and also go to sink */
+	void setSink(Sink sink, long walkSeed, int dBits) {
+		this.sink = sink;
+		this.walkSeed = walkSeed;
+		this.sinkBits = dBits;
+	}
+
+	/* low zero bits of x for a distinguished point, when threads*BATCH walks share the work for n */
+	static int distinguishedBits(long n, int threads) {
+		double sqrtN = Math.sqrt((double)n);
+		return Math.max(0, Math.min(40, 63 - Long.numberOfLeadingZeros((long)(sqrtN / (16.0 * threads * BATCH)))));
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/* k with 0 <= k < n and kG = P, or -1 if there isn't one (P isn't a multiple of G), the walks
+	ran MAX_WORK times longer than they should without finding it, or log was cancelled */
+	public long log(Point P) {
+		steps.reset();
+		distinguished.set(0);
+		result.set(-1);
+		cancelled = false;
+		if(n < 1 || G.getZ() % p == 0) {
+			return -1; /* error */
+		}
+		if(!P.mult(n, a, b, p).isInfinity()) {
+			return -1; /* error */
+		}
+		if(n < SMALL) {
+			for(long k = 0; k < n; k++) {
+				if(G.mult(k, a, b, p).equals(P, p)) {
+					return k;
+				}
+			}
+			return -1; /* error */
+		}
+		this.P = P;
+		int walks = threads * BATCH;
+		double sqrtN = Math.sqrt((double)n);
+		dBits = (sink != null) ? sinkBits : distinguishedBits(n, threads);
+		maxLength = Math.max(1024, 32L << dBits);
+		maxSteps = (sink != null) ? Long.MAX_VALUE / 2 : (long)Math.min(Long.MAX_VALUE / 2, MAX_WORK * (sqrtN + (double)walks * (1L << dBits)));
+		long expected = (long)(sqrtN / (1L << dBits)) + walks;
+		table = new DistinguishedTable((int)Math.min(1 << 26, Math.max(1024, Long.highestOneBit(8 * expected) << 1)));
+		Random rand = new Random(seed);
+		RX = new long[ADDERS];
+		RY = new long[ADDERS];
+		C = new long[ADDERS];
+		D = new long[ADDERS];
+		for(int j = 0; j < ADDERS; j++) {
+			long[] R = null;
+			while(R == null) {
+				C[j] = Math.floorMod(rand.nextLong(), n);
+				D[j] = Math.floorMod(rand.nextLong(), n);
+				R = combination(C[j], D[j]);
+			}
+			RX[j] = R[0];
+			RY[j] = R[1];
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new Walkers(0, threads));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		return result.get();
+	}
+
+	/* uG + vP in affine Montgomery coordinates, or null for infinity */
+	private long[] combination(long u, long v) {
+		Point Q = G.mult(u, a, b, p).add(P.mult(v, a, b, p), a, b, p);
+		long Z = f.toMont(f.reduce(Q.getZ()));
+		if(Z == 0) {
+			return null;
+		}
+		long zInv = f.montInverse(Z);
+		return new long[] {f.mul(f.toMont(f.reduce(Q.getX())), zInv), f.mul(f.toMont(f.reduce(Q.getY())), zInv)};
+	}
+
+	private long addN(long u, long v) { /* u + v (mod n) for 0 <= u, v < n < 2^63 */
+		long rval = u - (n - v);
+		return (rval < 0) ? rval + n : rval;
+	}
+
+	private long negN(long u) {
+		return (u == 0) ? 0 : n - u;
+	}
+
+	private static int adder(long x) { /* j for the point with x-coordinate x */
+		return (int)((x * 0x9E3779B97F4A7C15L) >>> 56) & (ADDERS - 1);
+	}
+
+	private boolean done() {
+		return cancelled || result.get() != -1 || steps.sum() > maxSteps;
+	}
+
+	/* aG + bP = a'G + b'P with (a, b) != (a', b'): (b - b')k = a' - a (mod n), which has gcd(b - b', n)
+	solutions if any, and those are checked. returns k or -1 */
+	long solve(Point P, long a1, long b1, long a2, long b2) {
+		BigInteger N = BigInteger.valueOf(n);
+		BigInteger db = BigInteger.valueOf(b1).subtract(BigInteger.valueOf(b2)).mod(N);
+		BigInteger da = BigInteger.valueOf(a2).subtract(BigInteger.valueOf(a1)).mod(N);
+		BigInteger g = db.gcd(N);
+		if(db.signum() == 0 || g.compareTo(BigInteger.valueOf(MAX_GCD)) > 0 || da.mod(g).signum() != 0) {
+			return -1; /* error */
+		}
+		BigInteger m = N.divide(g);
+		BigInteger k = m.equals(BigInteger.ONE) ? BigInteger.ZERO : da.divide(g).multiply(db.divide(g).modInverse(m)).mod(m);
+		for(long i = 0; i < g.longValue(); i++) {
+			long candidate = k.add(m.multiply(BigInteger.valueOf(i))).longValue();
+			if(G.mult(candidate, a, b, p).equals(P, p)) {
+				return candidate;
+			}
+		}
+		return -1; /* error */
+	}
+
+	/* runs the walkers of threads lo, ..., hi-1, splitting the range in half until there's one per task */
+	private class Walkers extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int lo, hi;
+
+		Walkers(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if(hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Walkers(lo, mid), new Walkers(mid, hi));
+				return;
+			}
+			new Walker(lo).run();
+		}
+	}
+
+	/* BATCH walks on one thread, stepped together */
+	private class Walker {
+		private final Random rand;
+		private final long[] x = new long[BATCH], y = new long[BATCH];
+		private final long[] u = new long[BATCH], v = new long[BATCH]; /* (x, y) = uG + vP */
+		private final long[] previous = new long[BATCH]; /* x one step before, for spotting 2-cycles */
+		private final long[] length = new long[BATCH]; /* steps since the last distinguished point */
+		private final long[] dx = new long[BATCH], scratch = new long[BATCH];
+		private final long dMask = (1L << dBits) - 1;
+
+		Walker(int id) {
+			rand = new Random(seed * 0x9E3779B97F4A7C15L + walkSeed * 0xD1B54A32D192ED03L + id + 1);
+			for(int i = 0; i < BATCH; i++) {
+				restart(i);
+			}
+		}
+
+		private void restart(int i) {
+			long[] W = null;
+			while(W == null) {
+				u[i] = Math.floorMod(rand.nextLong(), n);
+				v[i] = Math.floorMod(rand.nextLong(), n);
+				W = combination(u[i], v[i]);
+			}
+			x[i] = W[0];
+			y[i] = W[1];
+			previous[i] = -1;
+			length[i] = 0;
+			canonical(i);
+		}
+
+		private void canonical(int i) { /* W or -W = (x, -y), whichever has the smaller y */
+			long ny = f.neg(y[i]);
+			if(ny < y[i]) {
+				y[i] = ny;
+				u[i] = negN(u[i]);
+				v[i] = negN(v[i]);
+			}
+		}
+
+		void run() {
+			while(!done()) {
+				for(int i = 0; i < BATCH; i++) {
+					dx[i] = f.sub(RX[adder(x[i])], x[i]);
+				}
+				f.batchMontInverse(dx, BATCH, scratch); /* W = +-R_j gives 0, which is left alone */
+				for(int i = 0; i < BATCH; i++) {
+					if(dx[i] == 0) {
+						restart(i);
+						continue;
+					}
+					int j = adder(x[i]);
+					long lambda = f.mul(f.sub(RY[j], y[i]), dx[i]);
+					long x3 = f.sub(f.sub(f.sqr(lambda), x[i]), RX[j]);
+					long y3 = f.sub(f.mul(lambda, f.sub(x[i], x3)), y[i]);
+					if(x3 == previous[i]) { /* W -> W' -> W, a fruitless 2-cycle */
+						escape(i, x3, y3, addN(u[i], C[j]), addN(v[i], D[j]));
+					}
+					else {
+						previous[i] = x[i];
+						x[i] = x3;
+						y[i] = y3;
+						u[i] = addN(u[i], C[j]);
+						v[i] = addN(v[i], D[j]);
+						canonical(i);
+					}
+					if((x[i] & dMask) == 0) {
+						distinguish(i);
+					}
+					else if(++length[i] > maxLength) { /* probably stuck in a longer fruitless cycle */
+						restart(i);
+					}
+				}
+				steps.add(BATCH);
+			}
+		}
+
+		/* leaves the 2-cycle {W, W'} (W' = (x3, +-y3) = u3G + v3P) by doubling the one with the smaller x */
+		private void escape(int i, long x3, long y3, long u3, long v3) {
+			if(x3 < x[i]) {
+				x[i] = x3;
+				y[i] = y3;
+				u[i] = u3;
+				v[i] = v3;
+			}
+			if(y[i] == 0) { /* a point of order 2 */
+				restart(i);
+				return;
+			}
+			long xx = f.sqr(x[i]);
+			long lambda = f.mul(f.add(f.add(f.add(xx, xx), xx), aM), f.montInverse(f.add(y[i], y[i])));
+			long x2 = f.sub(f.sqr(lambda), f.add(x[i], x[i]));
+			y[i] = f.sub(f.mul(lambda, f.sub(x[i], x2)), y[i]);
+			x[i] = x2;
+			u[i] = addN(u[i], u[i]);
+			v[i] = addN(v[i], v[i]);
+			previous[i] = -1;
+			canonical(i);
+		}
+
+		private void distinguish(int i) {
+			distinguished.incrementAndGet();
+			length[i] = 0;
+			long[] other = table.putIfAbsent(x[i], u[i], v[i]);
+			if(other == null) {
+				if(sink != null) {
+					sink.distinguished(x[i], u[i], v[i]);
+				}
+				return;
+			}
+			long k = (other[0] == u[i] && other[1] == v[i]) ? -1 : solve(P, u[i], v[i], other[0], other[1]);
+			if(k >= 0) {
+				result.compareAndSet(-1, k);
+			}
+			else { /* a walk that ran into its own path (or a useless collision): start over */
+				restart(i);
+			}
+		}
+	}
+}
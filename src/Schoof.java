@@ -0,0 +1,442 @@
+package src;
+
+/**
+ * @author Aaron Blumenfeld
+ * This class counts the points of y^2 = x^3 + ax + b over F_p with Schoof's
+ * algorithm, in time polynomial in log p instead of the O(p) of summing
+ * Legendre symbols (which EllipticCurve.order does for small p). By Hasse's
+ * theorem |E| = p + 1 - t with |t| <= 2sqrt(p), so it's enough to know t
+ * modulo small primes l whose product is more than 4sqrt(p), and put them
+ * together with the Chinese remainder theorem.
+ *
+ * t (mod 2) is 0 exactly when x^3 + ax + b has a root, i.e. when it has a
+ * common factor with x^p - x. For odd l, the Frobenius map pi(x, y) =
+ * (x^p, y^p) satisfies pi^2 - t*pi + p = 0 on the l-torsion points, whose
+ * x-coordinates are the roots of the division polynomial psi_l (of degree
+ * (l^2 - 1)/2). So everything is computed in F_p[x]/(psi_l), with a point
+ * (X(x), Y(x)*y) standing for a generic l-torsion point and y^2 replaced by
+ * x^3 + ax + b: pi^2(P) + (p mod l)P is compared with tau*pi(P) for
+ * tau = 1, ..., (l-1)/2, comparing y-coordinates to tell tau from -tau.
+ * When a denominator turns out to share a factor with psi_l, the factor is
+ * a smaller set of points that Frobenius maps to itself, and the same
+ * computation is redone modulo that factor (which is also faster).
+ *
+ * The polynomials are long arrays of coefficients in Montgomery form (lowest
+ * degree first) over a PrimeField, with schoolbook multiplication, so a 62-bit
+ * p needs l up to 31 and polynomials of degree 480, and takes a few seconds.
+ * The time spent on each l is kept for getTimings. The result is checked by
+ * multiplying random points by p + 1 - t, and order returns -1 if that fails.
+ *
+ * What this is not: there is no Elkies/Atkin (SEA) step, which would work
+ * modulo a factor of degree (l - 1)/2 of psi_l for the Elkies primes but
+ * needs the modular polynomials Phi_l, which this tree doesn't have. And the
+ * coefficients are longs, so it only counts EllipticCurve's curves (p < 2^62),
+ * not BigEllipticCurve's; 160 to 256-bit curves would need SEA and polynomial
+ * arithmetic over BigInteger or PrimeField256. Up to 2^62, Mestre's
+ * O(p^(1/4)) method is much faster (tens of milliseconds against seconds), so
+ * EllipticCurve.order only gets here with OrderStrategy.SCHOOF, or when
+ * Mestre fails.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public final class Schoof {
+
+	private static final int CHECKS = 10; /* random points that must be killed by the order */
+
+	private final long a, b, p;
+	private final PrimeField f;
+	private final long[] curve; /* x^3 + ax + b */
+	private final Map<Long, Long> traces = new LinkedHashMap<>(); /* l -> t (mod l) */
+	private final Map<Long, Long> timings = new LinkedHashMap<>(); /* l -> nanoseconds */
+	private final List<long[]> psi = new ArrayList<>(); /* division polynomials, divided by y for even n */
+
+	/* a denominator with a common factor with the modulus, which is thrown to restart with the factor */
+	private static final class Split extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private final long[] factor;
+
+		private Split(long[] factor) {
+			super(null, null, false, false);
+			this.factor = factor;
+		}
+	}
+
+	public Schoof(EllipticCurve E) {
+		this(E.getA(), E.getB(), E.getP());
+	}
+
+	public Schoof(long a, long b, long p) {
+		if(p < 5 || !ECMath.isPrime(p)) {
+			throw new IllegalArgumentException("Schoof's algorithm needs a prime p >= 5, got " + p);
+		}
+		this.f = new PrimeField(p);
+		this.a = f.reduce(a);
+		this.b = f.reduce(b);
+		this.p = p;
+		this.curve = new long[] {f.toMont(this.b), f.toMont(this.a), 0, f.one()};
+	}
+
+	public Map<Long, Long> getTimings() { /* nanoseconds spent on each l, in the order they were done */
+		return timings;
+	}
+
+	public Map<Long, Long> getTraces() { /* t (mod l) for each l */
+		return traces;
+	}
+
+	/* |E| = p + 1 - t, or -1 if the curve is singular, random points didn't confirm the count, or
+	|E| is 2^63 or more */
+	public long order() {
+		long disc = f.add(f.mulMod(4, f.mulMod(a, f.mulMod(a, a))), f.mulMod(27, f.mulMod(b, b)));
+		if(disc == 0) {
+			return -1; /* error */
+		}
+		double bound = 4*Math.sqrt((double)p);
+		long M = 1, t = 0; /* t (mod M) */
+		for(long l = 2; M <= bound; l++) {
+			if(!ECMath.isPrime(l) || l == p) {
+				continue;
+			}
+			long start = System.nanoTime();
+			long tl = (l == 2) ? traceMod2() : traceModL((int)l);
+			timings.put(l, System.nanoTime() - start);
+			if(tl < 0) {
+				return -1; /* error */
+			}
+			traces.put(l, tl);
+			long inv = ECMath.inverse(M % l, l); /* t = t + M*((tl - t)*M^(-1) mod l) */
+			long step = Math.floorMod((tl - t % l) * inv, l);
+			t += M*step;
+			M *= l;
+		}
+		if(t > M/2) {
+			t -= M;
+		}
+		if(t < 0 && p + 1 - t < 0) {
+			return -1; /* |E| doesn't fit in a long (p close to 2^63), and mult would take it for k <= 0 */
+		}
+		long n = p + 1 - t;
+		EllipticCurve E = new EllipticCurve(a, b, p);
+		Random rand = new Random(p ^ a ^ b);
+		for(int i = 0; i < CHECKS; i++) {
+			Point P = E.randomPoint(rand);
+			if(P != null && !P.mult(n, a, b, p).isInfinity()) {
+				return -1; /* error */
+			}
+		}
+		return n;
+	}
+
+	private long traceMod2() { /* t is even iff x^3 + ax + b has a root in F_p */
+		long[] xp = powMod(new long[] {0, f.one()}, p, curve);
+		return (degree(gcd(sub(xp, new long[] {0, f.one()}), curve)) > 0) ? 0 : 1;
+	}
+
+	private long traceModL(int l) {
+		long[] h = monic(divisionPolynomial(l));
+		while(true) {
+			try {
+				return traceModL(l, h);
+			}
+			catch(Split s) {
+				h = s.factor;
+			}
+		}
+	}
+
+	/* t (mod l), working modulo a factor h of psi_l (monic), or -1 if nothing matched */
+	private long traceModL(int l, long[] h) {
+		long[] x = mod(new long[] {0, f.one()}, h);
+		long[] fx = mod(curve, h);
+		long[] Xp = powMod(x, p, h);
+		long[] Yp = powMod(fx, (p-1)/2, h); /* y^p = y*f^((p-1)/2) */
+		long[] Xp2 = powMod(Xp, p, h);
+		long[] Yp2 = mulMod(powMod(Yp, p, h), Yp, h); /* f^((p^2-1)/2) = (f^((p-1)/2))^(p+1) */
+		long[][] P = {x, mod(new long[] {f.one()}, h)};
+		int q = (int)(p % l);
+		long[][] Q = mult(P, q, h);
+		if(same(Xp2, Q[0], h)) {
+			if(same(Yp2, Q[1], h)) { /* pi^2 = q on these points, so pi has eigenvalue +-w with w^2 = q */
+				return eigenTrace(l, q, Xp, Yp, P, h);
+			}
+			return 0; /* pi^2 = -q, so t*pi = 0 */
+		}
+		long[][] S = add(new long[][] {Xp2, Yp2}, Q, h);
+		long[][] pi = {Xp, Yp};
+		long[][] T = pi;
+		for(int tau = 1; tau <= (l-1)/2; tau++) {
+			if(same(T[0], S[0], h)) {
+				return same(T[1], S[1], h) ? tau : l - tau;
+			}
+			T = add(T, pi, h);
+		}
+		return -1; /* error */
+	}
+
+	private long eigenTrace(int l, int q, long[] Xp, long[] Yp, long[][] P, long[] h) {
+		long w = -1;
+		for(long i = 1; i < l; i++) {
+			if((i*i) % l == q) {
+				w = i;
+				break;
+			}
+		}
+		if(w == -1) {
+			return 0; /* q is not a square (mod l) */
+		}
+		long[][] W = mult(P, (int)w, h);
+		long[] g = gcd(sub(Xp, W[0]), h);
+		if(degree(g) == 0) {
+			return 0;
+		}
+		return (degree(gcd(sub(Yp, W[1]), g)) == degree(g)) ? (2*w) % l : Math.floorMod(-2*w, l);
+	}
+
+	/* whether A = B (mod h). a difference with a proper common factor with h splits h */
+	private boolean same(long[] A, long[] B, long[] h) {
+		long[] d = sub(A, B);
+		if(d.length == 0) {
+			return true;
+		}
+		long[] g = gcd(d, h);
+		if(degree(g) == 0) {
+			return false;
+		}
+		if(degree(g) == degree(h)) {
+			return true;
+		}
+		throw new Split(g);
+	}
+
+	/* P + Q in F_p[x]/(h) for points (X, Y) standing for (X, Y*y), null for infinity.
+	with slope y*L, x3 = f*L^2 - x1 - x2 and y3 = y*(L*(x1 - x3) - y1) */
+	private long[][] add(long[][] P, long[][] Q, long[] h) {
+		if(P == null) {
+			return Q;
+		}
+		if(Q == null) {
+			return P;
+		}
+		long[] L;
+		if(same(P[0], Q[0], h)) {
+			if(!same(P[1], Q[1], h)) {
+				return null; /* P = -Q */
+			}
+			long[] X = P[0];
+			long[] num = mod(add(scale(mulMod(X, X, h), f.toMont(3)), new long[] {f.toMont(a)}), h); /* 3x^2 + a */
+			long[] den = mulMod(scale(mod(curve, h), f.toMont(2)), P[1], h); /* 2y^2*Y */
+			L = mulMod(num, inverse(den, h), h);
+		}
+		else {
+			L = mulMod(sub(Q[1], P[1]), inverse(sub(Q[0], P[0]), h), h);
+		}
+		long[] X3 = sub(sub(mulMod(mod(curve, h), mulMod(L, L, h), h), P[0]), Q[0]);
+		long[] Y3 = sub(mulMod(L, sub(P[0], X3), h), P[1]);
+		return new long[][] {X3, Y3};
+	}
+
+	private long[][] mult(long[][] P, int k, long[] h) { /* kP by doubling and adding */
+		long[][] rval = null;
+		for(int i = 31 - Integer.numberOfLeadingZeros(k); i >= 0; i--) {
+			rval = add(rval, rval, h);
+			if(((k >> i) & 1) == 1) {
+				rval = add(rval, P, h);
+			}
+		}
+		return rval;
+	}
+
+	/* psi_n for odd n, psi_n/y for even n, with y^2 = x^3 + ax + b (Washington, section 3.2) */
+	private long[] divisionPolynomial(int n) {
+		if(psi.isEmpty()) {
+			long A = f.toMont(a), B = f.toMont(b);
+			long AA = f.mul(A, A);
+			psi.add(new long[0]);
+			psi.add(new long[] {f.one()});
+			psi.add(new long[] {f.toMont(2)});
+			psi.add(trim(new long[] {f.neg(AA), f.mul(f.toMont(12), B), f.mul(f.toMont(6), A), 0, f.toMont(3)}));
+			psi.add(scale(trim(new long[] {f.sub(f.neg(f.mul(f.toMont(8), f.mul(B, B))), f.mul(AA, A)),
+					f.neg(f.mul(f.toMont(4), f.mul(A, B))), f.neg(f.mul(f.toMont(5), AA)),
+					f.mul(f.toMont(20), B), f.mul(f.toMont(5), A), 0, f.one()}), f.toMont(4)));
+		}
+		long[] ff = mul(curve, curve);
+		long half = f.toMont((p+1)/2);
+		for(int m = psi.size(); m <= n; m++) {
+			int k = m / 2;
+			long[] rval;
+			if(m % 2 == 1) { /* psi_{2k+1} = psi_{k+2}psi_k^3 - psi_{k-1}psi_{k+1}^3, with y^4 = f^2 */
+				long[] s = mul(psi.get(k+2), cube(psi.get(k)));
+				long[] t = mul(psi.get(k-1), cube(psi.get(k+1)));
+				rval = (k % 2 == 0) ? sub(mul(ff, s), t) : sub(s, mul(ff, t));
+			}
+			else { /* psi_{2k}/y = psi_k(psi_{k+2}psi_{k-1}^2 - psi_{k-2}psi_{k+1}^2)/2 either way */
+				long[] s = mul(psi.get(k+2), mul(psi.get(k-1), psi.get(k-1)));
+				long[] t = mul(psi.get(k-2), mul(psi.get(k+1), psi.get(k+1)));
+				rval = scale(mul(psi.get(k), sub(s, t)), half);
+			}
+			psi.add(rval);
+		}
+		return psi.get(n);
+	}
+
+	private long[] cube(long[] A) {
+		return mul(A, mul(A, A));
+	}
+
+	/* polynomial arithmetic: coefficients in Montgomery form, lowest degree first, no leading zeros */
+
+	private static long[] trim(long[] A) {
+		int n = A.length;
+		while(n > 0 && A[n-1] == 0) {
+			n--;
+		}
+		return (n == A.length) ? A : java.util.Arrays.copyOf(A, n);
+	}
+
+	private static int degree(long[] A) { /* -1 for the zero polynomial */
+		return A.length - 1;
+	}
+
+	private long[] add(long[] A, long[] B) {
+		long[] rval = new long[Math.max(A.length, B.length)];
+		for(int i = 0; i < rval.length; i++) {
+			rval[i] = f.add(i < A.length ? A[i] : 0, i < B.length ? B[i] : 0);
+		}
+		return trim(rval);
+	}
+
+	private long[] sub(long[] A, long[] B) {
+		long[] rval = new long[Math.max(A.length, B.length)];
+		for(int i = 0; i < rval.length; i++) {
+			rval[i] = f.sub(i < A.length ? A[i] : 0, i < B.length ? B[i] : 0);
+		}
+		return trim(rval);
+	}
+
+	private long[] scale(long[] A, long c) {
+		long[] rval = new long[A.length];
+		for(int i = 0; i < A.length; i++) {
+			rval[i] = f.mul(A[i], c);
+		}
+		return trim(rval);
+	}
+
+	private long[] mul(long[] A, long[] B) {
+		if(A.length == 0 || B.length == 0) {
+			return new long[0];
+		}
+		long[] rval = new long[A.length + B.length - 1];
+		for(int i = 0; i < A.length; i++) {
+			long ai = A[i];
+			if(ai != 0) {
+				for(int j = 0; j < B.length; j++) {
+					rval[i+j] = f.add(rval[i+j], f.mul(ai, B[j]));
+				}
+			}
+		}
+		return trim(rval);
+	}
+
+	private long[] mod(long[] A, long[] h) { /* A (mod h) for monic h */
+		int d = degree(h);
+		if(degree(A) < d) {
+			return A;
+		}
+		long[] r = A.clone();
+		for(int i = r.length - 1; i >= d; i--) {
+			long c = r[i];
+			if(c != 0) {
+				for(int j = 0; j <= d; j++) {
+					r[i-d+j] = f.sub(r[i-d+j], f.mul(c, h[j]));
+				}
+			}
+		}
+		return trim(java.util.Arrays.copyOf(r, d));
+	}
+
+	private long[] mulMod(long[] A, long[] B, long[] h) {
+		return mod(mul(A, B), h);
+	}
+
+	private long[] powMod(long[] A, long e, long[] h) {
+		long[] rval = mod(new long[] {f.one()}, h);
+		for(int i = 63 - Long.numberOfLeadingZeros(e); i >= 0; i--) {
+			rval = mulMod(rval, rval, h);
+			if(((e >>> i) & 1) == 1) {
+				rval = mulMod(rval, A, h);
+			}
+		}
+		return rval;
+	}
+
+	private long[] monic(long[] A) {
+		return scale(A, f.montInverse(A[A.length-1]));
+	}
+
+	private long[] gcd(long[] A, long[] B) { /* monic, or {1} if they're coprime */
+		while(B.length > 0) {
+			long[] r = mod(A, monic(B));
+			A = B;
+			B = r;
+		}
+		return (A.length == 0) ? A : monic(A);
+	}
+
+	/* A^(-1) (mod h) by the extended Euclidean algorithm, or Split with the common factor */
+	private long[] inverse(long[] A, long[] h) {
+		long[] r0 = h, r1 = mod(A, h);
+		long[] s0 = new long[0], s1 = new long[] {f.one()};
+		while(r1.length > 0) {
+			long[][] qr = divide(r0, r1);
+			long[] r = qr[1];
+			long[] s = sub(s0, mul(qr[0], s1));
+			r0 = r1;
+			r1 = r;
+			s0 = s1;
+			s1 = s;
+		}
+		if(degree(r0) > 0) {
+			throw new Split(monic(r0));
+		}
+		if(r0.length == 0) {
+			throw new ArithmeticException("inverting zero mod a polynomial");
+		}
+		return mod(scale(s0, f.montInverse(r0[0])), h);
+	}
+
+	private long[][] divide(long[] A, long[] B) { /* {quotient, remainder} */
+		int d = degree(B);
+		if(degree(A) < d) {
+			return new long[][] {new long[0], A};
+		}
+		long lead = f.montInverse(B[d]);
+		long[] r = A.clone();
+		long[] q = new long[A.length - d];
+		for(int i = r.length - 1; i >= d; i--) {
+			long c = f.mul(r[i], lead);
+			q[i-d] = c;
+			if(c != 0) {
+				for(int j = 0; j <= d; j++) {
+					r[i-d+j] = f.sub(r[i-d+j], f.mul(c, B[j]));
+				}
+			}
+		}
+		return new long[][] {trim(q), trim(java.util.Arrays.copyOf(r, d))};
+	}
+
+	public static void main(String[] args) { /* method for testing: per-l timings for a 62-bit curve */
+		long p = 4611686018427387847L; /* largest prime below 2^62 */
+		Schoof S = new Schoof(-3, 5, p);
+		long start = System.nanoTime();
+		long n = S.order();
+		System.out.println(new EllipticCurve(-3, 5, p) + ", |E| = " + n + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+		for(Map.Entry<Long, Long> e : S.getTimings().entrySet()) {
+			System.out.println("  l = " + e.getKey() + ": t = " + S.getTraces().get(e.getKey()) + " (mod l), " + e.getValue() / 1000000 + " ms");
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * A very small timing harness for the benchmarks in this package. Each
+ * benchmark is a plain main method (like the main methods used for testing
+ * in the other classes), so no extra libraries are needed. The body is run
+ * a few times to let the JIT compile it before the timed runs start.
+ * allocated measures garbage instead of time, with the per-thread allocation
+ * counter of HotSpot JVMs.
+ */
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+public class Bench {
+
+	private static volatile Object sink; /* keeps the JIT from discarding results */
+
+	public interface Body {
+		Object run();
+	}
+
+	public static double time(String label, int iterations, Body body) { /* prints and returns ns per iteration */
+		return time(label, iterations, 1, body);
+	}
+
+	/* the same, but per unit of work when each iteration does units of it */
+	public static double time(String label, int iterations, int units, Body body) {
+		for(int i = 0; i < iterations; i++) { /* warm up */
+			sink = body.run();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < iterations; i++) {
+			sink = body.run();
+		}
+		double ns = (double)(System.nanoTime() - start) / iterations / units;
+		System.out.printf("%-48s %14.1f ns/op %12.1f ops/s%n", label, ns, 1e9 / ns);
+		return ns;
+	}
+
+	/* prints and returns the bytes allocated per unit of work, and the number of collections
+	while the body ran. -1 if the JVM doesn't count allocations */
+	public static double allocated(String label, int iterations, int units, Body body) {
+		if(!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean)) {
+			return -1; /* error */
+		}
+		ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+		for(int i = 0; i < iterations; i++) { /* warm up, so escape analysis has kicked in */
+			sink = body.run();
+		}
+		long id = Thread.currentThread().getId();
+		long gcs = collections();
+		long start = threads.getThreadAllocatedBytes(id);
+		for(int i = 0; i < iterations; i++) {
+			sink = body.run();
+		}
+		double bytes = (double)(threads.getThreadAllocatedBytes(id) - start) / iterations / units;
+		System.out.printf("%-48s %14.1f B/op %12d GCs%n", label, bytes, collections() - gcs);
+		return bytes;
+	}
+
+	private static long collections() {
+		long rval = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			rval += Math.max(0, gc.getCollectionCount());
+		}
+		return rval;
+	}
+}
@@ -0,0 +1,80 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Throughput of scalar multiplication with the long-based Point against the
+ * BigInteger-based BigPoint. Both are run on the same 61-bit curve so the
+ * numbers are directly comparable, and BigPoint is also run on P-256 and
+ * secp256k1 to show the cost at cryptographic sizes (where it runs on
+ * PrimeField256 limbs, with Point's Jacobian formulas and wNAF recoding).
+ * The target there is a few hundred microseconds per multiplication; the
+ * projective double-and-add that BigPoint used before took about 3 ms on
+ * P-256 on the same machine. A 256-bit field multiplication and squaring
+ * with BigInteger and with PrimeField256 (special form and Montgomery form)
+ * are timed as well. The 256-bit multiplications take a couple of thousand
+ * iterations before the JIT has compiled the limb arithmetic.
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+import src.BigEllipticCurve;
+import src.BigPoint;
+import src.BigPrimeField;
+import src.Point;
+import src.PrimeField256;
+
+public class BigPointBenchmark {
+
+	public static void main(String[] args) {
+		Random rand = new Random(1);
+		long p = 2305843009213693951L; /* 2^61 - 1 */
+		long a = 1;
+		long b = p-1; /* (2, 3) is on y^2 = x^3 + x - 1 */
+		Point G = new Point(2, 3, 1);
+		long[] k = new long[64];
+		for(int i = 0; i < k.length; i++) {
+			k[i] = rand.nextLong() >>> 3;
+		}
+		int[] i = {0};
+		Bench.time("Point.mult, 61-bit p, 61-bit k", 2000, () -> G.mult(k[i[0]++ & 63], a, b, p));
+
+		BigInteger bp = BigInteger.valueOf(p);
+		BigInteger ba = BigInteger.valueOf(a);
+		BigInteger bb = BigInteger.valueOf(b);
+		BigPoint bG = new BigPoint(2, 3, 1);
+		Bench.time("BigPoint.mult, 61-bit p, 61-bit k", 2000, () -> bG.mult(k[i[0]++ & 63], ba, bb, bp));
+
+		BigInteger p256 = BigEllipticCurve.P256().getP();
+		BigPrimeField big = new BigPrimeField(p256);
+		BigInteger[] x = {new BigInteger(255, rand), new BigInteger(255, rand)};
+		Bench.time("BigPrimeField.mul, 256-bit p", 1000000, () -> x[0] = big.mul(x[0], x[1]));
+		PrimeField256 limbs = new PrimeField256(p256);
+		long[] A = new long[4];
+		long[] B = new long[4];
+		limbs.toMont(x[0], A);
+		limbs.toMont(x[1], B);
+		Bench.time("PrimeField256.mul, P-256", 1000000, () -> {
+			limbs.mul(A, B, A);
+			return A;
+		});
+		Bench.time("PrimeField256.sqr, P-256", 1000000, () -> {
+			limbs.sqr(A, A);
+			return A;
+		});
+		PrimeField256 mont = new PrimeField256(p256, false);
+		Bench.time("PrimeField256.mul, P-256 in Montgomery form", 1000000, () -> {
+			mont.mul(A, B, A);
+			return A;
+		});
+
+		for(BigEllipticCurve E : new BigEllipticCurve[] {BigEllipticCurve.P256(), BigEllipticCurve.secp256k1()}) {
+			BigInteger[] bk = new BigInteger[64];
+			for(int j = 0; j < bk.length; j++) {
+				bk[j] = new BigInteger(256, rand).mod(E.order());
+			}
+			BigPoint P = E.getGenerator();
+			Bench.time("BigPoint.mult, " + E.getP().bitLength() + "-bit p (a = " + (E.getA().signum() == 0 ? "0" : "-3") + ")", 2000,
+					() -> E.mult(P, bk[i[0]++ & 63]));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Point.mult in each coordinate system, for a general a and for a = -3, on a
+ * 63-bit prime. Besides the time per multiplication, it prints the number of
+ * field multiplications (squarings included) per bit of k, as counted by
+ * PrimeField over the 64 scalars (see PrimeField.multiplications), so the
+ * table building and the final conversion back to affine are included. From
+ * the formulas, a doubling is 14 projective, 10 Jacobian (8 for a = -3), and
+ * an addition is 14 projective, 11 mixed Jacobian-affine, and 14
+ * Jacobian-Chudnovsky; the projective method is binary, so half the bits of a
+ * random k need an addition, while the others use a width-4 NAF for 63-bit k,
+ * so one bit in 5 does. FixedBasePoint needs no doublings at all. The
+ * inversions (one for the table of JACOBIAN, one at the end) don't go through
+ * mul and aren't counted.
+ *
+ * The last section is y^2 = x^3 + b with a prime number of points on a 62-bit
+ * p = 1 (mod 3), where a Jacobian doubling is 7 multiplications and
+ * EllipticCurve.mult uses the GLV endomorphism: half as many doublings, and
+ * two NAFs of half the length.
+ */
+
+import java.util.Random;
+import java.util.function.LongConsumer;
+import src.ECMath;
+import src.EllipticCurve;
+import src.FixedBasePoint;
+import src.GLV;
+import src.Point;
+import src.PrimeField;
+
+public class CoordinateBenchmark {
+
+	static { /* turn on PrimeField's counter before the class is loaded */
+		System.setProperty("src.countMults", "true");
+	}
+
+	public static void main(String[] args) {
+		long p = 9223372036854775783L; /* largest prime below 2^63 */
+		Random rand = new Random(1);
+		long[] k = new long[64];
+		for(int i = 0; i < k.length; i++) {
+			k[i] = rand.nextLong() >>> 1;
+		}
+		for(long a : new long[] {2, -3}) {
+			Point P = firstPoint(a, 5, p);
+			System.out.println("y^2 = x^3 + " + a + "x + 5, 63-bit p:");
+			for(Point.Coordinates c : Point.Coordinates.values()) {
+				double perBit = multsPerBit(k, x -> P.mult(x, a, 5, p, c));
+				int[] i = {0};
+				Bench.time(String.format("  %-11s %4.1f mults/bit", c, perBit), 20000, () -> P.mult(k[i[0]++ & 63], a, 5, p, c));
+			}
+			FixedBasePoint T = FixedBasePoint.of(new EllipticCurve(a, 5, p), P);
+			double perBit = multsPerBit(k, x -> T.mult(x));
+			int[] i = {0};
+			Bench.time(String.format("  %-11s %4.1f mults/bit", "fixed base", perBit), 20000, () -> T.mult(k[i[0]++ & 63]));
+		}
+		EllipticCurve E = glvCurve();
+		Point P = firstPoint(0, E.getB(), E.getP());
+		long n = E.getGLV().getN();
+		long[] kn = new long[k.length];
+		for(int j = 0; j < k.length; j++) {
+			kn[j] = k[j] % n;
+		}
+		System.out.println(E + ", |E| = " + n + ":");
+		int[] i = {0};
+		double jacobian = multsPerBit(kn, x -> P.mult(x, 0, E.getB(), E.getP()));
+		Bench.time(String.format("  %-11s %4.1f mults/bit", "JACOBIAN", jacobian), 20000, () -> P.mult(kn[i[0]++ & 63], 0, E.getB(), E.getP()));
+		double glv = multsPerBit(kn, x -> E.mult(P, x));
+		Bench.time(String.format("  %-11s %4.1f mults/bit", "GLV", glv), 20000, () -> E.mult(P, kn[i[0]++ & 63]));
+	}
+
+	/* field multiplications (squarings included) per bit of k, over all the scalars in k */
+	private static double multsPerBit(long[] k, LongConsumer mult) {
+		long bits = 0;
+		long start = PrimeField.multiplications();
+		for(long x : k) {
+			mult.accept(x);
+			bits += 64 - Long.numberOfLeadingZeros(x);
+		}
+		return (double)(PrimeField.multiplications() - start) / bits;
+	}
+	
+	private static EllipticCurve glvCurve() { /* y^2 = x^3 + b with a prime order, for the largest such p < 2^62 */
+		for(long p = (1L << 62) - 1; ; p--) {
+			if(p % 3 == 1 && ECMath.isPrime(p)) {
+				for(long b = 1; b < 100; b++) {
+					EllipticCurve E = new EllipticCurve(0, b, p);
+					if(GLV.of(E) != null) {
+						return E;
+					}
+				}
+			}
+		}
+	}
+
+	private static Point firstPoint(long a, long b, long p) {
+		PrimeField f = new PrimeField(p);
+		for(long x = 1; ; x++) {
+			long y = ECMath.sqrt(f.add(f.add(f.pow(x, 3), f.mulMod(f.reduce(a), x)), f.reduce(b)), p);
+			if(y > 0) {
+				return new Point(x, y, 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Time per x of the O(p) point count, for a p small enough for the
+ * QuadraticResidueTable lookup and for one past it (binary Jacobi). The
+ * baseline is the loop EllipticCurve.order used before LegendreSum: the
+ * cubic from scratch with mulMod, then QuadraticResidueTable.legendre (which
+ * is ECMath.jacobi above the table limit). LegendreSum then runs on 1, 2,
+ * 4, ... threads up to the number of processors (or the first argument),
+ * with the speedup over one thread.
+ */
+
+import src.ECMath;
+import src.LegendreSum;
+import src.PrimeField;
+import src.QuadraticResidueTable;
+
+public class CountBenchmark {
+
+	public static void main(String[] args) {
+		int cores = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		long[] primes = {ECMath.nextPrime(QuadraticResidueTable.TABLE_LIMIT / 2), ECMath.nextPrime(1L << 25)};
+		for(long p : primes) {
+			long a = -3, b = 5;
+			PrimeField f = PrimeField.of(p);
+			Bench.time("baseline, p = " + p, 2, (int)p, () -> {
+				QuadraticResidueTable qr = QuadraticResidueTable.of(p, true);
+				long order = p + 1;
+				for(long x = 0; x < p; x++) {
+					order += qr.legendre(f.add(f.mulMod(f.add(f.mulMod(x, x), f.reduce(a)), x), f.reduce(b)));
+				}
+				return order;
+			});
+			double one = 0;
+			for(int threads = 1; threads <= cores; threads *= 2) {
+				int t = threads;
+				double ns = Bench.time("LegendreSum, " + t + " thread(s)", 2, (int)p, () -> LegendreSum.order(a, b, p, t));
+				if(threads == 1) {
+					one = ns;
+				}
+				System.out.printf("%-48s %14.2fx%n", "  speedup", one / ns);
+				if(threads < cores && 2*threads > cores) { /* end with all of them */
+					threads = cores / 2;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Modular exponentiation: PrimeField.montPow against a fixed-base table and
+ * two powers against Shamir's trick for a^x * b^y (63-bit exponents), the
+ * binary method against sliding windows for the 256-bit Fermat inversion in
+ * PrimeField256, inversion in GF(2^31) with Polynomial, and ECMath.sqrt for
+ * a prime with p - 1 = 119*2^23, where Shanks' algorithm needs many powers of
+ * the non-residue.
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+import src.BigEllipticCurve;
+import src.ECMath;
+import src.FixedBasePow;
+import src.Polynomial;
+import src.PrimeField;
+import src.PrimeField256;
+
+public class ExpBenchmark {
+
+	public static void main(String[] args) {
+		Random rand = new Random(1);
+		long p = 9223372036854775783L; /* largest prime below 2^63 */
+		PrimeField f = new PrimeField(p);
+		long[] e = new long[64];
+		for(int i = 0; i < e.length; i++) {
+			e[i] = rand.nextLong() >>> 1;
+		}
+		int[] i = {0};
+		long g = f.toMont(3);
+		long h = f.toMont(5);
+		Bench.time("PrimeField.montPow, 63-bit e", 200000, () -> f.montPow(g, e[i[0]++ & 63]));
+		FixedBasePow G = FixedBasePow.of(3, p);
+		Bench.time("FixedBasePow.pow, 63-bit e", 200000, () -> G.pow(e[i[0]++ & 63]));
+		Bench.time("a^x * b^y, two powers", 200000, () -> f.mul(f.montPow(g, e[i[0]++ & 63]), f.montPow(h, e[i[0]++ & 63])));
+		Bench.time("a^x * b^y, Shamir", 200000, () -> f.montPow2(g, e[i[0]++ & 63], h, e[i[0]++ & 63]));
+
+		BigInteger p256 = BigEllipticCurve.secp256k1().getP();
+		PrimeField256 limbs = new PrimeField256(p256);
+		long[] pMinus2 = PrimeField256.toLimbs(p256.subtract(BigInteger.TWO));
+		long[] A = new long[4];
+		long[] B = new long[4];
+		limbs.toMont(new BigInteger(255, rand), A);
+		Bench.time("PrimeField256 inverse, binary", 3000, () -> {
+			binary(limbs, A, pMinus2, B);
+			return B;
+		});
+		Bench.time("PrimeField256 inverse, sliding window", 3000, () -> {
+			limbs.inverse(A, B);
+			return B;
+		});
+
+		Polynomial q = new Polynomial("z^31 + z^3 + 1");
+		Polynomial a = new Polynomial("z^17 + z^9 + z^2 + 1");
+		Bench.time("Polynomial.inverse, GF(2^31)", 300, () -> a.inverse(q));
+
+		long r = 998244353; /* r - 1 = 119*2^23 */
+		Bench.time("ECMath.sqrt, 2-adicity 23", 200000, () -> ECMath.sqrt(ECMath.mulMod(e[i[0] & 63] % r, e[i[0]++ & 63] % r, r), r));
+	}
+
+	private static void binary(PrimeField256 f, long[] a, long[] e, long[] r) { /* left-to-right, one bit at a time */
+		f.setOne(r);
+		for(int i = 255; i >= 0; i--) {
+			f.sqr(r, r);
+			if(((e[i >> 6] >>> (i & 63)) & 1) == 1) {
+				f.mul(r, a, r);
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Sums of n multiples k_i*P_i on a 63-bit prime: separate mults added
+ * together, Straus' method, and Pippenger's method, for n from 1 to 4096.
+ * The time is per term, so a method that scales well gets cheaper as n grows.
+ * EllipticCurve.multiScalar switches from Straus to Pippenger where they cross.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+import src.PrimeField;
+
+public class MultiScalarBenchmark {
+
+	public static void main(String[] args) {
+		long p = 9223372036854775783L; /* largest prime below 2^63 */
+		EllipticCurve E = new EllipticCurve(-3, 5, p);
+		PrimeField f = new PrimeField(p);
+		Random rand = new Random(1);
+		Point[] P = new Point[4096];
+		long[] k = new long[P.length];
+		for(int i = 0; i < P.length; i++) {
+			while(P[i] == null) {
+				long x = rand.nextLong() >>> 1;
+				long y = ECMath.sqrt(f.add(f.add(f.pow(x, 3), f.mulMod(f.reduce(-3), x)), 5), p);
+				if(y > 0) {
+					P[i] = new Point(x, y, 1);
+				}
+			}
+			k[i] = rand.nextLong() >>> 1;
+		}
+		for(int n = 1; n <= P.length; n *= 4) {
+			Point[] Pn = Arrays.copyOf(P, n);
+			long[] kn = Arrays.copyOf(k, n);
+			int iterations = Math.max(2, 20000 / n);
+			System.out.println("n = " + n + ", time per term:");
+			if(n <= 256) {
+				time("  mult and add", n, iterations, () -> {
+					Point rval = new Point();
+					for(int i = 0; i < Pn.length; i++) {
+						rval = rval.add(E.mult(Pn[i], kn[i]), E.getA(), E.getB(), p);
+					}
+					return rval;
+				});
+			}
+			time("  Straus", n, iterations, () -> E.multiScalarStraus(kn, Pn));
+			time("  Pippenger", n, iterations, () -> E.multiScalarPippenger(kn, Pn));
+		}
+	}
+
+	private static void time(String label, int n, int iterations, Bench.Body body) {
+		Bench.time(label, iterations, n, body);
+	}
+}
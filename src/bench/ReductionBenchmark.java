@@ -0,0 +1,70 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Field multiplication with the generic reduction (Montgomery for PrimeField
+ * and PrimeField256, BigInteger.mod for BigPrimeField) against the folding
+ * reduction used for special-form primes p = 2^k - c. Each prime is timed
+ * twice, once with special-form detection turned off and once with it on.
+ * For one-word primes the interesting number is mulMod (ordinary residues,
+ * as used by ECMath), since Montgomery needs a second product to convert.
+ */
+
+import java.math.BigInteger;
+import java.util.Random;
+import src.BigPrimeField;
+import src.PrimeField;
+import src.PrimeField256;
+
+public class ReductionBenchmark {
+
+	public static void main(String[] args) {
+		Random rand = new Random(1);
+		for(long p : new long[] {2147483647L, 2305843009213693951L}) { /* 2^31 - 1, 2^61 - 1 */
+			for(boolean special : new boolean[] {false, true}) {
+				PrimeField f = new PrimeField(p, special);
+				long[] x = {f.toMont(rand.nextLong()), f.toMont(rand.nextLong())};
+				Bench.time("PrimeField.mul, " + name(p) + (special ? ", folding" : ", Montgomery"), 10000000,
+						() -> x[0] = f.mul(x[0], x[1]));
+				Bench.time("PrimeField.mulMod, " + name(p) + (special ? ", folding" : ", Montgomery"), 10000000,
+						() -> x[0] = f.mulMod(x[0], x[1]));
+			}
+		}
+
+		BigInteger[] primes256 = {
+			new BigInteger("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16),
+			new BigInteger("fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f", 16),
+			BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19))
+		};
+		String[] names256 = {"P-256", "secp256k1", "2^255 - 19"};
+		for(int j = 0; j < primes256.length; j++) {
+			for(boolean special : new boolean[] {false, true}) {
+				PrimeField256 f = new PrimeField256(primes256[j], special);
+				long[] A = new long[4];
+				long[] B = new long[4];
+				f.toMont(new BigInteger(255, rand), A);
+				f.toMont(new BigInteger(255, rand), B);
+				Bench.time("PrimeField256.mul, " + names256[j] + (special ? ", special" : ", Montgomery"), 1000000, () -> {
+					f.mul(A, B, A);
+					return A;
+				});
+			}
+		}
+
+		BigInteger p384 = BigInteger.ONE.shiftLeft(384).subtract(BigInteger.ONE.shiftLeft(128))
+				.subtract(BigInteger.ONE.shiftLeft(96)).add(BigInteger.ONE.shiftLeft(32)).subtract(BigInteger.ONE);
+		BigInteger p521 = BigInteger.ONE.shiftLeft(521).subtract(BigInteger.ONE);
+		for(BigInteger p : new BigInteger[] {p384, p521}) {
+			for(boolean special : new boolean[] {false, true}) {
+				BigPrimeField f = new BigPrimeField(p, special);
+				BigInteger[] x = {new BigInteger(p.bitLength() - 1, rand), new BigInteger(p.bitLength() - 1, rand)};
+				Bench.time("BigPrimeField.mul, " + (p == p384 ? "P-384" : "P-521") + (special ? ", folding" : ", mod"), 500000,
+						() -> x[0] = f.mul(x[0], x[1]));
+			}
+		}
+	}
+
+	private static String name(long p) {
+		return p == 2147483647L ? "2^31 - 1" : "2^61 - 1";
+	}
+}
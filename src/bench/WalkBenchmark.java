@@ -0,0 +1,55 @@
+package src.bench;
+
+/**
+ * @author Aaron Blumenfeld
+ * Time and garbage per step of a group walk G, 2G, 3G, ... on a 63-bit
+ * prime: repeated Point.add (an inversion and several new Points per step),
+ * Point.walk (one inversion per block, but still a Point per step for the
+ * result), and a PointBuffer reused from block to block, which allocates
+ * nothing. Before PointBuffer, Point.walk allocated 100 bytes per step, and
+ * EllipticCurve.log used it.
+ */
+
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+import src.PointBuffer;
+import src.PrimeField;
+
+public class WalkBenchmark {
+
+	public static void main(String[] args) {
+		long p = 9223372036854775783L; /* largest prime below 2^63 */
+		EllipticCurve E = new EllipticCurve(-3, 5, p);
+		PrimeField f = new PrimeField(p);
+		Point G = null;
+		for(long x = 2; G == null; x++) {
+			long y = ECMath.sqrt(f.add(f.add(f.pow(x, 3), f.mulMod(f.reduce(-3), x)), 5), p);
+			if(y > 0) {
+				G = new Point(x, y, 1);
+			}
+		}
+		final Point base = G;
+		int n = 1024;
+		Bench.Body add = () -> {
+			Point P = base;
+			for(int i = 1; i < n; i++) {
+				P = P.add(base, E.getA(), E.getB(), p);
+			}
+			return P;
+		};
+		Bench.Body walk = () -> Point.walk(base, base, n, E.getA(), E.getB(), p);
+		PointBuffer buffer = new PointBuffer(E, n);
+		buffer.walk(base, base, n);
+		Bench.Body buffered = () -> {
+			buffer.walk(n);
+			return buffer;
+		};
+		Bench.time("repeated add", 2000, n, add);
+		Bench.time("Point.walk", 2000, n, walk);
+		Bench.time("PointBuffer.walk", 2000, n, buffered);
+		Bench.allocated("repeated add", 2000, n, add);
+		Bench.allocated("Point.walk", 2000, n, walk);
+		Bench.allocated("PointBuffer.walk", 2000, n, buffered);
+	}
+}
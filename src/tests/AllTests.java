@@ -5,9 +5,14 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ JacobiTest.class, ModExpTest.class, PointTest.class,
-		PolynomialPointTest.class, PolynomialTest.class, PrimeTest.class,
-		SqrtTest.class })
+@SuiteClasses({ BSGSTest.class, BigPointTest.class, DistributedRhoTest.class,
+		ECMTest.class, FactorTest.class, GLVTest.class, InverseTest.class,
+		JacobiTest.class, KangarooTest.class, LegendreSumTest.class,
+		MestreTest.class, ModExpTest.class, MultiScalarTest.class,
+		PohligHellmanTest.class, PointBufferTest.class, PointTest.class,
+		PolynomialPointTest.class, PolynomialTest.class,
+		PrimeField256Test.class, PrimeFieldTest.class, PrimeTest.class,
+		RhoTest.class, SchoofTest.class, SqrtTest.class })
 public class AllTests {
 
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.BSGS;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+
+public class BSGSTest {
+
+	@Test
+	public void TestLog() { // one table answers many logarithms, with or without a tight memory budget
+		Random rand = new Random(61);
+		EllipticCurve E = EllipticCurve.randomPrimeEC(ECMath.randomPrimeBits(30, false, rand), rand);
+		long n = E.order();
+		Point G = E.randomPoint(rand);
+		BSGS full = new BSGS(E, G, n);
+		BSGS small = new BSGS(E, G, n, 1 << 12);
+		assertTrue(full.getBabySteps() >= Math.sqrt(n / 2.0));
+		assertTrue(small.getMemory() <= 1 << 12 && small.getBabySteps() < full.getBabySteps());
+		assertTrue(small.getGiantSteps() > full.getGiantSteps());
+		for(int i = 0; i < 20; i++) {
+			long k = Math.floorMod(rand.nextLong(), n);
+			Point P = E.mult(G, k);
+			assertEquals(k, full.log(P));
+			assertEquals(k, small.log(P));
+		}
+		assertEquals(0, full.log(new Point()));
+		assertEquals(n - 1, full.log(E.mult(G, n - 1)));
+		assertSame(BSGS.of(E, G, n), BSGS.of(E, G, n));
+	}
+
+	@Test
+	public void TestLogAll() { // a batch on several threads sharing the table, and P outside <G>
+		Random rand = new Random(62);
+		long p = ECMath.randomPrimeBits(24, false, rand);
+		EllipticCurve E;
+		long q = 0;
+		do { /* |E| = h*q with a prime q > 1000 and h > 1 */
+			E = new EllipticCurve(Math.floorMod(rand.nextLong(), p), Math.floorMod(rand.nextLong(), p), p);
+			q = ECMath.factor(E.order()).lastKey();
+		} while(!E.isEC() || q < 1000 || q == E.order());
+		Point G = new Point();
+		while(G.isInfinity()) {
+			G = E.mult(E.randomPoint(rand), E.order() / q);
+		}
+		BSGS bsgs = new BSGS(E, G, q);
+		Point[] P = new Point[200];
+		long[] expected = new long[P.length];
+		for(int i = 0; i < P.length; i++) {
+			expected[i] = Math.floorMod(rand.nextLong(), q);
+			P[i] = E.mult(G, expected[i]);
+		}
+		Point outside = E.randomPoint(rand);
+		while(E.mult(outside, q).isInfinity()) {
+			outside = E.randomPoint(rand);
+		}
+		P[7] = outside;
+		expected[7] = -1;
+		assertArrayEquals(expected, bsgs.logAll(P, 4));
+		assertArrayEquals(expected, bsgs.logAll(P, 1));
+	}
+}
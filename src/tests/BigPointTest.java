@@ -0,0 +1,87 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+import src.BigEllipticCurve;
+import src.BigPoint;
+import src.Point;
+
+public class BigPointTest {
+
+	@Test
+	public void SmallCurveTest() { // agrees with the long-based Point on E(F_17) : y^2 = x^3 + 2x + 2
+		BigPoint G = new BigPoint(5, 1, 1);
+		BigInteger two = BigInteger.valueOf(2);
+		BigInteger p = BigInteger.valueOf(17);
+		for(long k = 1; k <= 19; k++) {
+			Point R = new Point(5, 1, 1).mult(k, 2, 2, 17);
+			BigPoint S = G.mult(k, two, two, p);
+			assertEquals(R.toString(), S.toString());
+		}
+		assertFalse(G.equals("not a point"));
+		assertFalse(G.equals(null));
+	}
+	
+	@Test
+	public void SmallLogTest() {
+		BigEllipticCurve E = new BigEllipticCurve(2, 2, 17);
+		BigPoint G = new BigPoint(5, 1, 1);
+		assertEquals(BigInteger.valueOf(19), E.pointOrder(G));
+		assertEquals(BigInteger.valueOf(13), E.log(E.mult(G, BigInteger.valueOf(13)), G));
+	}
+	
+	@Test
+	public void P256Test() {
+		BigEllipticCurve E = BigEllipticCurve.P256();
+		BigPoint G = E.getGenerator();
+		assertTrue(E.contains(G));
+		assertTrue(E.mult(G, E.order()).isInfinity());
+		BigPoint twoG = new BigPoint(new BigInteger("7cf27b188d034f7e8a52380304b51ac3c08969e277f21b35a60b48fc47669978", 16),
+				new BigInteger("07775510db8ed040293d9ac69f7430dbba7dade63ce982299e04b79d227873d1", 16), BigInteger.ONE);
+		assertEquals(twoG, E.mult(G, BigInteger.valueOf(2)));
+		assertEquals(twoG, E.add(G, G));
+	}
+	
+	@Test
+	public void Secp256k1Test() {
+		BigEllipticCurve E = BigEllipticCurve.secp256k1();
+		BigPoint G = E.getGenerator();
+		BigInteger k = new BigInteger("123456789abcdef123456789abcdef", 16);
+		assertTrue(E.mult(G, E.order()).isInfinity());
+		assertEquals(E.mult(G, k.add(BigInteger.ONE)), E.add(E.mult(G, k), G));
+		assertTrue(E.contains(E.mult(G, k)));
+	}
+	
+	@Test
+	public void WNAFTest() { // the wNAF on limbs against repeated addition, and against Point on a 61-bit curve
+		Random rand = new Random(3);
+		for(BigEllipticCurve E : new BigEllipticCurve[] {BigEllipticCurve.P256(), BigEllipticCurve.secp256k1()}) {
+			BigPoint G = E.getGenerator();
+			BigPoint R = new BigPoint();
+			for(int k = 1; k <= 40; k++) {
+				R = E.add(R, G);
+				assertEquals(R, E.mult(G, BigInteger.valueOf(k)));
+			}
+			for(int i = 0; i < 4; i++) {
+				BigInteger k = new BigInteger(256, rand);
+				BigPoint S = new BigPoint(); // left-to-right double-and-add with E.add
+				for(int j = k.bitLength() - 1; j >= 0; j--) {
+					S = E.add(S, S);
+					if(k.testBit(j)) {
+						S = E.add(S, G);
+					}
+				}
+				assertEquals(S, E.mult(G, k));
+			}
+		}
+		long p = 2305843009213693951L; // 2^61 - 1, with (2, 3) on y^2 = x^3 + x - 1
+		BigPoint G = new BigPoint(2, 3, 1);
+		for(int i = 0; i < 20; i++) {
+			long k = rand.nextLong() >>> 3;
+			Point R = new Point(2, 3, 1).mult(k, 1, p-1, p);
+			assertEquals(R.toString(), G.mult(k, BigInteger.ONE, BigInteger.valueOf(p-1), BigInteger.valueOf(p)).toString());
+		}
+	}
+}
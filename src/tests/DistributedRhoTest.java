@@ -0,0 +1,77 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.util.Random;
+import org.junit.Test;
+import src.DistributedRho;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+
+public class DistributedRhoTest {
+
+	private static Thread worker(DistributedRho rho) throws InterruptedException { /* a worker in this JVM, joining once rho listens */
+		while(rho.getPort() == 0) {
+			Thread.sleep(10);
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				DistributedRho.work("127.0.0.1", rho.getPort(), 1);
+			}
+			catch(Exception e) {
+				/* the coordinator went away */
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	@Test
+	public void TestProcesses() { // two worker processes on this machine
+		Random rand = new Random(71);
+		EllipticCurve E = EllipticCurve.randomPrimeEC(ECMath.randomPrimeBits(38, false, rand), rand);
+		long n = E.order();
+		Point G = E.randomPoint(rand);
+		DistributedRho rho = new DistributedRho(E, G, n);
+		rho.setWorkers(2);
+		long k = Math.floorMod(rand.nextLong(), n);
+		assertEquals(k, rho.log(E.mult(G, k)));
+		assertTrue(rho.getDistinguished() > 0);
+		assertEquals(0, rho.getConnected());
+	}
+
+	@Test
+	public void TestCheckpoint() throws Exception { // a worker joins, the coordinator stops and resumes from its checkpoint
+		Random rand = new Random(72);
+		EllipticCurve E = EllipticCurve.randomPrimeEC(ECMath.randomPrimeBits(44, false, rand), rand);
+		long n = E.order();
+		Point G = E.randomPoint(rand);
+		long k = Math.floorMod(rand.nextLong(), n);
+		Point P = E.mult(G, k);
+		File checkpoint = File.createTempFile("rho", ".checkpoint");
+		checkpoint.delete();
+		DistributedRho first = new DistributedRho(E, G, n);
+		first.setWorkers(0);
+		first.setCheckpoint(checkpoint);
+		first.setCheckpointInterval(100);
+		long[] result = new long[1];
+		Thread coordinator = new Thread(() -> result[0] = first.log(P));
+		coordinator.start();
+		Thread joined = worker(first);
+		while(first.getDistinguished() == 0) { /* cancelled at the first point, long before two walks can meet */
+			Thread.sleep(1);
+		}
+		first.cancel();
+		coordinator.join();
+		joined.join();
+		assertEquals(-1, result[0]);
+		assertTrue(checkpoint.exists() && first.getDistinguished() > 0);
+		DistributedRho second = new DistributedRho(E, G, n);
+		second.setWorkers(1);
+		second.setCheckpoint(checkpoint);
+		assertEquals(k, second.log(P));
+		assertTrue(second.getDistinguished() > first.getDistinguished());
+		assertFalse(checkpoint.exists());
+	}
+}
@@ -0,0 +1,49 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.SortedMap;
+import org.junit.Test;
+import src.ECM;
+
+public class ECMTest {
+
+	@Test
+	public void FindFactor() { // a 40-bit prime times a 90-bit prime
+		BigInteger p = BigInteger.valueOf(1099511627791L); // next prime after 2^40
+		BigInteger q = BigInteger.ONE.shiftLeft(89).nextProbablePrime();
+		BigInteger N = p.multiply(q);
+		BigInteger d = ECM.findFactor(N, 2000, 200000, 100);
+		assertNotNull(d);
+		assertTrue(d.compareTo(BigInteger.ONE) > 0 && d.compareTo(N) < 0);
+		assertEquals(BigInteger.ZERO, N.mod(d));
+	}
+	
+	@Test
+	public void Factor() {
+		BigInteger[] primes = {BigInteger.valueOf(3), BigInteger.valueOf(1000000007L),
+				BigInteger.valueOf(4294967291L), BigInteger.ONE.shiftLeft(127).subtract(BigInteger.ONE)};
+		BigInteger N = primes[0].pow(2);
+		for(int i = 1; i < primes.length; i++) {
+			N = N.multiply(primes[i]);
+		}
+		SortedMap<BigInteger, Integer> factors = ECM.factor(N);
+		assertEquals(primes.length, factors.size());
+		BigInteger product = BigInteger.ONE;
+		for(Map.Entry<BigInteger, Integer> entry : factors.entrySet()) {
+			assertTrue(entry.getKey().isProbablePrime(50));
+			product = product.multiply(entry.getKey().pow(entry.getValue()));
+		}
+		assertEquals(N, product);
+		assertEquals(2, factors.get(BigInteger.valueOf(3)), 0);
+	}
+	
+	@Test
+	public void Unsupported() {
+		assertNull(ECM.findFactor(BigInteger.valueOf(100), 2000, 200000, 4)); // even
+		assertNull(ECM.findFactor(BigInteger.ONE.shiftLeft(300).add(BigInteger.ONE), 2000, 200000, 4)); // too big
+		assertTrue(ECM.factor(BigInteger.ZERO).isEmpty());
+		assertTrue(ECM.factor(BigInteger.ONE).isEmpty());
+	}
+}
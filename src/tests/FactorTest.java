@@ -0,0 +1,86 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+
+public class FactorTest {
+
+	@Test
+	public void SmallFactors() {
+		assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 6L, 12L), ECMath.allFactors(12));
+		assertEquals(Arrays.asList(1L), ECMath.allFactors(1));
+		assertTrue(ECMath.allFactors(0).isEmpty());
+		SortedMap<Long, Integer> factors = ECMath.factor(1197397); // 997 * 1201
+		assertEquals(2, factors.size());
+		assertEquals(1, factors.get(997L), 0);
+		assertEquals(1, factors.get(1201L), 0);
+	}
+	
+	@Test
+	public void LargeFactors() { // products of primes that trial division can't reach
+		long[] composites = {4611686014132420609L, // (2^31 - 1)^2
+				2305843009213693951L * 3, // 3 * (2^61 - 1)
+				1000000007L * 998244353L, // two 30-bit primes
+				4294967291L * 2147483647L}; // just below 2^63
+		for(long N : composites) {
+			long product = 1;
+			for(Map.Entry<Long, Integer> entry : ECMath.factor(N).entrySet()) {
+				assertTrue(ECMath.isPrime(entry.getKey()));
+				for(int i = 0; i < entry.getValue(); i++) {
+					product *= entry.getKey();
+				}
+			}
+			assertEquals(N, product);
+		}
+	}
+	
+	@Test
+	public void Divisors() { // the lazy divisor list agrees with brute force
+		Random rand = new Random(8);
+		for(int i = 0; i < 200; i++) {
+			long N = 1 + rand.nextInt(100000);
+			int count = 0;
+			for(long d = 1; d <= N; d++) {
+				if(N % d == 0) {
+					count++;
+				}
+			}
+			assertEquals(count, ECMath.allFactors(N).size());
+		}
+		int count = 0;
+		for(long d : ECMath.divisors(ECMath.factor(720720))) { // 2^4 * 3^2 * 5 * 7 * 11 * 13
+			assertEquals(0, 720720 % d);
+			count++;
+		}
+		assertEquals(240, count);
+	}
+	
+	@Test
+	public void PointOrder() { // the factored version gives the same order as trying every divisor
+		EllipticCurve E = new EllipticCurve(2, 2, 17);
+		assertEquals(19, E.pointOrder(new Point(5, 1, 1)));
+		E = new EllipticCurve(1, 1, 1009);
+		long N = E.order();
+		for(long x = 0; x < 50; x++) {
+			long rhs = (x*x*x + x + 1) % 1009;
+			if(ECMath.jacobi(rhs, 1009) == 1) {
+				Point G = new Point(x, ECMath.sqrt(rhs, 1009), 1);
+				long expected = -1;
+				for(long d : ECMath.allFactors(N)) {
+					if(G.mult(d, 1, 1, 1009).equals(new Point())) {
+						expected = d;
+						break;
+					}
+				}
+				assertEquals(expected, E.pointOrder(G));
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.GLV;
+import src.Point;
+import src.PrimeField;
+
+public class GLVTest {
+
+	@Test
+	public void TestOrder() { // the six candidate orders narrow down to the count of points
+		for(long p = 1000; p < 4000; p++) {
+			if(p % 3 != 1 || !ECMath.isPrime(p)) {
+				continue;
+			}
+			for(long b = 1; b <= 6; b++) {
+				long count = p + 1;
+				for(long x = 0; x < p; x++) {
+					count += ECMath.jacobi((x*x % p * x + b) % p, p);
+				}
+				assertEquals(count, GLV.jZeroOrder(b, p));
+				assertEquals(count, new EllipticCurve(0, b, p).order());
+			}
+		}
+	}
+
+	@Test
+	public void TestRandom() { // GLV agrees with the plain binary method on random curves and scalars
+		Random rand = new Random(17);
+		for(int bits : new int[] {16, 32, 48, 62}) {
+			EllipticCurve E = null;
+			while(E == null) {
+				long p = ECMath.randomPrimeBits(bits, false, rand);
+				if(p % 3 == 1 && p < (1L << 62)) {
+					EllipticCurve F = new EllipticCurve(0, 1 + Math.floorMod(rand.nextLong(), p - 1), p);
+					if(F.getGLV() != null) {
+						E = F;
+					}
+				}
+			}
+			long p = E.getP();
+			GLV glv = E.getGLV();
+			long n = glv.getN();
+			PrimeField f = PrimeField.of(p);
+			assertEquals(1, f.pow(glv.getBeta(), 3));
+			assertNotEquals(1, glv.getBeta());
+			Point P = null;
+			while(P == null) {
+				long x = Math.floorMod(rand.nextLong(), p);
+				long y = ECMath.sqrt(f.add(f.pow(x, 3), f.reduce(E.getB())), p);
+				if(y > 0) {
+					P = new Point(x, y, 1);
+				}
+			}
+			assertEquals(glv.endomorphism(P), P.mult(glv.getLambda(), 0, E.getB(), p));
+			BigInteger N = BigInteger.valueOf(n);
+			double bound = 2*Math.sqrt(n);
+			for(int i = 0; i < 200; i++) {
+				long k = (i < 4) ? new long[] {1, 2, n - 1, n + 5}[i] : rand.nextLong() >>> 1;
+				long[] c = glv.decompose(k);
+				assertTrue(Math.abs(c[0]) < bound && Math.abs(c[1]) < bound);
+				BigInteger sum = BigInteger.valueOf(c[1]).multiply(BigInteger.valueOf(glv.getLambda())).add(BigInteger.valueOf(c[0]));
+				assertEquals(BigInteger.valueOf(k).mod(N), sum.mod(N));
+				assertEquals(P.mult(k, 0, E.getB(), p, Point.Coordinates.PROJECTIVE), E.mult(P, k));
+			}
+			assertEquals(new Point(), E.mult(P, n));
+			assertEquals(new Point(), E.mult(P, 0));
+			assertEquals(n, E.pointOrder(P));
+		}
+	}
+
+	@Test
+	public void TestNotApplicable() { // curves without the endomorphism take the plain path
+		assertNull(new EllipticCurve(2, 2, 17).getGLV());
+		assertNull(new EllipticCurve(1, 7, 1000003).getGLV()); // a != 0
+		assertNull(new EllipticCurve(0, 7, 1000037).getGLV()); // p = 2 (mod 3)
+		EllipticCurve E = new EllipticCurve(0, 7, 1000003);
+		E.setB(0); // singular, and the endomorphism is looked up again
+		assertNull(E.getGLV());
+	}
+}
@@ -0,0 +1,59 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+import src.PrimeField;
+
+public class InverseTest {
+
+	@Test
+	public void TestSmall() {
+		assertEquals(7, ECMath.inverse(3, 10), 0); // 3*7 = 21 = 1 (mod 10)
+		assertEquals(-1, ECMath.inverse(0, 997), 0);
+		assertEquals(-1, ECMath.inverse(4, 10), 0); // not invertible
+		assertEquals(1, ECMath.inverse(1, 2), 0);
+		assertEquals(996, ECMath.inverse(-1, 997), 0);
+	}
+	
+	@Test
+	public void TestLarge() { // compare against BigInteger.modInverse
+		Random rand = new Random(5);
+		long p = 9223372036854775783L; // largest prime below 2^63
+		for(int i = 0; i < 1000; i++) {
+			long a = Math.floorMod(rand.nextLong(), p-1) + 1;
+			long expected = BigInteger.valueOf(a).modInverse(BigInteger.valueOf(p)).longValue();
+			assertEquals(expected, ECMath.inverse(a, p), 0);
+		}
+		assertEquals(p-1, ECMath.inverse(p-1, p), 0);
+	}
+	
+	@Test
+	public void TestBatch() {
+		for(long p : new long[] {997, 2305843009213693951L, 9223372036854775783L}) {
+			long[] values = {5, 0, p-1, 123456 % p, 2, 0, 1};
+			long[] inverses = ECMath.batchInverse(values, PrimeField.of(p));
+			for(int i = 0; i < values.length; i++) {
+				assertEquals(ECMath.inverse(values[i], p), inverses[i], 0);
+			}
+		}
+	}
+	
+	@Test
+	public void TestWalk() { // the batched walk agrees with repeated add, including infinity
+		EllipticCurve E = new EllipticCurve(2, 2, 17);
+		Point G = new Point(5, 1, 1);
+		Point[] walk = Point.walk(G, G, 25, 2, 2, 17);
+		Point B = new Point(G);
+		for(int i = 0; i < walk.length; i++) {
+			assertEquals(B, walk[i]);
+			B = B.add(G, 2, 2, 17);
+		}
+		assertEquals(new Point(), walk[18]); // G has order 19
+		assertEquals(13, E.log(G.mult(13, 2, 2, 17), G), 0);
+	}
+}
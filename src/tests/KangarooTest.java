@@ -0,0 +1,73 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Test;
+import src.AffinePoint;
+import src.BinaryEllipticCurve;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Kangaroo;
+import src.Point;
+import src.Polynomial;
+import src.PolynomialPoint;
+
+public class KangarooTest {
+
+	@Test
+	public void TestPrime() { // k in a 2^28 interval of a 48-bit group, on one thread and on several
+		Random rand = new Random(61);
+		long p = ECMath.randomPrimeBits(48, false, rand);
+		EllipticCurve E;
+		do {
+			E = new EllipticCurve(Math.floorMod(rand.nextLong(), p), Math.floorMod(rand.nextLong(), p), p);
+		} while(!E.isEC());
+		Point G = E.randomPoint(rand);
+		for(int threads = 1; threads <= 3; threads += 2) {
+			Kangaroo<AffinePoint> K = new Kangaroo<AffinePoint>(Kangaroo.group(E), AffinePoint.of(G, p));
+			K.setThreads(threads);
+			for(int i = 0; i < 3; i++) {
+				long lo = Math.floorMod(rand.nextLong(), 1L << 40), k = lo + Math.floorMod(rand.nextLong(), 1L << 28);
+				assertEquals(k, K.log(AffinePoint.of(E.mult(G, k), p), lo, lo + (1L << 28) - 1));
+				assertTrue(K.getSteps() > 0 && K.getSteps() < 32*(1L << 14));
+			}
+		}
+		long k = 123456789;
+		assertEquals(k, E.logInInterval(E.mult(G, k), G, k - 100, k + 100)); /* narrow enough to just try */
+		assertEquals(k, E.logInInterval(E.mult(G, k), G, k, k + (1L << 20)));
+		assertEquals(-1, E.logInInterval(E.mult(G, k), G, k + 1, k + (1L << 20))); /* not in the interval */
+		assertEquals(-1, E.logInInterval(E.mult(G, k), G, k, k - 1));
+	}
+
+	@Test
+	public void TestBinary() { // the same on a binary curve, agreeing with its own log
+		Random rand = new Random(62);
+		Polynomial modulus = new Polynomial("z^11 + z^2 + 1"), one = new Polynomial("1");
+		BinaryEllipticCurve E = new BinaryEllipticCurve(one, new Polynomial("z^7 + z^3 + z + 1"), modulus);
+		ArrayList<Polynomial> polys = new ArrayList<Polynomial>();
+		for(int i = 0; i < modulus.degree(); i++) {
+			Polynomial.generatePolys(polys);
+		}
+		PolynomialPoint G = null;
+		while(G == null) { /* y^2 + xy = x^3 + ax^2 + b */
+			Polynomial x = polys.get(rand.nextInt(polys.size()));
+			Polynomial rhs = x.modExp(3, modulus).add(E.getA().mult(x.modExp(2, modulus)).mod(modulus)).add(E.getB());
+			for(Polynomial y : polys) {
+				if(y.mult(y).add(x.mult(y)).mod(modulus).equals(rhs)) {
+					G = new PolynomialPoint(x, y, one);
+					break;
+				}
+			}
+		}
+		for(int i = 0; i < 5; i++) {
+			long k = 300 + rand.nextInt(1500), lo = k - rand.nextInt(300);
+			PolynomialPoint P = G.mult(k, E.getA(), E.getB(), modulus);
+			long rval = E.logInInterval(P, G, lo, lo + 300);
+			assertTrue(rval >= lo && rval <= lo + 300);
+			assertTrue(G.mult(rval, E.getA(), E.getB(), modulus).equals(P, modulus));
+		}
+		PolynomialPoint P = G.mult(1500, E.getA(), E.getB(), modulus);
+		assertEquals(E.log(P, G), E.logInInterval(P, G, 1000, 2000));
+	}
+}
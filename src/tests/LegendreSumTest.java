@@ -0,0 +1,35 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.LegendreSum;
+import src.Mestre;
+import src.QuadraticResidueTable;
+
+public class LegendreSumTest {
+
+	@Test
+	public void TestSmall() { // agrees with counting points the old way, on any number of threads
+		Random rand = new Random(31);
+		for(int i = 0; i < 200; i++) {
+			long p = ECMath.randomPrimeBits(2 + i % 16, false, rand);
+			long a = rand.nextInt(2001) - 1000, b = rand.nextInt(2001) - 1000; /* negative too */
+			long count = p + 1;
+			for(long x = 0; x < p; x++) {
+				count += ECMath.jacobi(Math.floorMod((x*x % p + a) % p * x + b, p), p);
+			}
+			assertEquals(count, LegendreSum.order(a, b, p, 1));
+			assertEquals(count, LegendreSum.order(a, b, p, 1 + i % 5));
+		}
+	}
+
+	@Test
+	public void TestLarge() { // past the residue table (the binary Jacobi symbol), split into blocks
+		long p = ECMath.nextPrime(QuadraticResidueTable.TABLE_LIMIT + 1000);
+		long n = new Mestre(-3, 5, p).order();
+		assertEquals(n, LegendreSum.order(-3, 5, p, 1));
+		assertEquals(n, LegendreSum.order(-3, 5, p, 3));
+	}
+}
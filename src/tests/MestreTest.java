@@ -0,0 +1,84 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.LongIntHashMap;
+import src.Mestre;
+import src.Schoof;
+
+public class MestreTest {
+
+	@Test
+	public void TestHashMap() { // put, get and clear, past a few rounds of growing
+		LongIntHashMap map = new LongIntHashMap(4);
+		for(int i = 0; i < 1000; i++) {
+			assertEquals(-1, map.put(7L*i*i, i));
+		}
+		assertEquals(1000, map.size());
+		assertTrue(map.capacity() >= 2000);
+		for(int i = 0; i < 1000; i++) {
+			assertEquals(i, map.get(7L*i*i));
+		}
+		assertEquals(-1, map.get(3));
+		assertEquals(5, map.putIfAbsent(175, 9));
+		assertEquals(5, map.put(175, 9));
+		assertEquals(9, map.get(175));
+		int capacity = map.capacity();
+		map.clear();
+		assertEquals(0, map.size());
+		assertEquals(capacity, map.capacity());
+		assertFalse(map.containsKey(0));
+	}
+
+	@Test
+	public void TestSmall() { // Mestre agrees with counting points on random curves
+		Random rand = new Random(21);
+		for(int i = 0; i < 200; i++) {
+			long p = ECMath.randomPrimeBits(8 + i % 12, false, rand);
+			if(p <= 229) {
+				continue;
+			}
+			long a = Math.floorMod(rand.nextLong(), p), b = Math.floorMod(rand.nextLong(), p);
+			EllipticCurve E = new EllipticCurve(a, b, p);
+			long count = p + 1;
+			for(long x = 0; x < p; x++) {
+				count += ECMath.jacobi(((x*x % p + a) % p * x + b) % p, p);
+			}
+			assertEquals(E.isEC() ? count : -1, new Mestre(a, b, p).order());
+		}
+		assertEquals(-1, new Mestre(1, 1, 229).order());
+	}
+
+	@Test
+	public void TestLarge() { // agrees with Schoof on 40-bit curves and a 62-bit one
+		Random rand = new Random(22);
+		for(int i = 0; i < 3; i++) {
+			long p = ECMath.randomPrimeBits(40, false, rand);
+			long a = Math.floorMod(rand.nextLong(), p), b = Math.floorMod(rand.nextLong(), p);
+			assertEquals(new Schoof(a, b, p).order(), new Mestre(a, b, p).order());
+		}
+		long p = 4611686018427387847L; /* the largest prime below 2^62 */
+		assertEquals(4611686019048445962L, new Mestre(-3, 5, p).order());
+	}
+
+	@Test
+	public void TestStrategy() { // every strategy gives the same order, and sorting uses it
+		Random rand = new Random(23);
+		long p = ECMath.randomPrimeBits(21, false, rand); /* above COUNT_THRESHOLD, so AUTO doesn't count */
+		long a = Math.floorMod(rand.nextLong(), p), b = Math.floorMod(rand.nextLong(), p);
+		long n = new EllipticCurve(a, b, p).order();
+		for(EllipticCurve.OrderStrategy strategy : EllipticCurve.OrderStrategy.values()) {
+			EllipticCurve E = new EllipticCurve(a, b, p);
+			E.setOrderStrategy(strategy);
+			assertEquals(strategy, new EllipticCurve(E).getOrderStrategy());
+			assertEquals(n, E.order());
+			assertEquals(n, new EllipticCurve(a, b, p).order(strategy));
+		}
+		String auto = EllipticCurve.listPrimeECs(47);
+		assertEquals(auto, EllipticCurve.listPrimeECs(47, EllipticCurve.OrderStrategy.COUNT));
+		assertEquals(auto, EllipticCurve.listPrimeECs(47, EllipticCurve.OrderStrategy.SCHOOF));
+	}
+}
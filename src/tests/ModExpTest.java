@@ -1,8 +1,11 @@
 package src.tests;
 
 import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
 import org.junit.Test;
 import src.ECMath;
+import src.FixedBasePow;
 
 public class ModExpTest {
 
@@ -17,4 +20,35 @@ public class ModExpTest {
 		long rval = ECMath.modExp(20, 10, 12);
 		assertEquals(4, rval, 0);
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testSlidingWindow() { // every window width against BigInteger.modPow
+		Random rand = new Random(6);
+		long p = 9223372036854775783L;
+		for(int bits = 1; bits < 64; bits++) {
+			long a = Math.floorMod(rand.nextLong(), p);
+			long e = rand.nextLong() >>> (64 - bits);
+			long expected = BigInteger.valueOf(a).modPow(BigInteger.valueOf(e), BigInteger.valueOf(p)).longValue();
+			assertEquals(expected, ECMath.modExp(a, e, p), 0);
+		}
+	}
+	
+	@Test
+	public void testShamir() {
+		long p = 2305843009213693951L;
+		long x = 1234567890123L, y = 987654321987L;
+		assertEquals(ECMath.mulMod(ECMath.modExp(3, x, p), ECMath.modExp(5, y, p), p), ECMath.modExp2(3, x, 5, y, p), 0);
+		assertEquals(ECMath.modExp(7, 40, 12), ECMath.modExp2(7, 20, 49, 10, 12), 0); // even modulus
+	}
+	
+	@Test
+	public void testFixedBase() {
+		long p = 1000003;
+		FixedBasePow g = FixedBasePow.of(2, p);
+		assertSame(g, FixedBasePow.of(2, p));
+		for(long e : new long[] {0, 1, 15, 16, 1000002, 123456789012345L, Long.MAX_VALUE}) {
+			assertEquals(ECMath.modExp(2, e, p), g.pow(e), 0);
+		}
+		assertEquals(-1, new FixedBasePow(2, p, 8).pow(256), 0); // too long for the table
+	}
+}
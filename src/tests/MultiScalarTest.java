@@ -0,0 +1,78 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.EllipticCurve;
+import src.Point;
+
+public class MultiScalarTest {
+
+	private static Point[] randomPoints(EllipticCurve E, int n, Random rand) {
+		Point[] P = new Point[n];
+		for(int i = 0; i < n; i++) {
+			P[i] = E.randomPoint(rand);
+		}
+		return P;
+	}
+
+	private static Point naive(EllipticCurve E, long[] k, Point[] P) { // one mult per term, negated by hand for k < 0
+		Point rval = new Point();
+		for(int i = 0; i < k.length; i++) {
+			Point Q = E.mult(P[i], Math.abs(k[i]));
+			if(k[i] < 0 && !Q.equals(new Point())) {
+				Q = new Point(Q.getX(), Math.floorMod(-Q.getY(), E.getP()), 1);
+			}
+			rval = rval.add(Q, E.getA(), E.getB(), E.getP());
+		}
+		return rval;
+	}
+
+	@Test
+	public void AgreesWithMult() {
+		EllipticCurve[] curves = {new EllipticCurve(2, 2, 17), new EllipticCurve(-3, 5, 9223372036854775783L), new EllipticCurve(0, 7, 1000003)};
+		Random rand = new Random(11);
+		for(EllipticCurve E : curves) {
+			for(int n : new int[] {1, 2, 3, 10, 40, 100}) {
+				Point[] P = randomPoints(E, n, rand);
+				long[] k = new long[n];
+				for(int i = 0; i < n; i++) {
+					k[i] = (E.getP() < 100) ? rand.nextInt(60) - 30 : rand.nextLong() >> rand.nextInt(60);
+				}
+				k[0] = 0;
+				P[n-1] = new Point(); // infinity
+				Point expected = naive(E, k, P);
+				assertEquals(expected, E.multiScalar(k, P));
+				assertEquals(expected, E.multiScalarStraus(k, P));
+				assertEquals(expected, E.multiScalarPippenger(k, P));
+			}
+		}
+	}
+
+	@Test
+	public void CancelsOut() { // kP + (-k)P = infinity, and u1*G + u2*G = (u1 + u2)G
+		EllipticCurve E = new EllipticCurve(-3, 5, 9223372036854775783L);
+		Point G = randomPoints(E, 1, new Random(13))[0];
+		assertEquals(new Point(), E.mult2(123456789, G, -123456789, G));
+		assertEquals(E.mult(G, 1000), E.mult2(400, G, 600, G));
+		assertEquals(new Point(), E.multiScalar(new long[0], new Point[0]));
+	}
+	
+	@Test
+	public void LengthMismatch() { // one scalar per point, or an IllegalArgumentException
+		EllipticCurve E = new EllipticCurve(-3, 5, 9223372036854775783L);
+		Point[] P = randomPoints(E, 2, new Random(14));
+		try {
+			E.multiScalarStraus(new long[] {1}, P);
+			fail("Straus took fewer scalars than points");
+		}
+		catch(IllegalArgumentException e) {
+		}
+		try {
+			E.multiScalarPippenger(new long[] {1, 2, 3}, P);
+			fail("Pippenger took more scalars than points");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.PohligHellman;
+import src.Point;
+
+public class PohligHellmanTest {
+
+	@Test
+	public void TestSmall() { // agrees with trying every multiple, including when there's no solution
+		Random rand = new Random(51);
+		for(int i = 0; i < 100; i++) {
+			long p = ECMath.randomPrimeBits(5 + i % 8, false, rand);
+			EllipticCurve E = new EllipticCurve(Math.floorMod(rand.nextLong(), p), Math.floorMod(rand.nextLong(), p), p);
+			if(p < 5 || !E.isEC()) {
+				continue;
+			}
+			Point G = E.randomPoint(rand), P = E.randomPoint(rand);
+			long n = E.pointOrder(G);
+			long expected = PohligHellman.NO_SOLUTION;
+			for(long k = 0; k < n && expected == PohligHellman.NO_SOLUTION; k++) {
+				if(E.mult(G, k).equals(P, p)) {
+					expected = k;
+				}
+			}
+			assertEquals(expected, PohligHellman.log(E, P, G, n));
+		}
+	}
+
+	@Test
+	public void TestSmooth() { // a 48-bit group whose order has no prime factor above 2^24
+		Random rand = new Random(52);
+		long p = ECMath.randomPrimeBits(48, false, rand);
+		EllipticCurve E;
+		do {
+			E = new EllipticCurve(Math.floorMod(rand.nextLong(), p), Math.floorMod(rand.nextLong(), p), p);
+		} while(!E.isEC() || ECMath.factor(E.order()).lastKey() > (1L << 24));
+		Point G = E.randomPoint(rand);
+		long n = E.pointOrder(G);
+		for(int i = 0; i < 5; i++) {
+			long k = Math.floorMod(rand.nextLong(), n);
+			assertEquals(k, PohligHellman.log(E, E.mult(G, k), G, n));
+		}
+		assertEquals(n, E.log(new Point(), G));
+		assertEquals(12345, E.log(E.mult(G, 12345), G));
+	}
+}
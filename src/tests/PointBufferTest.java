@@ -0,0 +1,101 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import src.AffinePoint;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+import src.PointBuffer;
+import src.PrimeField;
+
+public class PointBufferTest {
+
+	@Test
+	public void TestWalk() { // walks in blocks agree with repeated add, including infinity
+		long p = 17;
+		Point G = new Point(5, 1, 1); // order 19 on y^2 = x^3 + 2x + 2
+		PointBuffer buffer = new PointBuffer(2, 2, p, 7);
+		Point B = new Point(G);
+		buffer.walk(G, G, 7);
+		for(int block = 0; block < 6; block++) {
+			if(block > 0) {
+				buffer.walk(7);
+			}
+			for(int i = 0; i < 7; i++) {
+				assertEquals(B, buffer.get(i));
+				assertEquals(B.getZ() == 0, buffer.isInfinity(i));
+				B = B.add(G, 2, 2, p);
+			}
+		}
+		buffer.walk(G, new Point(), 3); // a zero step stays put
+		assertEquals(G, buffer.get(2));
+		buffer.walk(new Point(), G, 3);
+		assertEquals(new Point(), buffer.get(0));
+		assertEquals(G, buffer.get(1));
+	}
+
+	@Test
+	public void TestArithmetic() { // add, twice, negate and indexOf against Point, on a 63-bit prime
+		long p = 9223372036854775783L; // largest prime below 2^63
+		PrimeField f = PrimeField.of(p);
+		EllipticCurve E = new EllipticCurve(-3, 5, p);
+		Point G = null;
+		for(long x = 2; G == null; x++) {
+			long y = ECMath.sqrt(f.add(f.add(f.pow(x, 3), f.mulMod(p - 3, x)), 5), p);
+			if(y > 0) {
+				G = new Point(x, y, 1);
+			}
+		}
+		PointBuffer buffer = new PointBuffer(E, 8);
+		buffer.walk(G, G, 4); // G, 2G, 3G, 4G
+		assertArrayEquals(new Point[] {G, E.mult(G, 2), E.mult(G, 3), E.mult(G, 4)}, buffer.toArray(4));
+		buffer.add(0, 2, 4); // 4G
+		buffer.twice(4, 5); // 8G, not normalized
+		buffer.add(5, 5, 6); // 16G, a doubling found by add
+		assertEquals(E.mult(G, 4), buffer.get(4));
+		assertEquals(E.mult(G, 8), buffer.get(5));
+		assertEquals(E.mult(G, 16), buffer.get(6));
+		Point P = E.mult(G, 8);
+		Point scaled = new Point(f.mulMod(P.getX(), 3), f.mulMod(P.getY(), 3), 3); // 8G with z = 3
+		assertTrue(buffer.equals(5, scaled));
+		assertFalse(buffer.equals(6, scaled));
+		assertEquals(5, buffer.indexOf(scaled, 8));
+		buffer.copy(2, 7);
+		buffer.negate(7); // -3G
+		buffer.add(7, 2, 7);
+		assertTrue(buffer.isInfinity(7));
+		assertEquals(7, buffer.indexOf(new Point(), 8));
+		assertEquals(-1, buffer.indexOf(E.mult(G, 5), 8));
+		buffer.normalize(8);
+		assertEquals(5, buffer.indexOf(scaled, 8));
+		assertEquals(E.mult(G, 16), buffer.get(6));
+	}
+
+	@Test
+	public void TestAffinePoint() { // immutable values agree with Point and work as keys
+		long p = 17;
+		Point G = new Point(5, 1, 1);
+		AffinePoint A = AffinePoint.of(G, p);
+		assertEquals(G.hashCode(), A.hashCode());
+		assertEquals(AffinePoint.of(new Point(15, 3, 3), p), A); // (15 : 3 : 3) = (5, 1)
+		assertEquals(AffinePoint.INFINITY, AffinePoint.of(new Point(4, 5, 0), p));
+		assertEquals(AffinePoint.INFINITY, A.add(A.negate(p), 2, 2, p));
+		Map<AffinePoint, Long> logs = new HashMap<>();
+		AffinePoint B = A;
+		for(long k = 1; k <= 19; k++) {
+			logs.put(B, k);
+			assertEquals(AffinePoint.of(G.mult(k, 2, 2, p), p), B);
+			B = B.add(A, 2, 2, p);
+		}
+		assertEquals(19, logs.size());
+		assertEquals(13L, (long)logs.get(A.mult(13, 2, 2, p)));
+		assertEquals("infinity", AffinePoint.INFINITY.toString());
+		assertEquals(G.toString(), A.toString());
+		PointBuffer buffer = new PointBuffer(2, 2, p, 1);
+		buffer.set(0, A);
+		assertEquals(A, buffer.getValue(0));
+	}
+}
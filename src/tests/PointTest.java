@@ -1,8 +1,16 @@
 package src.tests;
 
 import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
 import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.FixedBasePoint;
 import src.Point;
+import src.PrimeField;
 
 public class PointTest {
 
@@ -18,4 +26,127 @@ public class PointTest {
 		Point P = new Point(71264, 344, 1);
 		assertEquals(new Point(36493, 22255, 1), P.mult(2, 64379, 22921, 71933));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void CoordinatesTest() { // every coordinate system gives the same multiples
+		long[][] curves = {{2, 2, 17}, {-3, 5, 1009}, {0, 7, 1000003}, // a = -3 and a = 0 get their own doubling
+				{-3, 41058363725152142L, 2305843009213693951L}, {3, 11, 9223372036854775783L}};
+		Random rand = new Random(3);
+		for(long[] E : curves) {
+			long a = E[0], b = E[1], p = E[2];
+			PrimeField f = new PrimeField(p);
+			Point P = null;
+			for(long x = 1; P == null; x++) { // the first point on the curve
+				long y = ECMath.sqrt(f.add(f.add(f.pow(x, 3), f.mulMod(f.reduce(a), x)), f.reduce(b)), p);
+				if(y > 0) {
+					P = new Point(x, y, 1);
+				}
+			}
+			long s = 7; // the same point with z = 7
+			Point S = new Point(P.getX()*s % p, P.getY()*s % p, s);
+			for(int i = 0; i < 40; i++) {
+				long k = (i < 30) ? i : rand.nextLong() >>> 1;
+				Point expected = P.mult(k, a, b, p, Point.Coordinates.PROJECTIVE);
+				assertEquals(expected, P.mult(k, a, b, p));
+				assertEquals(expected, P.mult(k, a, b, p, Point.Coordinates.JACOBIAN));
+				assertEquals(expected, P.mult(k, a, b, p, Point.Coordinates.CHUDNOVSKY));
+				if(p < (1L << 31)) {
+					assertEquals(expected, S.mult(k, a, b, p, Point.Coordinates.JACOBIAN));
+					assertEquals(expected, S.mult(k, a, b, p, Point.Coordinates.CHUDNOVSKY));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void WNAFTest() { // the digits add up to k, are odd and small, and are w apart
+		Random rand = new Random(5);
+		for(int w = 2; w <= 6; w++) {
+			for(int i = 0; i < 200; i++) {
+				long k = (i == 0) ? Long.MAX_VALUE : (i < 50) ? i : rand.nextLong() >>> (i % 60);
+				int[] naf = ECMath.wNAF(k, w);
+				long sum = 0;
+				int last = -w;
+				for(int j = naf.length - 1; j >= 0; j--) {
+					sum = 2*sum + naf[j]; // mod 2^64, which is exact since k < 2^63
+					if(naf[j] != 0) {
+						assertTrue(naf[j] % 2 != 0 && Math.abs(naf[j]) < (1 << (w-1)));
+						assertTrue(last - j >= w || last == -w);
+						last = j;
+					}
+				}
+				assertEquals(k, sum);
+			}
+		}
+	}
+	
+	@Test
+	public void FixedBaseTest() throws IOException { // table lookups agree with mult, also after a save and load
+		EllipticCurve[] curves = {new EllipticCurve(2, 2, 17), new EllipticCurve(-3, 5, 9223372036854775783L)};
+		Point[] bases = {new Point(5, 1, 1), null};
+		PrimeField f = new PrimeField(curves[1].getP());
+		for(long x = 1; bases[1] == null; x++) {
+			long y = ECMath.sqrt(f.add(f.add(f.pow(x, 3), f.mulMod(f.reduce(-3), x)), 5), f.getP());
+			if(y > 0) {
+				bases[1] = new Point(x, y, 1);
+			}
+		}
+		File file = File.createTempFile("fixedbase", ".tbl");
+		file.deleteOnExit();
+		Random rand = new Random(7);
+		for(int c = 0; c < curves.length; c++) {
+			EllipticCurve E = curves[c];
+			Point G = bases[c];
+			FixedBasePoint T = FixedBasePoint.of(E, G);
+			T.save(file);
+			FixedBasePoint U = FixedBasePoint.load(file);
+			assertEquals(G, U.getBase());
+			for(int i = 0; i < 100; i++) {
+				long k = (i < 60) ? i : rand.nextLong() >>> 1; // small k wrap around the order 19 on the first curve
+				Point expected = E.mult(G, k);
+				assertEquals(expected, T.mult(k));
+				assertEquals(expected, U.mult(k));
+			}
+		}
+		assertEquals(new Point(), FixedBasePoint.of(curves[0], bases[0]).mult(-5));
+		FixedBasePoint.of(curves[1], bases[1]).save(file);
+		FixedBasePoint.load(file, curves[1], bases[1]);
+		try { // the table is fine, but for another curve
+			FixedBasePoint.load(file, new EllipticCurve(-3, 6, curves[1].getP()), bases[1]);
+			fail("loaded a table for the wrong curve");
+		}
+		catch(IOException e) {
+		}
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) { // b in the header no longer matches the table
+			raf.seek(16);
+			raf.writeLong(6);
+		}
+		try {
+			FixedBasePoint.load(file);
+			fail("loaded a table with a corrupted header");
+		}
+		catch(IOException e) {
+		}
+	}
+	
+	@Test
+	public void ProjectiveEqualityTest() { // scaled representatives are equal, hash alike, and normalize back
+		long p = 1009;
+		Point[] reduced = {new Point(36493, 22255, 1), new Point(7, 3, 1), new Point()}; // scaled by z below
+		long[] scale = {3, 1008, 77};
+		Point[] scaled = new Point[reduced.length];
+		for(int i = 0; i < reduced.length; i++) {
+			Point R = reduced[i];
+			long q = (i == 0) ? 71933 : p;
+			scaled[i] = new Point(R.getX()*scale[i] % q, R.getY()*scale[i] % q, R.getZ()*scale[i] % q);
+			assertTrue(scaled[i].equals(R, q));
+			assertEquals(R.hashCode(q), scaled[i].hashCode(q));
+			assertEquals(R.hashCode(), R.hashCode(q));
+			Point.normalizeAll(new Point[] {scaled[i]}, q);
+			assertEquals(R, scaled[i]);
+		}
+		assertFalse(new Point(7, 3, 1).equals(new Point(7, p - 3, 1), p));
+		assertFalse(new Point().equals(new Point(7, 3, 1), p));
+		assertFalse(reduced[1].equals("not a point"));
+	}
+}
@@ -2,6 +2,7 @@ package src.tests;
 
 import static org.junit.Assert.*;
 import org.junit.Test;
+import src.BinaryEllipticCurve;
 import src.Polynomial;
 import src.PolynomialPoint;
 
@@ -19,4 +20,48 @@ public class PolynomialPointTest {
     	PolynomialPoint result = P.mult(5, a, b, m);
     	assertEquals(new PolynomialPoint(new Polynomial("z^3 + z + 1"), new Polynomial("z"), new Polynomial("1")), result);
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void MultiplesTest() { // the wNAF agrees with repeated addition, wrapping around the point order
+		Polynomial a = new Polynomial("z^3");
+		Polynomial b = new Polynomial("z^3 + 1");
+		Polynomial m = new Polynomial("z^4 + z + 1");
+		PolynomialPoint P = new PolynomialPoint(new Polynomial("z^3"), new Polynomial("1"), new Polynomial("1"));
+		PolynomialPoint expected = new PolynomialPoint();
+		for(long k = 1; k <= 60; k++) {
+			expected = expected.add(new PolynomialPoint(P), a, b, m);
+			expected = new PolynomialPoint(expected.getX().mod(m), expected.getY().mod(m), expected.getZ().mod(m));
+			assertEquals(expected, P.mult(k, a, b, m));
+		}
+	}
+	
+	@Test
+	public void WalkTest() { // block walks agree with one add (and two inversions) per step
+		Polynomial a = new Polynomial("z^3");
+		Polynomial b = new Polynomial("z^3 + 1");
+		Polynomial m = new Polynomial("z^4 + z + 1");
+		BinaryEllipticCurve E = new BinaryEllipticCurve(a, b, m);
+		PolynomialPoint G = new PolynomialPoint(new Polynomial("z^3"), new Polynomial("1"), new Polynomial("1"));
+		PolynomialPoint infinity = new PolynomialPoint();
+		PolynomialPoint P = new PolynomialPoint(G);
+		long order = 1;
+		while(!P.equals(infinity)) {
+			P = P.add(new PolynomialPoint(G), a, b, m);
+			order++;
+		}
+		assertEquals(order, E.pointOrder(G));
+		P = new PolynomialPoint(G);
+		StringBuilder list = new StringBuilder();
+		for(long k = 1; k < order; k++) {
+			assertEquals(k, E.log(P, G));
+			Polynomial z = new Polynomial("z^2 + 1"); // the same point with z != 1
+			PolynomialPoint Q = new PolynomialPoint(P.getX().mult(z).mod(m), P.getY().mult(z.square()).mod(m), z);
+			assertTrue(Q.equals(P, m));
+			assertEquals(P.hashCode(), Q.hashCode(m));
+			list.append(P).append(", ");
+			P = P.add(new PolynomialPoint(G), a, b, m);
+		}
+		list.append(P).append("\n");
+		assertEquals(list.toString(), E.listGmults(G));
+	}
+}
@@ -44,4 +44,17 @@ public class PolynomialTest {
 		Polynomial p = new Polynomial("z^3 + z^2");
 		assertEquals(new Polynomial("z^3"), p.sqrt(new Polynomial("z^4 + z + 1")));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void ModExpTest() { // sliding windows and Shamir's trick against repeated multiplication
+		Polynomial q = new Polynomial("z^11 + z^2 + 1");
+		Polynomial p = new Polynomial("z^7 + z^3 + z");
+		Polynomial b = new Polynomial("z^5 + 1");
+		Polynomial expected = new Polynomial("1");
+		for(int i = 0; i < 1000; i++) {
+			expected = expected.mult(p).mod(q);
+		}
+		assertEquals(expected, p.modExp(1000, q));
+		assertEquals(expected.mult(b.modExp(77, q)).mod(q), p.modExp2(1000, b, 77, q));
+	}
+}
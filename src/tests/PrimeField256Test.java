@@ -0,0 +1,82 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+import src.PrimeField256;
+
+public class PrimeField256Test {
+
+	private static final BigInteger[] PRIMES = {
+		new BigInteger("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff", 16), // P-256
+		new BigInteger("fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f", 16), // secp256k1
+		BigInteger.ONE.shiftLeft(255).subtract(BigInteger.valueOf(19)), // 2^255 - 19
+		BigInteger.valueOf(1000003) // a single limb
+	};
+
+	@Test
+	public void ArithmeticTest() { // compare against BigInteger on random inputs
+		Random rand = new Random(256);
+		for(BigInteger p : PRIMES) {
+			PrimeField256 f = new PrimeField256(p);
+			long[] A = new long[4], B = new long[4], C = new long[4];
+			for(int i = 0; i < 2000; i++) {
+				BigInteger a = (i == 0) ? p.subtract(BigInteger.ONE) : new BigInteger(256, rand).mod(p);
+				BigInteger b = (i == 1) ? BigInteger.ZERO : new BigInteger(256, rand).mod(p);
+				f.toMont(a, A);
+				f.toMont(b, B);
+				f.mul(A, B, C);
+				assertEquals(a.multiply(b).mod(p), f.fromMont(C));
+				f.sqr(A, C);
+				assertEquals(a.multiply(a).mod(p), f.fromMont(C));
+				f.add(A, B, C);
+				assertEquals(a.add(b).mod(p), f.fromMont(C));
+				f.sub(A, B, C);
+				assertEquals(a.subtract(b).mod(p), f.fromMont(C));
+				f.neg(A, C);
+				assertEquals(a.negate().mod(p), f.fromMont(C));
+			}
+		}
+	}
+	
+	@Test
+	public void InverseTest() {
+		BigInteger p = PRIMES[0];
+		PrimeField256 f = new PrimeField256(p);
+		long[] A = new long[4], B = new long[4];
+		f.toMont(BigInteger.valueOf(123456789), A);
+		f.inverse(A, B);
+		assertEquals(BigInteger.valueOf(123456789).modInverse(p), f.fromMont(B));
+	}
+	
+	@Test
+	public void SpecialFormTest() { // the special-form reductions against Montgomery arithmetic
+		Random rand = new Random(257);
+		BigInteger[] special = {PRIMES[0], PRIMES[1], PRIMES[2],
+				BigInteger.ONE.shiftLeft(221).subtract(BigInteger.valueOf(3)), // 2^221 - 3, well below 2^256
+				BigInteger.ONE.shiftLeft(201).subtract(BigInteger.valueOf(55))}; // 2^201 - 55, a fold of 61 bits
+		for(BigInteger p : special) {
+			PrimeField256 f = new PrimeField256(p);
+			PrimeField256 g = new PrimeField256(p, false);
+			assertTrue(f.isSpecialForm());
+			assertFalse(g.isSpecialForm());
+			long[] A = new long[4], B = new long[4], C = new long[4], D = new long[4];
+			for(int i = 0; i < 2000; i++) {
+				BigInteger a = (i == 0) ? p.subtract(BigInteger.ONE) : new BigInteger(256, rand).mod(p);
+				BigInteger b = (i == 0) ? p.subtract(BigInteger.ONE) : new BigInteger(256, rand).mod(p);
+				f.toMont(a, A);
+				f.toMont(b, B);
+				f.mul(A, B, C);
+				g.toMont(a, A);
+				g.toMont(b, B);
+				g.mul(A, B, D);
+				assertEquals(g.fromMont(D), f.fromMont(C));
+				f.toMont(a, A);
+				f.sqr(A, C);
+				assertEquals(a.multiply(a).mod(p), f.fromMont(C));
+			}
+		}
+		assertFalse(new PrimeField256(PRIMES[3]).isSpecialForm());
+	}
+}
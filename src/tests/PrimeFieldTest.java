@@ -0,0 +1,84 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+import src.BigPrimeField;
+import src.ECMath;
+import src.Point;
+import src.PrimeField;
+
+public class PrimeFieldTest {
+
+	@Test
+	public void MultTest() {
+		PrimeField f = new PrimeField(997);
+		assertEquals(498, f.mulMod(57, 481), 0);
+		assertEquals(57, f.fromMont(f.toMont(57)), 0);
+	}
+	
+	@Test
+	public void LargeMultTest() {
+		long p = 9223372036854775783L; // largest prime below 2^63
+		PrimeField f = new PrimeField(p);
+		assertEquals(1, f.mulMod(p-1, p-1), 0); // (-1)^2 = 1
+		assertEquals(p-2, f.mulMod(2, p-1), 0); // 2*(-1) = -2
+	}
+	
+	@Test
+	public void LargeModExpTest() {
+		long p = 2305843009213693951L; // 2^61 - 1
+		assertEquals(1, ECMath.modExp(123456789, p-1, p), 0); // Fermat's little theorem
+		assertEquals(1, ECMath.modExp(2, 61, p), 0);
+	}
+	
+	@Test
+	public void LargePointTest() {
+		long p = 9223372036854775783L;
+		long a = 1;
+		long b = p-1; // (2, 3) is on y^2 = x^3 + x - 1
+		Point G = new Point(2, 3, 1);
+		Point R = G.mult(1000003, a, b, p);
+		Point S = G.mult(1000000, a, b, p).add(G.mult(3, a, b, p), a, b, p);
+		assertEquals(R, S);
+	}
+	
+	@Test
+	public void SpecialFormTest() { // folding reduction for p = 2^k - 1 against BigInteger
+		Random rand = new Random(61);
+		for(long p : new long[] {2147483647L, 2305843009213693951L, Long.MAX_VALUE}) { // 2^31 - 1, 2^61 - 1, and 2^63 - 1 (not prime, but odd)
+			PrimeField f = new PrimeField(p);
+			assertTrue(f.isSpecialForm());
+			for(int i = 0; i < 1000; i++) {
+				long a = (i == 0) ? p-1 : Math.floorMod(rand.nextLong(), p);
+				long b = (i == 0) ? p-1 : Math.floorMod(rand.nextLong(), p);
+				long expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(p)).longValue();
+				assertEquals(expected, f.mulMod(a, b), 0);
+			}
+		}
+		BigInteger M = BigInteger.valueOf(Long.MAX_VALUE);
+		for(int i = 0; i < 100; i++) { // ECMath.modExp takes any odd modulus, including 2^63 - 1
+			long a = Math.floorMod(rand.nextLong(), Long.MAX_VALUE), e = rand.nextLong() >>> 1;
+			assertEquals(BigInteger.valueOf(a).modPow(BigInteger.valueOf(e), M).longValue(), ECMath.modExp(a, e, Long.MAX_VALUE));
+		}
+		assertFalse(new PrimeField(1000003).isSpecialForm());
+		assertFalse(new PrimeField(9223372036854775783L).isSpecialForm()); // 2^63 - 25 stays on Montgomery
+		assertFalse(new PrimeField(2305843009213693951L, false).isSpecialForm());
+	}
+	
+	@Test
+	public void BigSpecialFormTest() { // P-384 folding against BigInteger.mod
+		BigInteger p = BigInteger.ONE.shiftLeft(384).subtract(BigInteger.ONE.shiftLeft(128))
+				.subtract(BigInteger.ONE.shiftLeft(96)).add(BigInteger.ONE.shiftLeft(32)).subtract(BigInteger.ONE);
+		BigPrimeField f = new BigPrimeField(p);
+		assertTrue(f.isSpecialForm());
+		Random rand = new Random(384);
+		for(int i = 0; i < 1000; i++) {
+			BigInteger a = new BigInteger(384, rand).mod(p);
+			BigInteger b = new BigInteger(384, rand).mod(p);
+			assertEquals(a.multiply(b).mod(p), f.mul(a, b));
+		}
+		assertEquals(BigInteger.ONE, f.mul(p.subtract(BigInteger.ONE), p.subtract(BigInteger.ONE)));
+	}
+}
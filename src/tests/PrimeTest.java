@@ -1,6 +1,8 @@
 package src.tests;
 
 import static org.junit.Assert.*;
+import java.math.BigInteger;
+import java.util.Random;
 import org.junit.Test;
 import src.ECMath;
 
@@ -23,4 +25,49 @@ public class PrimeTest {
 		long rval = ECMath.randomPrime(4);
 		assertTrue(rval > 999 && rval < 10000 && ECMath.isPrime(rval));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void StrongPseudoprimes() { // composites that fool Miller-Rabin for several small bases
+		long[] pseudoprimes = {561, 1729, 3215031751L, 2152302898747L, 3474749660383L, 341550071728321L, 3825123056546413051L};
+		for(long n : pseudoprimes) {
+			assertFalse(ECMath.isPrime(n));
+		}
+		assertTrue(ECMath.isPrime(9223372036854775783L)); // largest prime below 2^63
+		assertTrue(ECMath.isPrime(1795265047)); // the first prime above the largest base
+		assertFalse(ECMath.isPrime(-7));
+	}
+	
+	@Test
+	public void AgreesWithBigInteger() {
+		for(long n = 0; n < 100000; n++) {
+			assertEquals(BigInteger.valueOf(n).isProbablePrime(50), ECMath.isPrime(n));
+		}
+		Random rand = new Random(7);
+		for(int i = 0; i < 10000; i++) {
+			long n = rand.nextLong() >>> rand.nextInt(63);
+			assertEquals(n > 1 && BigInteger.valueOf(n).isProbablePrime(50), ECMath.isPrime(n));
+		}
+	}
+	
+	@Test
+	public void NextPrime() {
+		assertEquals(2, ECMath.nextPrime(-10), 0);
+		assertEquals(65537, ECMath.nextPrime(65536), 0);
+		assertEquals(1000000007, ECMath.nextPrime(1000000000), 0);
+		assertEquals(9223372036854775057L, ECMath.nextPrime(9223372036854775000L)); // too big for a double delta
+		assertEquals(-1, ECMath.nextPrime(9223372036854775784L), 0); // no larger prime fits in a long
+	}
+	
+	@Test
+	public void RandomPrimeBits() {
+		Random rand = new Random(8);
+		for(int bits = 2; bits <= 63; bits++) {
+			for(boolean incremental : new boolean[] {true, false}) {
+				long p = ECMath.randomPrimeBits(bits, incremental, rand);
+				assertEquals(bits, 64 - Long.numberOfLeadingZeros(p));
+				assertTrue(BigInteger.valueOf(p).isProbablePrime(50));
+			}
+		}
+		assertEquals(-1, ECMath.randomPrimeBits(64), 0);
+	}
+}
@@ -0,0 +1,77 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.Point;
+import src.Rho;
+
+public class RhoTest {
+
+	@Test
+	public void TestLog() { // finds k on one thread and on several, and EllipticCurve.log uses it
+		Random rand = new Random(41);
+		EllipticCurve E = EllipticCurve.randomPrimeEC(ECMath.randomPrimeBits(32, false, rand), rand);
+		long n = E.order();
+		Point G = E.randomPoint(rand);
+		for(int threads = 1; threads <= 3; threads += 2) {
+			Rho rho = new Rho(E, G, n);
+			rho.setThreads(threads);
+			for(int i = 0; i < 3; i++) {
+				long k = Math.floorMod(rand.nextLong(), n);
+				assertEquals(k, rho.log(E.mult(G, k)));
+				assertTrue(rho.getSteps() > 0 && rho.getDistinguished() > 0);
+			}
+		}
+		assertEquals(0, new Rho(E, G, n).log(new Point()));
+		assertEquals(123456789, E.log(E.mult(G, 123456789), G));
+		assertEquals(n, E.log(new Point(), G));
+	}
+
+	@Test
+	public void TestNotAMultiple() { // -1 when P isn't in the group generated by G
+		Random rand = new Random(42);
+		long p = ECMath.randomPrimeBits(30, false, rand);
+		EllipticCurve E = new EllipticCurve(0, 0, p);
+		long q = 0;
+		while(q == 0) { /* |E| = h*q with a large prime q */
+			E = new EllipticCurve(Math.floorMod(rand.nextLong(), p), Math.floorMod(rand.nextLong(), p), p);
+			long N = E.order();
+			long largest = ECMath.factor(N).lastKey();
+			if(E.isEC() && largest > (1L << 20) && largest < N) {
+				q = largest;
+			}
+		}
+		long h = E.order() / q;
+		Point G = new Point();
+		while(G.isInfinity()) {
+			G = E.mult(E.randomPoint(rand), h);
+		}
+		Point P = E.randomPoint(rand);
+		while(E.mult(P, q).isInfinity()) {
+			P = E.randomPoint(rand);
+		}
+		assertEquals(-1, new Rho(E, G, q).log(P));
+		assertEquals(77, new Rho(E, G, q).log(E.mult(G, 77)));
+	}
+
+	@Test
+	public void TestCancel() { // cancel from another thread stops a search that would take minutes
+		Random rand = new Random(43);
+		EllipticCurve E = EllipticCurve.randomPrimeEC(ECMath.randomPrimeBits(60, false, rand), rand);
+		Point G = E.randomPoint(rand);
+		final Rho rho = new Rho(E, G, E.order());
+		Thread canceller = new Thread(() -> {
+			while(rho.getSteps() == 0) {
+				Thread.yield();
+			}
+			rho.cancel();
+		});
+		canceller.start();
+		assertEquals(-1, rho.log(E.mult(G, Math.floorMod(rand.nextLong(), E.order()))));
+		assertTrue(rho.isCancelled());
+		assertTrue(rho.getSteps() > 0);
+	}
+}
@@ -0,0 +1,66 @@
+package src.tests;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import src.ECMath;
+import src.EllipticCurve;
+import src.GLV;
+import src.Point;
+import src.Schoof;
+
+public class SchoofTest {
+
+	@Test
+	public void TestSmall() { // Schoof agrees with counting points on random curves
+		Random rand = new Random(11);
+		for(int i = 0; i < 300; i++) {
+			long p = ECMath.randomPrimeBits(3 + i % 12, false, rand);
+			if(p < 5) {
+				continue;
+			}
+			long a = Math.floorMod(rand.nextLong(), p), b = Math.floorMod(rand.nextLong(), p);
+			EllipticCurve E = new EllipticCurve(a, b, p);
+			long count = p + 1;
+			for(long x = 0; x < p; x++) {
+				count += ECMath.jacobi(((x*x % p + a) % p * x + b) % p, p);
+			}
+			assertEquals(E.isEC() ? count : -1, new Schoof(a, b, p).order());
+		}
+	}
+
+	@Test
+	public void TestLarge() { // 40-bit curves: the order kills points, and agrees with the j = 0 formula
+		Random rand = new Random(12);
+		long p = ECMath.randomPrimeBits(40, false, rand);
+		Schoof S = new Schoof(-3, 7, p);
+		long n = S.order();
+		assertTrue(Math.abs(p + 1 - n) <= 2*Math.sqrt(p));
+		assertEquals(n, new EllipticCurve(-3, 7, p).order());
+		long M = 1;
+		for(long l : S.getTimings().keySet()) {
+			assertTrue(ECMath.isPrime(l));
+			assertEquals(Math.floorMod(p + 1 - n, l), (long)S.getTraces().get(l));
+			M *= l;
+		}
+		assertTrue(M > 4*Math.sqrt(p));
+		for(int i = 0; i < 5; i++) {
+			long x = Math.floorMod(rand.nextLong(), p);
+			long y = ECMath.sqrt(Math.floorMod(ECMath.modExp(x, 3, p) - 3*x + 7, p), p);
+			if(y >= 0) {
+				assertTrue(new Point(x, y, 1).mult(n, -3, 7, p).isInfinity());
+			}
+		}
+		while(p % 3 != 1) {
+			p = ECMath.randomPrimeBits(40, false, rand);
+		}
+		assertEquals(GLV.jZeroOrder(5, p), new Schoof(0, 5, p).order());
+	}
+
+	@Test
+	public void TestOverflow() { // p = 2^63 - 25: |E| >= 2^63 gives -1, and order doesn't fall back to LegendreSum
+		long p = Long.MAX_VALUE - 24;
+		assertEquals(-1, new EllipticCurve(1, 7, p).order()); /* Schoof finds t = -4398254710 */
+		assertEquals(9223372033878336480L, new EllipticCurve(1, 8, p).order());
+	}
+}
@@ -3,6 +3,8 @@ package src.tests;
 import static org.junit.Assert.*;
 import org.junit.Test;
 import src.ECMath;
+import src.EllipticCurve;
+import src.QuadraticResidueTable;
 
 public class SqrtTest {
 
@@ -23,4 +25,48 @@ public class SqrtTest {
 		long rval = ECMath.jacobi(114, 997);
 		assertEquals(-1, rval, 0);
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void TestHighTwoAdicity() { // p - 1 = 119*2^23, so Shanks' loop runs many times
+		long p = 998244353;
+		for(long a = 2; a < 200; a++) {
+			long x = ECMath.sqrt(a*a, p);
+			assertTrue(x == a || x == p - a);
+		}
+		assertEquals(-1, ECMath.sqrt(3, p), 0); // 3 is a non-residue
+	}
+	
+	@Test
+	public void TestTable() { // lookups agree with Jacobi symbols and Shanks' algorithm
+		for(long p : new long[] {2, 3, 17, 1009, 40961}) { // 40961 = 5*2^13 + 1
+			QuadraticResidueTable table = new QuadraticResidueTable(p, true);
+			QuadraticResidueTable shanks = new QuadraticResidueTable(p, false);
+			assertTrue(table.hasTable());
+			assertEquals(p == 2, shanks.hasTable()); // there's nothing else to do for p = 2
+			for(long a = 0; a < p; a++) {
+				assertEquals(ECMath.jacobi(a, p), table.legendre(a));
+				long x = table.sqrt(a);
+				long y = shanks.sqrt(a);
+				if(table.legendre(a) == -1) {
+					assertEquals(-1, x);
+					assertEquals(-1, y);
+				}
+				else {
+					assertEquals(a, (x*x) % p);
+					assertEquals(a, (y*y) % p);
+					assertTrue(2*x <= p); // the smaller root
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void TestOrder() { // counting with the table agrees with counting with Jacobi symbols
+		EllipticCurve E = new EllipticCurve(2, 3, 1009);
+		long order = 1009 + 1;
+		for(long x = 0; x < 1009; x++) {
+			order += ECMath.jacobi((x*x*x + 2*x + 3) % 1009, 1009);
+		}
+		assertEquals(order, E.order());
+	}
+}